@@ -35,7 +35,7 @@ hadamard_content: phase_atom | link;
 color_atom: 'c' '(' value ')';
 phase_atom: 'e^i' '(' value ')';
 link: SIGN? CAP_ID;
-value: (SIGN? INT) | CAP_ID;
+value: (SIGN? INT ('.' INT)? ('/' INT)?) | CAP_ID; // Degrees may be 22.5 or 180/7
 
 // Lexer Rules
 RULE_ID: ID '@@';
@@ -52,6 +52,7 @@ RBRACE: '}';
 COMMA: ',';
 DOT: '.';
 PIPE: '|';
+SLASH: '/';
 COLON: ':';
 
 COMMENT: ('//' | '%') ~[\r\n]* -> skip;
@@ -2,10 +2,16 @@ package com.lmntal.zx;
 
 import javax.swing.SwingUtilities;
 
+import com.lmntal.zx.cli.BatchConverter;
 import com.lmntal.zx.controller.AppController;
 
 public class ZXDiagramTool {
   public static void main(String[] args) {
+    // With arguments, run the headless batch converter instead of the editor
+    if (args.length > 0) {
+      BatchConverter.main(args);
+      return;
+    }
     SwingUtilities.invokeLater(() -> {
       AppController controller = new AppController();
       controller.showFrame();
@@ -0,0 +1,163 @@
+package com.lmntal.zx.cli;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.lmntal.zx.exporter.LMNtalExporter;
+import com.lmntal.zx.importer.LMNtalImporter;
+import com.lmntal.zx.model.RuleValidator;
+
+/**
+ * Headless converter: reads .lmn files, re-emits their graphs and valid rules
+ * in normalized form, and writes them under an output directory. Nothing in
+ * this path touches AWT or Swing.
+ */
+public final class BatchConverter {
+  private static final String USAGE = "Usage: BatchConverter <input file or directory> <output directory> [--threads N]";
+
+  public record FileResult(Path source, Path target, List<String> messages, boolean failed) {
+  }
+
+  private final Path inputRoot;
+  private final Path outputRoot;
+  private final int threads;
+
+  public BatchConverter(Path inputRoot, Path outputRoot, int threads) {
+    this.inputRoot = inputRoot;
+    this.outputRoot = outputRoot;
+    this.threads = Math.max(1, threads);
+  }
+
+  public static void main(String[] args) {
+    System.setProperty("java.awt.headless", "true");
+    if (args.length < 2) {
+      System.err.println(USAGE);
+      System.exit(2);
+    }
+    int threads = Runtime.getRuntime().availableProcessors();
+    for (int i = 2; i < args.length; i++) {
+      if ("--threads".equals(args[i]) && i + 1 < args.length) {
+        try {
+          threads = Integer.parseInt(args[++i]);
+        } catch (NumberFormatException e) {
+          System.err.println("Invalid thread count: " + args[i]);
+          System.exit(2);
+        }
+      } else {
+        System.err.println(USAGE);
+        System.exit(2);
+      }
+    }
+
+    try {
+      BatchConverter converter = new BatchConverter(Paths.get(args[0]), Paths.get(args[1]), threads);
+      int failures = converter.run(System.out, System.err);
+      System.exit(failures == 0 ? 0 : 1);
+    } catch (IOException e) {
+      System.err.println("Error: " + e.getMessage());
+      System.exit(2);
+    }
+  }
+
+  /**
+   * Converts every .lmn file under the input root. Results are reported in
+   * input order as they complete.
+   *
+   * @return the number of files that could not be converted
+   */
+  public int run(PrintStream out, PrintStream err) throws IOException {
+    List<Path> sources = collectSources();
+    ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, sources.size())));
+    int failures = 0;
+    int withWarnings = 0;
+    try {
+      List<Future<FileResult>> futures = new ArrayList<>(sources.size());
+      for (Path source : sources) {
+        futures.add(pool.submit(() -> convert(source)));
+      }
+      for (Future<FileResult> future : futures) {
+        FileResult result = getResult(future);
+        if (result.failed()) {
+          failures++;
+        } else if (!result.messages().isEmpty()) {
+          withWarnings++;
+        }
+        for (String message : result.messages()) {
+          err.println(result.source() + ": " + message);
+        }
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+    out.printf("Converted %d of %d files (%d with warnings, %d failed)%n",
+        sources.size() - failures, sources.size(), withWarnings, failures);
+    return failures;
+  }
+
+  public FileResult convert(Path source) {
+    Path target = targetFor(source);
+    List<String> messages = new ArrayList<>();
+    try {
+      LMNtalImporter importer = new LMNtalImporter();
+      importer.importFile(source);
+      messages.addAll(importer.getErrorMessages());
+
+      Path parent = target.toAbsolutePath().getParent();
+      if (parent != null) {
+        Files.createDirectories(parent);
+      }
+      LMNtalExporter.writeFile(target, importer.getGraphs(), importer.getRules(), rule -> {
+        RuleValidator.Violation violation = RuleValidator.validate(rule);
+        if (violation != null) {
+          messages.add("Rule '" + rule.getName() + "' was not exported: " + violation.message().replace('\n', ' '));
+        }
+        return violation == null;
+      });
+      return new FileResult(source, target, messages, false);
+    } catch (IOException | RuntimeException e) {
+      messages.add("Conversion failed: " + e.getMessage());
+      return new FileResult(source, target, messages, true);
+    }
+  }
+
+  private List<Path> collectSources() throws IOException {
+    if (!Files.isDirectory(inputRoot)) {
+      return List.of(inputRoot);
+    }
+    try (Stream<Path> paths = Files.walk(inputRoot)) {
+      return paths.filter(Files::isRegularFile)
+          .filter(p -> p.getFileName().toString().toLowerCase().endsWith(".lmn"))
+          .sorted()
+          .collect(Collectors.toList());
+    }
+  }
+
+  private Path targetFor(Path source) {
+    if (!Files.isDirectory(inputRoot)) {
+      return outputRoot.resolve(source.getFileName());
+    }
+    return outputRoot.resolve(inputRoot.relativize(source));
+  }
+
+  private static FileResult getResult(Future<FileResult> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while converting", e);
+    } catch (ExecutionException e) {
+      throw new IOException("Conversion task failed", e.getCause());
+    }
+  }
+}
@@ -1,31 +1,41 @@
 package com.lmntal.zx.controller;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Objects;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.swing.DefaultListModel;
 import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
+import javax.swing.JTextArea;
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.filechooser.FileNameExtensionFilter;
 
+import com.lmntal.zx.exporter.LMNtalExporter;
 import com.lmntal.zx.importer.LMNtalImporter;
+import com.lmntal.zx.model.IncrementalLMNtal;
+import com.lmntal.zx.model.IncrementalRuleLMNtal;
 import com.lmntal.zx.model.NamedGraph;
 import com.lmntal.zx.model.RuleType;
-import com.lmntal.zx.model.Spider;
-import com.lmntal.zx.model.SpiderType;
-import com.lmntal.zx.model.ZXGraph;
+import com.lmntal.zx.model.RuleValidator;
 import com.lmntal.zx.model.ZXRule;
+import com.lmntal.zx.rewrite.RewriteEngine;
+import com.lmntal.zx.rewrite.RuleMatcher;
+import com.lmntal.zx.rewrite.Simplifier;
 import com.lmntal.zx.view.AppToolbar;
 import com.lmntal.zx.view.EditorPanel;
 import com.lmntal.zx.view.MainFrame;
 import com.lmntal.zx.view.OutputPanel;
+import com.lmntal.zx.view.RuleEditorPanel;
 import com.lmntal.zx.view.SidebarPanel;
 
 public class AppController {
@@ -36,14 +46,27 @@ public class AppController {
 
   private NamedGraph currentGraphInEditor;
   private ZXRule currentRuleInEditor;
-  private NamedGraph savedGraphState;
-  private ZXRule savedRuleState;
+  // Versions of the graphs as last saved; versions are never reused, so a
+  // different version means unsaved changes
+  private long savedGraphVersion;
+  private long savedLhsVersion;
+  private long savedRhsVersion;
+  private RuleType savedRuleType;
+  // Text of the graph output while it shows a graph rather than a message
+  private IncrementalLMNtal graphOutput;
+  private IncrementalRuleLMNtal ruleOutput;
 
   private final MainFrame mainFrame;
   private final SidebarPanel sidebarPanel;
   private final AppToolbar toolbar;
   private final EditorPanel editorPanel;
   private final OutputPanel outputPanel;
+  private final ExecutorService importExecutor = Executors.newSingleThreadExecutor(r -> {
+    Thread thread = new Thread(r, "lmntal-import");
+    thread.setDaemon(true);
+    return thread;
+  });
+  private Future<?> importTask;
 
   public AppController() {
     this.editorPanel = new EditorPanel(this);
@@ -65,8 +88,8 @@ public class AppController {
 
     this.currentGraphInEditor = initialGraph;
     this.currentRuleInEditor = initialRule;
-    this.savedGraphState = new NamedGraph(currentGraphInEditor);
-    this.savedRuleState = new ZXRule(currentRuleInEditor);
+    markGraphSaved();
+    markRuleSaved();
 
     editorPanel.getGraphEditorPanel().setGraph(currentGraphInEditor);
     editorPanel.getRuleEditorPanel().setRule(currentRuleInEditor);
@@ -78,6 +101,9 @@ public class AppController {
     editorPanel.getGraphEditorPanel().setController(graphCtrl);
     editorPanel.getRuleEditorPanel().getLhsPanel().setController(lhsCtrl);
     editorPanel.getRuleEditorPanel().getRhsPanel().setController(rhsCtrl);
+    graphCtrl.setEditListener(this::graphEdited);
+    lhsCtrl.setEditListener(this::ruleEdited);
+    rhsCtrl.setEditListener(this::ruleEdited);
     toolbar.setControllers(graphCtrl, lhsCtrl, rhsCtrl);
 
     sidebarPanel.getGraphList().setSelectedIndex(0);
@@ -102,8 +128,8 @@ public class AppController {
     }
     this.currentGraphInEditor = graphToSelect;
     editorPanel.getGraphEditorPanel().setGraph(graphToSelect);
-    savedGraphState = new NamedGraph(graphToSelect);
-    outputPanel.getRuleOutputArea().setText("");
+    markGraphSaved();
+    showRuleMessage("");
     convertAndSaveCurrentGraph();
     editorPanel.getGraphEditorPanel().repaint();
   }
@@ -117,17 +143,26 @@ public class AppController {
     }
     this.currentRuleInEditor = ruleToSelect;
     editorPanel.getRuleEditorPanel().setRule(ruleToSelect);
-    savedRuleState = new ZXRule(ruleToSelect);
-    outputPanel.getGraphOutputArea().setText("");
+    markRuleSaved();
+    showGraphMessage("");
     convertAndSaveCurrentRule();
     editorPanel.getRuleEditorPanel().repaint();
   }
 
+  private void markGraphSaved() {
+    savedGraphVersion = currentGraphInEditor.getVersion();
+  }
+
+  private void markRuleSaved() {
+    savedLhsVersion = currentRuleInEditor.getLhs().getVersion();
+    savedRhsVersion = currentRuleInEditor.getRhs().getVersion();
+    savedRuleType = currentRuleInEditor.getType();
+  }
+
   private boolean checkForUnsavedGraphChanges() {
-    ZXGraph currentGraphFromPanel = editorPanel.getGraphEditorPanel().getGraph();
-    boolean graphChanged = !currentGraphFromPanel.isIdenticalTo(savedGraphState);
+    boolean graphChanged = editorPanel.getGraphEditorPanel().getGraph().getVersion() != savedGraphVersion;
     if (graphChanged) {
-      int result = showUnsavedDialog("Graph '" + savedGraphState.getName() + "'");
+      int result = showUnsavedDialog("Graph '" + currentGraphInEditor.getName() + "'");
       if (result == JOptionPane.YES_OPTION) {
         convertAndSaveCurrentGraph();
       } else if (result == JOptionPane.CANCEL_OPTION) {
@@ -138,14 +173,13 @@ public class AppController {
   }
 
   private boolean checkForUnsavedRuleChanges() {
-    ZXRule currentRuleFromPanel = new ZXRule(currentRuleInEditor.getName());
-    currentRuleFromPanel.getLhs().setData(editorPanel.getRuleEditorPanel().getLhsPanel().getGraph());
-    currentRuleFromPanel.getRhs().setData(editorPanel.getRuleEditorPanel().getRhsPanel().getGraph());
-    currentRuleFromPanel.setType((RuleType) editorPanel.getRuleEditorPanel().getRuleTypeSelector().getSelectedItem());
-    boolean ruleChanged = !currentRuleFromPanel.isIdenticalTo(savedRuleState);
+    RuleEditorPanel rulePanel = editorPanel.getRuleEditorPanel();
+    boolean ruleChanged = rulePanel.getLhsPanel().getGraph().getVersion() != savedLhsVersion
+        || rulePanel.getRhsPanel().getGraph().getVersion() != savedRhsVersion
+        || rulePanel.getRuleTypeSelector().getSelectedItem() != savedRuleType;
 
     if (ruleChanged) {
-      int result = showUnsavedDialog("Rule '" + savedRuleState.getName() + "'");
+      int result = showUnsavedDialog("Rule '" + currentRuleInEditor.getName() + "'");
       if (result == JOptionPane.YES_OPTION) {
         convertAndSaveCurrentRule();
       } else if (result == JOptionPane.CANCEL_OPTION) {
@@ -231,101 +265,71 @@ public class AppController {
 
   public void convertAndSaveCurrentGraph() {
     if (currentGraphInEditor != null) {
-      savedGraphState.setData(currentGraphInEditor);
-      outputPanel.getGraphOutputArea().setText(currentGraphInEditor.toLMNtal() + ".");
-      outputPanel.getGraphOutputArea().setCaretPosition(0);
+      markGraphSaved();
+      refreshGraphOutput();
     }
   }
 
-  private boolean validateRule(ZXRule rule) {
-    // === START: New Validation Logic ===
-    // Validate uniqueness of variable labels within LHS and RHS
-    List<String> lhsVariableLabels = rule.getLhs().getSpiders().stream()
-        .map(Spider::getVariableLabel)
-        .filter(Objects::nonNull)
-        .collect(Collectors.toList());
-
-    if (new HashSet<>(lhsVariableLabels).size() < lhsVariableLabels.size()) {
-      JOptionPane.showMessageDialog(mainFrame, "Variable labels must be unique on the left side of the rule.",
-          "Rule Error", JOptionPane.ERROR_MESSAGE);
-      return false;
+  /**
+   * Brings the graph output up to date. Once it shows the current graph, only
+   * the atoms of changed spiders and edges are written again, and the text
+   * is patched in place.
+   */
+  private void refreshGraphOutput() {
+    JTextArea area = outputPanel.getGraphOutputArea();
+    if (graphOutput == null || graphOutput.getGraph() != currentGraphInEditor) {
+      graphOutput = new IncrementalLMNtal(currentGraphInEditor);
+      area.setText(graphOutput.getText() + ".");
+      area.setCaretPosition(0);
+      return;
     }
-
-    List<String> rhsVariableLabels = rule.getRhs().getSpiders().stream()
-        .map(Spider::getVariableLabel)
-        .filter(Objects::nonNull)
-        .collect(Collectors.toList());
-
-    if (new HashSet<>(rhsVariableLabels).size() < rhsVariableLabels.size()) {
-      JOptionPane.showMessageDialog(mainFrame, "Variable labels must be unique on the right side of the rule.",
-          "Rule Error", JOptionPane.ERROR_MESSAGE);
-      return false;
+    for (IncrementalLMNtal.Patch patch : graphOutput.update()) {
+      area.replaceRange(patch.text(), patch.start(), patch.end());
     }
+  }
 
-    // Validate uniqueness of boundary labels within LHS and RHS
-    List<String> lhsBoundaryLabelList = rule.getLhs().getSpiders().stream()
-        .filter(s -> s.getType() == SpiderType.BOUNDARY)
-        .map(Spider::getLabel)
-        .filter(Objects::nonNull)
-        .collect(Collectors.toList());
-
-    if (new HashSet<>(lhsBoundaryLabelList).size() < lhsBoundaryLabelList.size()) {
-      JOptionPane.showMessageDialog(mainFrame, "Boundary labels must be unique on the left side of the rule.",
-          "Rule Error", JOptionPane.ERROR_MESSAGE);
-      return false;
+  /** Brings the rule output up to date, like {@link #refreshGraphOutput}. */
+  private void refreshRuleOutput() {
+    JTextArea area = outputPanel.getRuleOutputArea();
+    if (ruleOutput == null || ruleOutput.getRule() != currentRuleInEditor) {
+      ruleOutput = new IncrementalRuleLMNtal(currentRuleInEditor);
+      area.setText(ruleOutput.getText());
+      area.setCaretPosition(0);
+      return;
     }
-
-    List<String> rhsBoundaryLabelList = rule.getRhs().getSpiders().stream()
-        .filter(s -> s.getType() == SpiderType.BOUNDARY)
-        .map(Spider::getLabel)
-        .filter(Objects::nonNull)
-        .collect(Collectors.toList());
-
-    if (new HashSet<>(rhsBoundaryLabelList).size() < rhsBoundaryLabelList.size()) {
-      JOptionPane.showMessageDialog(mainFrame, "Boundary labels must be unique on the right side of the rule.",
-          "Rule Error", JOptionPane.ERROR_MESSAGE);
-      return false;
+    for (IncrementalLMNtal.Patch patch : ruleOutput.update()) {
+      area.replaceRange(patch.text(), patch.start(), patch.end());
     }
-    // === END: New Validation Logic ===
+  }
 
-    // Boundary node validation
-    Set<String> lhsBoundaryLabels = new HashSet<>(lhsBoundaryLabelList);
-    Set<String> rhsBoundaryLabels = new HashSet<>(rhsBoundaryLabelList);
+  private void showRuleMessage(String message) {
+    ruleOutput = null;
+    outputPanel.getRuleOutputArea().setText(message);
+  }
 
-    if (!lhsBoundaryLabels.equals(rhsBoundaryLabels)) {
-      JOptionPane.showMessageDialog(mainFrame, "Boundary node labels must match on both sides of the rule.",
-          "Rule Error", JOptionPane.ERROR_MESSAGE);
-      return false;
+  private void showGraphMessage(String message) {
+    graphOutput = null;
+    outputPanel.getGraphOutputArea().setText(message);
+  }
+
+  private void graphEdited() {
+    if (outputPanel.getLiveUpdateBox().isSelected()) {
+      refreshGraphOutput();
     }
+  }
 
-    // Variable validation
-    Set<String> lhsVars = new HashSet<>();
-    rule.getLhs().toLMNtal(lhsVars);
-    Set<String> rhsVars = new HashSet<>();
-    rule.getRhs().toLMNtal(rhsVars);
-
-    Set<String> missingInLhs = new HashSet<>(rhsVars);
-    missingInLhs.removeAll(lhsVars);
-    if (!missingInLhs.isEmpty()) {
-      JOptionPane.showMessageDialog(mainFrame,
-          "Validation Error in rule '" + rule.getName() + "':\n" +
-              "The following variables from the RHS are missing in the LHS:\n" +
-              String.join(", ", missingInLhs),
-          "Rule Validation Error", JOptionPane.ERROR_MESSAGE);
-      return false;
+  // The live rule text is a preview; it is not validated until saved
+  private void ruleEdited() {
+    if (outputPanel.getLiveUpdateBox().isSelected()) {
+      refreshRuleOutput();
     }
+  }
 
-    if (rule.getType() == RuleType.EQUALS) {
-      Set<String> missingInRhs = new HashSet<>(lhsVars);
-      missingInRhs.removeAll(rhsVars);
-      if (!missingInRhs.isEmpty()) {
-        JOptionPane.showMessageDialog(mainFrame,
-            "Validation Error in rule '" + rule.getName() + "' (reverse direction):\n" +
-                "The following variables from the RHS are missing in the LHS:\n" +
-                String.join(", ", missingInRhs),
-            "Rule Validation Error", JOptionPane.ERROR_MESSAGE);
-        return false;
-      }
+  private boolean validateRule(ZXRule rule) {
+    RuleValidator.Violation violation = RuleValidator.validate(rule);
+    if (violation != null) {
+      JOptionPane.showMessageDialog(mainFrame, violation.message(), violation.title(), JOptionPane.ERROR_MESSAGE);
+      return false;
     }
     return true;
   }
@@ -336,27 +340,81 @@ public class AppController {
       if (!validateRule(currentRuleInEditor)) {
         return;
       }
-      savedRuleState.setData(currentRuleInEditor);
-      outputPanel.getRuleOutputArea().setText(currentRuleInEditor.toLMNtal());
-      outputPanel.getRuleOutputArea().setCaretPosition(0);
+      markRuleSaved();
+      refreshRuleOutput();
+    }
+  }
+
+  /**
+   * Rewrites the graph in the editor with every rule until none matches.
+   * Rules that cannot be matched (invalid, or with a boundary that does not
+   * have exactly one edge) are skipped and listed.
+   */
+  public void applyRulesToCurrentGraph() {
+    if (currentGraphInEditor == null)
+      return;
+    List<RuleMatcher> matchers = new ArrayList<>();
+    List<String> skipped = new ArrayList<>();
+    for (ZXRule rule : rules) {
+      if (rule.isEmpty())
+        continue;
+      try {
+        matchers.add(new RuleMatcher(rule));
+      } catch (IllegalArgumentException e) {
+        skipped.add(rule.getName() + ": " + e.getMessage());
+      }
+    }
+    RewriteEngine.Result result = new RewriteEngine(matchers).rewriteInBatches(currentGraphInEditor,
+        RewriteEngine.DEFAULT_MAX_STEPS);
+    editorPanel.getGraphEditorPanel().getController().recordEdit();
+    editorPanel.getGraphEditorPanel().repaint();
+    graphEdited();
+
+    StringBuilder message = new StringBuilder("Applied " + result.steps() + " rewrite(s).");
+    if (!result.fixpoint()) {
+      message.append("\nStopped after ").append(result.steps()).append(" steps; the rules may not terminate.");
+    }
+    if (!skipped.isEmpty()) {
+      message.append("\n\nSkipped rules:\n").append(String.join("\n", skipped));
     }
+    JOptionPane.showMessageDialog(mainFrame, message.toString(), "Apply Rules", JOptionPane.INFORMATION_MESSAGE);
+  }
+
+  /**
+   * Runs the built-in ZX simplifications on the graph in the editor. X
+   * spiders become Z spiders with toggled edges along the way.
+   */
+  public void simplifyCurrentGraph() {
+    if (currentGraphInEditor == null)
+      return;
+    int before = currentGraphInEditor.getSpiderCount();
+    Simplifier.Result result = new Simplifier(currentGraphInEditor).simplify();
+    editorPanel.getGraphEditorPanel().getController().recordEdit();
+    editorPanel.getGraphEditorPanel().repaint();
+    graphEdited();
+    String message = String.format(
+        "Spiders: %d -> %d%nFusions: %d%nIdentities removed: %d%nEdges cancelled: %d%nColor changes: %d%n"
+            + "Local complementations: %d%nPivots: %d",
+        before, currentGraphInEditor.getSpiderCount(), result.fusions(), result.identities(),
+        result.cancellations(), result.colorChanges(), result.localComplementations(), result.pivots());
+    JOptionPane.showMessageDialog(mainFrame, message, "Simplify", JOptionPane.INFORMATION_MESSAGE);
   }
 
   private void updateAllLMNtalOutput() {
     if (currentGraphInEditor == null || currentRuleInEditor == null) {
-      outputPanel.getGraphOutputArea().setText("// No graph selected.");
-      outputPanel.getRuleOutputArea().setText("// No rule selected.");
+      showGraphMessage("// No graph selected.");
+      showRuleMessage("// No rule selected.");
       return;
     }
     if (currentGraphInEditor.isEmpty()) {
-      outputPanel.getGraphOutputArea().setText("// " + currentGraphInEditor.getName() + " is empty.");
+      showGraphMessage("// " + currentGraphInEditor.getName() + " is empty.");
     } else {
-      outputPanel.getGraphOutputArea().setText(currentGraphInEditor.toLMNtal() + ".");
+      refreshGraphOutput();
     }
     if (currentRuleInEditor.isEmpty()) {
-      outputPanel.getRuleOutputArea().setText("// " + currentRuleInEditor.getName() + " is empty.");
+      showRuleMessage("// " + currentRuleInEditor.getName() + " is empty.");
     } else {
-      outputPanel.getRuleOutputArea().setText(currentRuleInEditor.toLMNtal());
+      refreshRuleOutput();
     }
   }
 
@@ -375,32 +433,15 @@ public class AppController {
           fileToSave = new File(fileToSave.getParentFile(), fileToSave.getName() + ".lmn");
         }
 
-        StringBuilder exportContent = new StringBuilder();
         StringBuilder errorMessages = new StringBuilder();
 
-        exportContent.append("// === Graph Definitions ===\n\n");
-        for (NamedGraph graph : graphs) {
-          if (!graph.isEmpty()) {
-            exportContent.append(String.format("// %s\n%s.\n\n", graph.getName(), graph.toLMNtal()));
-          }
-        }
-
-        exportContent.append("// === Rule Definitions ===\n\n");
-        for (ZXRule rule : rules) {
-          if (rule.isEmpty()) {
-            continue;
-          }
-
-          if (validateRule(rule)) {
-            exportContent.append(String.format("%s\n\n", rule.toLMNtal()));
-          } else {
+        try {
+          List<ZXRule> skippedRules = LMNtalExporter.writeFile(fileToSave.toPath(), graphs, rules,
+              this::validateRule);
+          for (ZXRule rule : skippedRules) {
             errorMessages.append("Rule '").append(rule.getName())
                 .append("' was not exported because it failed validation (boundary nodes or variables).\n");
           }
-        }
-
-        try (FileWriter writer = new FileWriter(fileToSave)) {
-          writer.write(exportContent.toString());
 
           String successMessage = "File exported successfully:\n" + fileToSave.getAbsolutePath();
           if (errorMessages.length() > 0) {
@@ -424,67 +465,157 @@ public class AppController {
   }
 
   public void importFromFile() {
+    if (importTask != null && !importTask.isDone()) {
+      JOptionPane.showMessageDialog(mainFrame, "An import is already in progress.", "Import Info",
+          JOptionPane.INFORMATION_MESSAGE);
+      return;
+    }
     if (!checkForAllUnsavedChanges()) {
       return;
     }
     JFileChooser fileChooser = new JFileChooser();
     fileChooser.setDialogTitle("Import LMNtal file");
     fileChooser.setFileFilter(new FileNameExtensionFilter("LMNtal files (*.lmn)", "lmn"));
+    fileChooser.setMultiSelectionEnabled(true);
     if (fileChooser.showOpenDialog(mainFrame) == JFileChooser.APPROVE_OPTION) {
-      try {
-        LMNtalImporter importer = new LMNtalImporter();
-        importer.importFile(fileChooser.getSelectedFile().toPath());
-
-        List<NamedGraph> importedGraphs = importer.getGraphs();
-        List<ZXRule> importedRules = importer.getRules();
-        List<String> errors = importer.getErrorMessages();
+      File[] selectedFiles = fileChooser.getSelectedFiles();
+      if (selectedFiles.length == 0) {
+        selectedFiles = new File[] { fileChooser.getSelectedFile() };
+      }
+      ImportTask task = new ImportTask(Arrays.stream(selectedFiles).map(File::toPath).toList());
+      importTask = importExecutor.submit(task::run);
+    }
+  }
 
-        if (!errors.isEmpty()) {
-          String errorMsg = "Encountered errors during import:\n" + String.join("\n", errors);
-          JOptionPane.showMessageDialog(mainFrame, errorMsg, "Import Warning", JOptionPane.WARNING_MESSAGE);
+  /**
+   * Parses and lays out on the import executor. Graphs are added to the list
+   * as soon as they are built, so they can be edited while the rest loads;
+   * rules follow at the end, once two-way pairs have been merged. If the
+   * import is cancelled or fails, the previous graphs and rules are put back.
+   * All model and UI updates happen on the EDT through invokeLater, in order.
+   */
+  private class ImportTask {
+    private static final int PROGRESS_STEPS = 1000;
+    private static final int CANCEL_POLL_MILLIS = 100;
+
+    private final List<Path> paths;
+    private final LMNtalImporter importer = new LMNtalImporter();
+    private final ProgressMonitor monitor;
+    // Only touched on the EDT
+    private final WorkspaceSwap swap = new WorkspaceSwap(graphs, rules, graphListModel, ruleListModel);
+    private final NamedGraph previousGraph = currentGraphInEditor;
+    private final ZXRule previousRule = currentRuleInEditor;
+    // The parser does not report progress within an element, so the cancel
+    // button is polled rather than checked on progress updates
+    private final Timer cancelPoll;
+    // Only touched on the import thread
+    private int lastStep = -1;
+
+    ImportTask(List<Path> paths) {
+      this.paths = paths;
+      String title = paths.size() == 1 ? "Importing " + paths.get(0).getFileName()
+          : "Importing " + paths.size() + " files";
+      monitor = new ProgressMonitor(mainFrame, title, null, 0, PROGRESS_STEPS);
+      monitor.setMillisToDecideToPopup(100);
+      monitor.setMillisToPopup(300);
+      importer.setLayoutEngine(toolbar.getLayoutEngine());
+      importer.setGraphListener(graph -> SwingUtilities.invokeLater(() -> publish(graph)));
+      importer.setProgressListener(this::reportProgress);
+      cancelPoll = new Timer(CANCEL_POLL_MILLIS, e -> {
+        if (monitor.isCanceled() && importTask != null) {
+          importTask.cancel(true);
         }
+      });
+      cancelPoll.start();
+    }
 
-        if (importedGraphs.isEmpty() && importedRules.isEmpty()) {
-          JOptionPane.showMessageDialog(mainFrame, "No valid graphs or rules found in the file.", "Import Info",
-              JOptionPane.INFORMATION_MESSAGE);
-          return;
+    void run() {
+      try {
+        if (paths.size() > 1) {
+          importer.importFiles(paths);
+        } else {
+          importer.importFile(paths.get(0));
         }
+        SwingUtilities.invokeLater(this::finish);
+      } catch (CancellationException e) {
+        SwingUtilities.invokeLater(() -> abort("Import cancelled.", "Import Cancelled",
+            JOptionPane.INFORMATION_MESSAGE));
+      } catch (IOException e) {
+        SwingUtilities.invokeLater(() -> abort("Error reading file: " + e.getMessage(), "Import Error",
+            JOptionPane.ERROR_MESSAGE));
+      } catch (Exception e) {
+        SwingUtilities.invokeLater(() -> abort("An unexpected error occurred during import: " + e.getMessage(),
+            "Error", JOptionPane.ERROR_MESSAGE));
+      }
+    }
 
-        // Clear existing items and update models
-        graphs.clear();
-        rules.clear();
-        graphListModel.clear();
-        ruleListModel.clear();
-
-        importedGraphs.forEach(g -> {
-          graphs.add(g);
-          graphListModel.addElement(g);
-        });
-        importedRules.forEach(r -> {
-          rules.add(r);
-          ruleListModel.addElement(r);
-        });
-
-        // Select the first imported item if available
-        if (!graphs.isEmpty()) {
-          sidebarPanel.getGraphList().setSelectedIndex(0);
-        } else if (!rules.isEmpty()) {
+    // Posts at most one update per step so large files do not flood the EDT
+    private void reportProgress(double fraction) {
+      int step = (int) (fraction * PROGRESS_STEPS);
+      if (step == lastStep)
+        return;
+      lastStep = step;
+      SwingUtilities.invokeLater(() -> monitor.setProgress(step));
+    }
+
+    private void publish(NamedGraph graph) {
+      swap.addGraph(graph);
+      if (graphs.size() == 1) {
+        sidebarPanel.getGraphList().setSelectedIndex(0);
+      }
+    }
+
+    // Puts the previous workspace back and reports why
+    private void abort(String message, String title, int messageType) {
+      cancelPoll.stop();
+      monitor.close();
+      if (swap.rollback()) {
+        // Selecting the current items again does not reach selectGraph/selectRule
+        currentGraphInEditor = previousGraph;
+        currentRuleInEditor = previousRule;
+        editorPanel.getGraphEditorPanel().setGraph(previousGraph);
+        editorPanel.getRuleEditorPanel().setRule(previousRule);
+        markRuleSaved();
+        sidebarPanel.getGraphList().setSelectedValue(previousGraph, true);
+        sidebarPanel.getRuleList().setSelectedValue(previousRule, true);
+        convertAndSaveCurrentGraph();
+        message += " The previous graphs and rules were restored.";
+      }
+      JOptionPane.showMessageDialog(mainFrame, message, title, messageType);
+    }
+
+    private void finish() {
+      cancelPoll.stop();
+      monitor.close();
+      List<ZXRule> importedRules = importer.getRules();
+      List<String> errors = importer.getErrorMessages();
+
+      if (!errors.isEmpty()) {
+        String errorMsg = "Encountered errors during import:\n" + String.join("\n", errors);
+        JOptionPane.showMessageDialog(mainFrame, errorMsg, "Import Warning", JOptionPane.WARNING_MESSAGE);
+      }
+
+      if (!swap.isReplaced() && importedRules.isEmpty()) {
+        JOptionPane.showMessageDialog(mainFrame, "No valid graphs or rules found in the file.", "Import Info",
+            JOptionPane.INFORMATION_MESSAGE);
+        return;
+      }
+
+      swap.addRules(importedRules);
+      swap.commit();
+
+      // The first graph was selected when it arrived
+      if (graphs.isEmpty()) {
+        if (!rules.isEmpty()) {
           sidebarPanel.getRuleList().setSelectedIndex(0);
         } else {
           // Create new empty graph/rule if import was empty but successful
           createNewGraph();
           createNewRule();
         }
-        JOptionPane.showMessageDialog(mainFrame, "Import successful!", "Import Complete",
-            JOptionPane.INFORMATION_MESSAGE);
-
-      } catch (IOException e) {
-        JOptionPane.showMessageDialog(mainFrame, "Error reading file: " + e.getMessage(), "Import Error",
-            JOptionPane.ERROR_MESSAGE);
-      } catch (Exception e) {
-        JOptionPane.showMessageDialog(mainFrame, "An unexpected error occurred during import: " + e.getMessage(),
-            "Error", JOptionPane.ERROR_MESSAGE);
       }
+      JOptionPane.showMessageDialog(mainFrame, "Import successful!", "Import Complete",
+          JOptionPane.INFORMATION_MESSAGE);
     }
   }
 
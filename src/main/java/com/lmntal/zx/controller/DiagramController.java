@@ -1,22 +1,34 @@
 package com.lmntal.zx.controller;
 
 import java.awt.Point;
+import java.awt.event.ActionEvent;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.stream.Collectors;
 
+import javax.swing.AbstractAction;
+import javax.swing.JComponent;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPopupMenu;
+import javax.swing.KeyStroke;
 import javax.swing.SwingUtilities;
 
+import com.lmntal.zx.layout.CircleLayout;
+import com.lmntal.zx.layout.LayoutEngine;
 import com.lmntal.zx.model.Edge;
 import com.lmntal.zx.model.EdgeType;
+import com.lmntal.zx.model.GraphHistory;
 import com.lmntal.zx.model.Spider;
 import com.lmntal.zx.model.SpiderType;
 import com.lmntal.zx.model.ZXGraph;
@@ -28,18 +40,88 @@ public class DiagramController extends MouseAdapter {
   private SpiderType currentSpiderType = SpiderType.Z;
   private EdgeType currentEdgeType = EdgeType.NORMAL;
   private boolean showHadamardGate = false;
+  private LayoutEngine layoutEngine = new CircleLayout();
 
   private Spider spiderForRightDrag = null;
   private Spider edgeStartSpider = null;
-  private Point pressPoint = null;
+  private Point pressPoint = null; // In graph coordinates
+  private Point pressScreenPoint = null;
+  private Point lastScreenPoint = null;
+  private boolean panning = false;
   private Point currentMousePoint = null;
   private ZXGraph otherGraph = null;
+  // Kept per graph, so switching back to a graph keeps its undo steps. A
+  // history does not hold its graph, so it goes once the graph is dropped.
+  private final Map<ZXGraph, GraphHistory> histories = new WeakHashMap<>();
+  private Runnable editListener = () -> {
+  };
 
   public DiagramController(DrawingPanel panel, boolean isRuleEditorContext) {
     this.panel = panel;
     this.isRuleEditorContext = isRuleEditorContext;
     panel.addMouseListener(this);
     panel.addMouseMotionListener(this);
+    panel.addMouseWheelListener(this);
+    panel.setFocusable(true);
+    bindKey(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK), "undo", this::undo);
+    bindKey(KeyStroke.getKeyStroke(KeyEvent.VK_Y, InputEvent.CTRL_DOWN_MASK), "redo", this::redo);
+    bindKey(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK), "redo",
+        this::redo);
+  }
+
+  private void bindKey(KeyStroke key, String name, Runnable action) {
+    panel.getInputMap(JComponent.WHEN_FOCUSED).put(key, name);
+    panel.getActionMap().put(name, new AbstractAction() {
+      @Override
+      public void actionPerformed(ActionEvent e) {
+        action.run();
+      }
+    });
+  }
+
+  private GraphHistory history() {
+    return histories.computeIfAbsent(panel.getGraph(), GraphHistory::new);
+  }
+
+  /**
+   * Ends the current undo step of the graph in the panel. Edits made through
+   * this controller end their step themselves; call this after changing the
+   * graph from elsewhere so the change can be undone on its own.
+   */
+  public void recordEdit() {
+    if (panel.getGraph() != null) {
+      history().record();
+    }
+  }
+
+  public void undo() {
+    if (panel.getGraph() != null && history().undo()) {
+      panel.endInteraction();
+      panel.repaint();
+      editListener.run();
+    }
+  }
+
+  public void redo() {
+    if (panel.getGraph() != null && history().redo()) {
+      panel.endInteraction();
+      panel.repaint();
+      editListener.run();
+    }
+  }
+
+  /** Runs after each edit, undo and redo made through this controller. */
+  public void setEditListener(Runnable editListener) {
+    this.editListener = editListener;
+  }
+
+  // Records the edit just made as one undo step
+  private void commit() {
+    boolean changed = panel.getGraph() != null && history().record();
+    panel.repaint();
+    if (changed) {
+      editListener.run();
+    }
   }
 
   public void setOtherGraph(ZXGraph otherGraph) {
@@ -52,43 +134,65 @@ public class DiagramController extends MouseAdapter {
     if (graph == null)
       return;
 
-    pressPoint = e.getPoint();
-    Spider targetSpider = graph.findSpiderAt(e.getX(), e.getY(), DrawingPanel.SPIDER_RADIUS);
+    panel.requestFocusInWindow();
+    recordEdit(); // Changes made outside the editor become their own step
+    pressPoint = panel.toWorld(e.getPoint());
+    pressScreenPoint = e.getPoint();
+    lastScreenPoint = e.getPoint();
+    Spider targetSpider = graph.findSpiderAt(pressPoint.x, pressPoint.y, DrawingPanel.SPIDER_RADIUS);
 
     if (SwingUtilities.isRightMouseButton(e)) {
       if (targetSpider != null) {
         spiderForRightDrag = targetSpider;
+        panel.beginInteraction(targetSpider);
       }
     } else if (SwingUtilities.isLeftMouseButton(e)) {
       if (targetSpider != null) {
         edgeStartSpider = targetSpider;
+        panel.beginInteraction(null);
+      } else {
+        panning = true;
       }
+    } else if (SwingUtilities.isMiddleMouseButton(e)) {
+      panning = true;
     }
     panel.repaint();
   }
 
   @Override
   public void mouseDragged(MouseEvent e) {
-    currentMousePoint = e.getPoint();
-    if (spiderForRightDrag != null && pressPoint != null) {
-      int dx = e.getX() - pressPoint.x;
-      int dy = e.getY() - pressPoint.y;
+    Point worldPoint = panel.toWorld(e.getPoint());
+    currentMousePoint = worldPoint;
+    if (panning && lastScreenPoint != null) {
+      panel.panBy(e.getX() - lastScreenPoint.x, e.getY() - lastScreenPoint.y);
+    } else if (spiderForRightDrag != null && pressPoint != null) {
+      int dx = worldPoint.x - pressPoint.x;
+      int dy = worldPoint.y - pressPoint.y;
       spiderForRightDrag.setLocation(spiderForRightDrag.getX() + dx, spiderForRightDrag.getY() + dy);
-      pressPoint = e.getPoint();
+      pressPoint = worldPoint;
     }
+    lastScreenPoint = e.getPoint();
     panel.repaint();
   }
 
+  @Override
+  public void mouseWheelMoved(MouseWheelEvent e) {
+    panel.zoomAt(Math.pow(1.1, -e.getPreciseWheelRotation()), e.getPoint());
+  }
+
   @Override
   public void mouseReleased(MouseEvent e) {
+    panel.endInteraction();
+    panning = false;
     ZXGraph graph = panel.getGraph();
     if (graph == null || pressPoint == null)
       return;
 
-    boolean isClick = pressPoint.distance(e.getPoint()) < 5;
+    boolean isClick = pressScreenPoint.distance(e.getPoint()) < 5;
+    Point worldPoint = panel.toWorld(e.getPoint());
 
     if (SwingUtilities.isLeftMouseButton(e)) {
-      Spider targetSpider = graph.findSpiderAt(e.getX(), e.getY(), DrawingPanel.SPIDER_RADIUS);
+      Spider targetSpider = graph.findSpiderAt(worldPoint.x, worldPoint.y, DrawingPanel.SPIDER_RADIUS);
 
       if (isClick) {
         if (targetSpider == null) {
@@ -97,10 +201,10 @@ public class DiagramController extends MouseAdapter {
               JOptionPane.showMessageDialog(panel, "Boundary nodes can only be added in the rule editor.", "Info",
                   JOptionPane.INFORMATION_MESSAGE);
             } else {
-              addBoundarySpider(e.getX(), e.getY());
+              addBoundarySpider(worldPoint.x, worldPoint.y);
             }
           } else {
-            graph.addSpider(new Spider(e.getX(), e.getY(), currentSpiderType));
+            graph.addSpider(new Spider(worldPoint.x, worldPoint.y, currentSpiderType));
           }
         }
       } else { // It's a drag
@@ -118,8 +222,10 @@ public class DiagramController extends MouseAdapter {
     spiderForRightDrag = null;
     edgeStartSpider = null;
     pressPoint = null;
+    pressScreenPoint = null;
+    lastScreenPoint = null;
     currentMousePoint = null;
-    panel.repaint();
+    commit();
   }
 
   private void addBoundarySpider(int x, int y) {
@@ -137,7 +243,7 @@ public class DiagramController extends MouseAdapter {
   }
 
   private void handleRightClick(MouseEvent e) {
-    if (e.isConsumed() || (pressPoint != null && pressPoint.distance(e.getPoint()) >= 5)) {
+    if (e.isConsumed() || (pressScreenPoint != null && pressScreenPoint.distance(e.getPoint()) >= 5)) {
       return;
     }
 
@@ -145,17 +251,52 @@ public class DiagramController extends MouseAdapter {
     if (graph == null)
       return;
 
-    Spider targetSpider = graph.findSpiderAt(e.getX(), e.getY(), DrawingPanel.SPIDER_RADIUS);
+    Point worldPoint = panel.toWorld(e.getPoint());
+    Spider targetSpider = graph.findSpiderAt(worldPoint.x, worldPoint.y, DrawingPanel.SPIDER_RADIUS);
     if (targetSpider != null) {
       showSpiderContextMenu(targetSpider, e.getPoint());
       return;
     }
-    Edge targetEdge = graph.findEdgeAt(e.getX(), e.getY(), 5);
+    // Edge tolerance stays 5 pixels on screen regardless of zoom
+    int edgeTolerance = (int) Math.ceil(5 / panel.getZoom());
+    Edge targetEdge = graph.findEdgeAt(worldPoint.x, worldPoint.y, edgeTolerance);
     if (targetEdge != null) {
       showEdgeContextMenu(targetEdge, e.getPoint());
+    } else {
+      showCanvasContextMenu(e.getPoint());
     }
   }
 
+  private void showCanvasContextMenu(Point p) {
+    JPopupMenu menu = new JPopupMenu();
+    JMenuItem resetViewItem = new JMenuItem("Reset Zoom");
+    resetViewItem.addActionListener(ev -> panel.resetView());
+    menu.add(resetViewItem);
+    JMenuItem layoutItem = new JMenuItem("Auto Layout (" + layoutEngine + ")");
+    layoutItem.addActionListener(ev -> applyLayout());
+    menu.add(layoutItem);
+    menu.addSeparator();
+    JMenuItem undoItem = new JMenuItem("Undo (Ctrl+Z)");
+    undoItem.setEnabled(history().canUndo());
+    undoItem.addActionListener(ev -> undo());
+    menu.add(undoItem);
+    JMenuItem redoItem = new JMenuItem("Redo (Ctrl+Y)");
+    redoItem.setEnabled(history().canRedo());
+    redoItem.addActionListener(ev -> redo());
+    menu.add(redoItem);
+    menu.show(panel, p.x, p.y);
+  }
+
+  // Lays the graph out around the middle of the visible area
+  private void applyLayout() {
+    ZXGraph graph = panel.getGraph();
+    if (graph == null)
+      return;
+    Point center = panel.toWorld(new Point(panel.getWidth() / 2, panel.getHeight() / 2));
+    layoutEngine.layout(graph, center.x, center.y);
+    commit();
+  }
+
   private void showSpiderContextMenu(Spider spider, Point p) {
     JPopupMenu menu = new JPopupMenu();
     ZXGraph graph = panel.getGraph();
@@ -186,7 +327,7 @@ public class DiagramController extends MouseAdapter {
             } else {
               spider.setLabel(selected);
             }
-            panel.repaint();
+            commit();
           }
         });
         menu.add(editLabelItem);
@@ -199,7 +340,7 @@ public class DiagramController extends MouseAdapter {
           spider.setColorUndefined(false);
           updateVariableLabel(spider);
         }
-        panel.repaint();
+        commit();
       });
 
       JMenuItem phaseItem = new JMenuItem("Edit Phase");
@@ -211,7 +352,7 @@ public class DiagramController extends MouseAdapter {
           if (newPhase.equals("?") && spider.isUndefined()) {
             updateVariableLabel(spider);
           }
-          panel.repaint();
+          commit();
         }
       });
       menu.add(toggleTypeItem);
@@ -223,7 +364,7 @@ public class DiagramController extends MouseAdapter {
         toggleUndefinedColorItem.addActionListener(ev -> {
           spider.setColorUndefined(!spider.isColorUndefined());
           updateVariableLabel(spider);
-          panel.repaint();
+          commit();
         });
 
         JMenuItem setUndefinedPhaseItem = new JMenuItem("Set Phase Undefined (?)");
@@ -231,7 +372,7 @@ public class DiagramController extends MouseAdapter {
           if (!spider.isPhaseUndefined()) {
             spider.setPhase("?");
             updateVariableLabel(spider);
-            panel.repaint();
+            commit();
           }
         });
         menu.add(toggleUndefinedColorItem);
@@ -263,7 +404,7 @@ public class DiagramController extends MouseAdapter {
             } else {
               spider.setVariableLabel(selected);
             }
-            panel.repaint();
+            commit();
           }
         });
         menu.add(setVarLabelItem);
@@ -275,7 +416,7 @@ public class DiagramController extends MouseAdapter {
     deleteItem.addActionListener(ev -> {
       if (graph != null) {
         graph.removeSpider(spider);
-        panel.repaint();
+        commit();
       }
     });
 
@@ -317,13 +458,13 @@ public class DiagramController extends MouseAdapter {
     JMenuItem toggleHadamardItem = new JMenuItem("Toggle Hadamard");
     toggleHadamardItem.addActionListener(ev -> {
       edge.setType(edge.getType() == EdgeType.NORMAL ? EdgeType.HADAMARD : EdgeType.NORMAL);
-      panel.repaint();
+      commit();
     });
     JMenuItem deleteItem = new JMenuItem("Delete Edge");
     deleteItem.addActionListener(ev -> {
       if (graph != null) {
         graph.removeEdge(edge);
-        panel.repaint();
+        commit();
       }
     });
     menu.add(toggleHadamardItem);
@@ -344,6 +485,10 @@ public class DiagramController extends MouseAdapter {
     panel.repaint();
   }
 
+  public void setLayoutEngine(LayoutEngine layoutEngine) {
+    this.layoutEngine = layoutEngine;
+  }
+
   public boolean isShowHadamardGate() {
     return showHadamardGate;
   }
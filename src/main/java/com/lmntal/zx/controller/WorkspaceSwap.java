@@ -0,0 +1,87 @@
+package com.lmntal.zx.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.DefaultListModel;
+
+import com.lmntal.zx.model.NamedGraph;
+import com.lmntal.zx.model.ZXRule;
+
+/**
+ * Replaces the graphs and rules of the workspace with imported ones while an
+ * import runs. The previous contents are cleared when the first imported
+ * item arrives but kept aside until {@link #commit}, so a cancelled or
+ * failed import can put them back with {@link #rollback}. Only used on the
+ * EDT.
+ */
+final class WorkspaceSwap {
+  private final List<NamedGraph> graphs;
+  private final List<ZXRule> rules;
+  private final DefaultListModel<NamedGraph> graphListModel;
+  private final DefaultListModel<ZXRule> ruleListModel;
+  // Set once the previous contents have been cleared
+  private List<NamedGraph> previousGraphs;
+  private List<ZXRule> previousRules;
+
+  WorkspaceSwap(List<NamedGraph> graphs, List<ZXRule> rules, DefaultListModel<NamedGraph> graphListModel,
+      DefaultListModel<ZXRule> ruleListModel) {
+    this.graphs = graphs;
+    this.rules = rules;
+    this.graphListModel = graphListModel;
+    this.ruleListModel = ruleListModel;
+  }
+
+  /** Whether the previous contents have been cleared. */
+  boolean isReplaced() {
+    return previousGraphs != null;
+  }
+
+  void addGraph(NamedGraph graph) {
+    replace();
+    graphs.add(graph);
+    graphListModel.addElement(graph);
+  }
+
+  void addRules(List<ZXRule> imported) {
+    replace();
+    for (ZXRule rule : imported) {
+      rules.add(rule);
+      ruleListModel.addElement(rule);
+    }
+  }
+
+  /** Keeps the imported contents; the previous ones can no longer be restored. */
+  void commit() {
+    previousGraphs = null;
+    previousRules = null;
+  }
+
+  /** Puts the previous contents back. Returns false if they were never cleared. */
+  boolean rollback() {
+    if (!isReplaced())
+      return false;
+    clear();
+    previousGraphs.forEach(graphListModel::addElement);
+    previousRules.forEach(ruleListModel::addElement);
+    graphs.addAll(previousGraphs);
+    rules.addAll(previousRules);
+    commit();
+    return true;
+  }
+
+  private void replace() {
+    if (isReplaced())
+      return;
+    previousGraphs = new ArrayList<>(graphs);
+    previousRules = new ArrayList<>(rules);
+    clear();
+  }
+
+  private void clear() {
+    graphs.clear();
+    rules.clear();
+    graphListModel.clear();
+    ruleListModel.clear();
+  }
+}
@@ -0,0 +1,84 @@
+package com.lmntal.zx.exporter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.Predicate;
+
+import com.lmntal.zx.model.CompactGraph;
+import com.lmntal.zx.model.NamedGraph;
+import com.lmntal.zx.model.ZXDiagram;
+import com.lmntal.zx.model.ZXGraph;
+import com.lmntal.zx.model.ZXRule;
+
+public final class LMNtalExporter {
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private LMNtalExporter() {
+  }
+
+  /**
+   * Writes the program to a file through a buffered channel writer. Output is
+   * streamed, so memory use does not grow with the size of the file.
+   *
+   * @return the rules that were skipped
+   */
+  public static List<ZXRule> writeFile(Path path, List<NamedGraph> graphs, List<ZXRule> rules,
+      Predicate<ZXRule> isExportable) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING);
+        Writer writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+      return write(writer, graphs, rules, isExportable);
+    }
+  }
+
+  /**
+   * Writes all non-empty graphs and rules as one LMNtal program. Rules
+   * rejected by {@code isExportable} are skipped.
+   *
+   * @return the rules that were skipped
+   */
+  public static List<ZXRule> write(Appendable out, List<NamedGraph> graphs, List<ZXRule> rules,
+      Predicate<ZXRule> isExportable) throws IOException {
+    List<ZXRule> skipped = new ArrayList<>();
+
+    out.append("// === Graph Definitions ===\n\n");
+    for (NamedGraph graph : graphs) {
+      writeGraph(out, graph.getName(), graph);
+    }
+
+    out.append("// === Rule Definitions ===\n\n");
+    for (ZXRule rule : rules) {
+      if (rule.isEmpty()) {
+        continue;
+      }
+      if (isExportable.test(rule)) {
+        rule.writeLMNtal(out);
+        out.append("\n\n");
+      } else {
+        skipped.add(rule);
+      }
+    }
+    return skipped;
+  }
+
+  /**
+   * Writes one graph definition, a {@link ZXGraph} or a {@link CompactGraph}
+   * alike. Empty graphs are skipped.
+   */
+  public static void writeGraph(Appendable out, String name, ZXDiagram graph) throws IOException {
+    if (graph.isEmpty())
+      return;
+    out.append("// ").append(name).append('\n');
+    graph.writeLMNtal(out, new HashSet<>());
+    out.append(".\n\n");
+  }
+}
@@ -1,25 +1,54 @@
 package com.lmntal.zx.importer;
 
+import com.lmntal.zx.layout.CircleLayout;
+import com.lmntal.zx.layout.LayoutEngine;
 import com.lmntal.zx.model.*;
 import com.lmntal.zx.parser.LMNtalBaseListener;
 import com.lmntal.zx.parser.LMNtalLexer;
 import com.lmntal.zx.parser.LMNtalParser;
-import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonTokenFactory;
 import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.UnbufferedCharStream;
+import org.antlr.v4.runtime.UnbufferedTokenStream;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
 
 public class LMNtalImporter {
+  private static final int STREAM_BUFFER_SIZE = 1 << 16;
 
   private final List<NamedGraph> graphs = new ArrayList<>();
   private final List<ZXRule> rules = new ArrayList<>();
   private final List<String> errorMessages = new ArrayList<>();
   private final AtomicInteger graphCounter = new AtomicInteger(1);
+  private LayoutEngine layoutEngine = new CircleLayout();
+  private Consumer<NamedGraph> graphListener = graph -> {
+  };
+  private DoubleConsumer progressListener = fraction -> {
+  };
 
   public void importFile(Path path) throws IOException {
     // Clear previous results
@@ -29,13 +58,34 @@ public class LMNtalImporter {
     this.graphCounter.set(1);
 
     // Setup ANTLR parser
-    LMNtalLexer lexer = new LMNtalLexer(CharStreams.fromPath(path));
+    CharStream input;
+    try {
+      input = MappedCharStream.open(path);
+    } catch (ClosedByInterruptException e) {
+      throw new CancellationException("Import was cancelled");
+    }
+    LMNtalLexer lexer = new LMNtalLexer(input);
     CommonTokenStream tokens = new CommonTokenStream(lexer);
     LMNtalParser parser = new LMNtalParser(tokens);
     parser.removeErrorListeners(); // remove default console error listeners
 
     ImporterErrorListener errorListener = new ImporterErrorListener();
-    parser.addErrorListener(errorListener);
+    double inputSize = Math.max(1, lexer.getInputStream().size());
+    parser.addParseListener(new LMNtalBaseListener() {
+      // A single element can take long to parse, so cancellation is checked
+      // at every rule rather than only between elements
+      @Override
+      public void enterEveryRule(ParserRuleContext ctx) {
+        checkCancelled();
+      }
+
+      @Override
+      public void exitToplevel_element(LMNtalParser.Toplevel_elementContext ctx) {
+        if (ctx.getStop() != null) {
+          progressListener.accept(0.5 * ctx.getStop().getStopIndex() / inputSize);
+        }
+      }
+    });
 
     // Temporary storage for parsed rules and their guards
     List<ZXRule> rawRules = new ArrayList<>();
@@ -44,43 +94,206 @@ public class LMNtalImporter {
     // Parse the file
     ParseTreeWalker walker = new ParseTreeWalker();
     // Pass temporary storage to the listener
-    ImporterListener listener = new ImporterListener(rawRules, ruleGuards);
+    ImporterListener listener = new ImporterListener(graph -> {
+      graphs.add(graph);
+      graphListener.accept(graph);
+    }, (rule, guard) -> {
+      rawRules.add(rule);
+      if (guard != null) {
+        ruleGuards.put(rule, guard);
+      }
+    }) {
+      @Override
+      public void enterToplevel_element(LMNtalParser.Toplevel_elementContext ctx) {
+        checkCancelled();
+        progressListener.accept(0.5 + 0.5 * ctx.getStart().getStartIndex() / inputSize);
+      }
+    };
     try {
-      walker.walk(listener, parser.file());
+      walker.walk(listener, parse(parser, tokens, errorListener));
+    } catch (CancellationException e) {
+      throw e;
     } catch (Exception e) {
       errorMessages.add("A critical error occurred during processing: " + e.getMessage());
     }
 
     // Process parsed rules to identify and merge two-way rules
-    Set<ZXRule> pairedRules = new HashSet<>();
+    pairTwoWayRules(rawRules, ruleGuards);
+
+    if (!errorListener.getErrors().isEmpty()) {
+      errorMessages.add("Syntax errors detected in LMNtal file:");
+      errorMessages.addAll(errorListener.getErrors());
+    }
+    progressListener.accept(1.0);
+  }
+
+  /**
+   * Imports a file one top-level element at a time. Characters and tokens are
+   * read through unbuffered streams and each element's parse tree is dropped
+   * once it has been converted, so memory use does not grow with the file.
+   * Graphs and rules are passed to the consumers as soon as they are complete
+   * and are not collected in {@link #getGraphs()} or {@link #getRules()}.
+   * Rules are not paired into two-way rules, since that needs the whole file;
+   * a forward/backward pair is delivered as two one-way rules, which export
+   * to the same LMNtal. Errors are collected in {@link #getErrorMessages()}.
+   */
+  public void importStreaming(Path path, Consumer<NamedGraph> graphConsumer, Consumer<ZXRule> ruleConsumer)
+      throws IOException {
+    this.graphs.clear();
+    this.rules.clear();
+    this.errorMessages.clear();
+    this.graphCounter.set(1);
+
+    ImporterErrorListener errorListener = new ImporterErrorListener();
+    try (InputStream in = Files.newInputStream(path)) {
+      LMNtalLexer lexer = new LMNtalLexer(new UnbufferedCharStream(in, STREAM_BUFFER_SIZE, StandardCharsets.UTF_8));
+      // Tokens must own their text, the character buffer is reused
+      lexer.setTokenFactory(new CommonTokenFactory(true));
+      TokenStream tokens = new UnbufferedTokenStream<>(lexer);
+      LMNtalParser parser = new LMNtalParser(tokens);
+      parser.removeErrorListeners();
+      parser.addErrorListener(errorListener);
+
+      ParseTreeWalker walker = new ParseTreeWalker();
+      ImporterListener listener = new ImporterListener(graphConsumer, (rule, guard) -> ruleConsumer.accept(rule));
+      try {
+        while (tokens.LA(1) != Token.EOF) {
+          int start = tokens.index();
+          walker.walk(listener, parser.toplevel_element());
+          if (tokens.index() == start) {
+            // Recovery could not consume anything here; skip the token
+            parser.consume();
+          }
+        }
+      } catch (Exception e) {
+        errorMessages.add("A critical error occurred during processing: " + e.getMessage());
+      }
+    }
+
+    if (!errorListener.getErrors().isEmpty()) {
+      errorMessages.add("Syntax errors detected in LMNtal file:");
+      errorMessages.addAll(errorListener.getErrors());
+    }
+  }
+
+  /**
+   * Parses with SLL prediction and bails out on the first syntax error. Only
+   * input that SLL cannot handle, including every file with errors, is parsed
+   * again with full LL and the error listener, so messages are the same as a
+   * plain LL parse.
+   */
+  static LMNtalParser.FileContext parse(LMNtalParser parser, CommonTokenStream tokens,
+      ImporterErrorListener errorListener) {
+    parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+    parser.setErrorHandler(new BailErrorStrategy());
+    try {
+      return parser.file();
+    } catch (ParseCancellationException e) {
+      tokens.seek(0);
+      parser.reset();
+      parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+      parser.setErrorHandler(new DefaultErrorStrategy());
+      parser.addErrorListener(errorListener);
+      return parser.file();
+    }
+  }
+
+  /**
+   * Imports several files concurrently. Each file gets its own lexer, parser
+   * and listener on a virtual thread; only the generated parser's DFA cache is
+   * shared. Results are merged in the order of {@code paths}, graphs are
+   * numbered graph_1, graph_2, ... across all files, and messages are
+   * prefixed with the file they came from. Graphs reach the graph listener
+   * file by file, in that order.
+   */
+  public void importFiles(List<Path> paths) {
+    this.graphs.clear();
+    this.rules.clear();
+    this.errorMessages.clear();
+    this.graphCounter.set(1);
+
+    List<Future<LMNtalImporter>> futures = new ArrayList<>(paths.size());
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (Path path : paths) {
+        futures.add(executor.submit(() -> {
+          LMNtalImporter importer = new LMNtalImporter();
+          importer.setLayoutEngine(layoutEngine);
+          importer.importFile(path);
+          return importer;
+        }));
+      }
+
+      // Merge while later files are still being parsed
+      for (int i = 0; i < paths.size(); i++) {
+        String prefix = paths.get(i).getFileName() + ": ";
+        try {
+          LMNtalImporter part = futures.get(i).get();
+          for (NamedGraph graph : part.getGraphs()) {
+            graph.setName("graph_" + graphCounter.getAndIncrement());
+            this.graphs.add(graph);
+            graphListener.accept(graph);
+          }
+          this.rules.addAll(part.getRules());
+          for (String message : part.getErrorMessages()) {
+            errorMessages.add(prefix + message);
+          }
+        } catch (InterruptedException e) {
+          // Stop the remaining files; closing the executor below only waits for them
+          Thread.currentThread().interrupt();
+          executor.shutdownNow();
+          throw new CancellationException("Import was cancelled");
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof IOException) {
+            errorMessages.add(prefix + "Error reading file: " + cause.getMessage());
+          } else {
+            errorMessages.add(prefix + "A critical error occurred during processing: " + cause.getMessage());
+          }
+        }
+        progressListener.accept((i + 1.0) / paths.size());
+      }
+    }
+  }
+
+  /**
+   * Merges each rule with the first later rule of the same name and guard
+   * whose sides are swapped, producing a two-way rule. Candidates are looked
+   * up by structural hash, so only rules that can actually match are compared.
+   */
+  private void pairTwoWayRules(List<ZXRule> rawRules, Map<ZXRule, String> ruleGuards) {
+    Map<RuleKey, List<Integer>> buckets = new HashMap<>();
+    List<RuleKey> keys = new ArrayList<>(rawRules.size());
     for (int i = 0; i < rawRules.size(); i++) {
-      ZXRule rule1 = rawRules.get(i);
-      if (pairedRules.contains(rule1)) {
+      ZXRule rule = rawRules.get(i);
+      RuleKey key = new RuleKey(rule.getName(), ruleGuards.getOrDefault(rule, ""),
+          rule.getLhs().getStructuralHash(), rule.getRhs().getStructuralHash());
+      keys.add(key);
+      buckets.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+    }
+
+    boolean[] paired = new boolean[rawRules.size()];
+    for (int i = 0; i < rawRules.size(); i++) {
+      if (paired[i]) {
         continue;
       }
+      ZXRule rule1 = rawRules.get(i);
+      List<Integer> candidates = buckets.getOrDefault(keys.get(i).reversed(), List.of());
 
       boolean foundPair = false;
-      for (int j = i + 1; j < rawRules.size(); j++) {
-        ZXRule rule2 = rawRules.get(j);
-        if (pairedRules.contains(rule2)) {
+      for (int j : candidates) {
+        if (j <= i || paired[j]) {
           continue;
         }
-
-        String guard1 = ruleGuards.getOrDefault(rule1, "");
-        String guard2 = ruleGuards.getOrDefault(rule2, "");
-
-        // Check for same name, same guard, and reverse structure
-        if (rule1.getName().equals(rule2.getName()) &&
-            guard1.equals(guard2) &&
-            rule1.getLhs().isIdenticalTo(rule2.getRhs()) &&
+        ZXRule rule2 = rawRules.get(j);
+        if (rule1.getLhs().isIdenticalTo(rule2.getRhs()) &&
             rule1.getRhs().isIdenticalTo(rule2.getLhs())) {
 
           // Found a pair, create a single two-way rule from rule1
           rule1.setType(RuleType.EQUALS);
           this.rules.add(rule1);
 
-          pairedRules.add(rule1);
-          pairedRules.add(rule2);
+          paired[i] = true;
+          paired[j] = true;
           foundPair = true;
           break;
         }
@@ -91,10 +304,31 @@ public class LMNtalImporter {
         this.rules.add(rule1);
       }
     }
+  }
 
-    if (!errorListener.getErrors().isEmpty()) {
-      errorMessages.add("Syntax errors detected in LMNtal file:");
-      errorMessages.addAll(errorListener.getErrors());
+  /** Sets the layout applied to every imported graph and rule side. */
+  public void setLayoutEngine(LayoutEngine layoutEngine) {
+    this.layoutEngine = layoutEngine;
+  }
+
+  /**
+   * Called on the importing thread with each graph as soon as it has been
+   * built and laid out. Rules are only complete once two-way pairs have been
+   * merged at the end of the import.
+   */
+  public void setGraphListener(Consumer<NamedGraph> graphListener) {
+    this.graphListener = graphListener;
+  }
+
+  /** Called on the importing thread with the completed fraction, 0 to 1. */
+  public void setProgressListener(DoubleConsumer progressListener) {
+    this.progressListener = progressListener;
+  }
+
+  // Imports run on worker threads; interrupting one stops it between elements
+  private static void checkCancelled() {
+    if (Thread.currentThread().isInterrupted()) {
+      throw new CancellationException("Import was cancelled");
     }
   }
 
@@ -112,13 +346,14 @@ public class LMNtalImporter {
 
   private class ImporterListener extends LMNtalBaseListener {
 
-    private final List<ZXRule> rawRules;
-    private final Map<ZXRule, String> ruleGuards;
+    private final Consumer<NamedGraph> graphSink;
+    private final BiConsumer<ZXRule, String> ruleSink;
 
-    // Constructor to receive the temporary storage
-    public ImporterListener(List<ZXRule> rawRules, Map<ZXRule, String> ruleGuards) {
-      this.rawRules = rawRules;
-      this.ruleGuards = ruleGuards;
+    // Graphs and rules are handed over as soon as they are built; rules come
+    // with their guard text, or null if they have none
+    public ImporterListener(Consumer<NamedGraph> graphSink, BiConsumer<ZXRule, String> ruleSink) {
+      this.graphSink = graphSink;
+      this.ruleSink = ruleSink;
     }
 
     @Override
@@ -126,8 +361,8 @@ public class LMNtalImporter {
       try {
         NamedGraph graph = new NamedGraph("graph_" + graphCounter.getAndIncrement());
         buildGraphFromContext(graph, ctx.atom_list());
-        layoutGraph(graph, 400, 300);
-        graphs.add(graph);
+        layoutEngine.layout(graph, 400, 300);
+        graphSink.accept(graph);
       } catch (Exception e) {
         errorMessages.add("Failed to process a graph: " + e.getMessage());
       }
@@ -142,14 +377,10 @@ public class LMNtalImporter {
         buildGraphFromContext(rule.getLhs(), ctx.atom_list());
         buildGraphFromContext(rule.getRhs(), ctx.body().atom_list());
 
-        layoutGraph(rule.getLhs(), 250, 250);
-        layoutGraph(rule.getRhs(), 250, 250);
+        layoutEngine.layout(rule.getLhs(), 250, 250);
+        layoutEngine.layout(rule.getRhs(), 250, 250);
 
-        rawRules.add(rule);
-
-        if (ctx.guard() != null) {
-          ruleGuards.put(rule, ctx.guard().getText());
-        }
+        ruleSink.accept(rule, ctx.guard() != null ? ctx.guard().getText() : null);
       } catch (Exception e) {
         errorMessages
             .add("Failed to process rule '" + ruleName + "': " + e.getClass().getSimpleName() + " - " + e.getMessage());
@@ -244,7 +475,7 @@ public class LMNtalImporter {
 
     private void parsePhase(Spider spider, LMNtalParser.ValueContext valueCtx) {
       if (valueCtx.CAP_ID() != null) {
-        spider.setPhase("?");
+        spider.setPhaseValue(Phase.UNDEFINED);
         if (!spider.isColorUndefined()) {
           String var = valueCtx.CAP_ID().getText();
           if (var.length() > 1) {
@@ -252,7 +483,7 @@ public class LMNtalImporter {
           }
         }
       } else {
-        spider.setPhase(valueCtx.getText());
+        spider.setPhaseValue(Phase.parse(valueCtx.getText()));
       }
     }
 
@@ -269,40 +500,13 @@ public class LMNtalImporter {
       }
     }
 
-    private void layoutGraph(ZXGraph graph, int centerX, int centerY) {
-      List<Spider> spidersToLayout = graph.getSpiders().stream()
-          .filter(s -> s.getType() != SpiderType.BOUNDARY).collect(Collectors.toList());
-      if (spidersToLayout.isEmpty())
-        return;
-
-      int n = spidersToLayout.size();
-      double radius = Math.min(100, n * 15 + 30);
-
-      List<Spider> boundarySpiders = graph.getSpiders().stream()
-          .filter(s -> s.getType() == SpiderType.BOUNDARY).collect(Collectors.toList());
-
-      for (int i = 0; i < n; i++) {
-        Spider s = spidersToLayout.get(i);
-        double angle = 2 * Math.PI * i / n;
-        int x = (int) (centerX + radius * Math.cos(angle));
-        int y = (int) (centerY + radius * Math.sin(angle));
-        s.setLocation(x, y);
-
-        for (Edge e : graph.getEdges()) {
-          if (e.getSource().equals(s) && e.getTarget().getType() == SpiderType.BOUNDARY) {
-            int bx = (int) (centerX + (radius + 40) * Math.cos(angle));
-            int by = (int) (centerY + (radius + 40) * Math.sin(angle));
-            e.getTarget().setLocation(bx, by);
-          } else if (e.getTarget().equals(s) && e.getSource().getType() == SpiderType.BOUNDARY) {
-            int bx = (int) (centerX + (radius + 40) * Math.cos(angle));
-            int by = (int) (centerY + (radius + 40) * Math.sin(angle));
-            e.getSource().setLocation(bx, by);
-          }
-        }
-      }
+    private record HadamardConnection(String link1, String link2) {
     }
+  }
 
-    private record HadamardConnection(String link1, String link2) {
+  private record RuleKey(String name, String guard, long lhsHash, long rhsHash) {
+    RuleKey reversed() {
+      return new RuleKey(name, guard, rhsHash, lhsHash);
     }
   }
 }
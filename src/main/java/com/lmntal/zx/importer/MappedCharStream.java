@@ -0,0 +1,127 @@
+package com.lmntal.zx.importer;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A {@link CharStream} over a memory-mapped ASCII file. Each byte is one
+ * character, so the file is neither decoded nor copied onto the heap.
+ */
+final class MappedCharStream implements CharStream {
+  private final MappedByteBuffer buffer;
+  private final int size;
+  private final String name;
+  private int position = 0;
+
+  private MappedCharStream(MappedByteBuffer buffer, String name) {
+    this.buffer = buffer;
+    this.size = buffer.limit();
+    this.name = name;
+  }
+
+  /**
+   * Maps the file if it is pure ASCII. Anything else, or a file too large to
+   * map as one buffer, is decoded with {@link CharStreams#fromPath(Path)} so
+   * positions in error messages stay in characters.
+   */
+  static CharStream open(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long length = channel.size();
+      if (length <= Integer.MAX_VALUE) {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        if (isAscii(buffer)) {
+          return new MappedCharStream(buffer, path.toString());
+        }
+      }
+    }
+    return CharStreams.fromPath(path);
+  }
+
+  private static boolean isAscii(MappedByteBuffer buffer) {
+    for (int i = 0, n = buffer.limit(); i < n; i++) {
+      if (buffer.get(i) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void consume() {
+    if (position >= size) {
+      throw new IllegalStateException("cannot consume EOF");
+    }
+    position++;
+  }
+
+  @Override
+  public int LA(int i) {
+    int offset;
+    if (i > 0) {
+      offset = position + i - 1;
+    } else if (i < 0) {
+      offset = position + i;
+    } else {
+      return 0; // undefined
+    }
+    if (offset < 0 || offset >= size) {
+      return IntStream.EOF;
+    }
+    return buffer.get(offset);
+  }
+
+  @Override
+  public int mark() {
+    return -1;
+  }
+
+  @Override
+  public void release(int marker) {
+  }
+
+  @Override
+  public int index() {
+    return position;
+  }
+
+  @Override
+  public void seek(int index) {
+    position = Math.min(Math.max(index, 0), size);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public String getSourceName() {
+    return name;
+  }
+
+  @Override
+  public String getText(Interval interval) {
+    int start = Math.min(interval.a, size);
+    int length = Math.min(interval.b - interval.a + 1, size - start);
+    if (length <= 0) {
+      return "";
+    }
+    byte[] bytes = new byte[length];
+    buffer.get(start, bytes);
+    return new String(bytes, StandardCharsets.US_ASCII);
+  }
+
+  @Override
+  public String toString() {
+    return getText(Interval.of(0, size - 1));
+  }
+}
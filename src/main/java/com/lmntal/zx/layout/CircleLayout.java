@@ -0,0 +1,47 @@
+package com.lmntal.zx.layout;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.lmntal.zx.model.Spider;
+import com.lmntal.zx.model.SpiderType;
+import com.lmntal.zx.model.ZXGraph;
+
+/**
+ * Places inner spiders evenly on one circle and each boundary just outside
+ * the spider it is attached to.
+ */
+public class CircleLayout implements LayoutEngine {
+
+  @Override
+  public void layout(ZXGraph graph, int centerX, int centerY) {
+    List<Spider> spidersToLayout = graph.getSpiders().stream()
+        .filter(s -> s.getType() != SpiderType.BOUNDARY).collect(Collectors.toList());
+    if (spidersToLayout.isEmpty())
+      return;
+
+    int n = spidersToLayout.size();
+    double radius = Math.min(100, n * 15 + 30);
+
+    for (int i = 0; i < n; i++) {
+      Spider s = spidersToLayout.get(i);
+      double angle = 2 * Math.PI * i / n;
+      int x = (int) (centerX + radius * Math.cos(angle));
+      int y = (int) (centerY + radius * Math.sin(angle));
+      s.setLocation(x, y);
+
+      for (Spider neighbor : graph.getNeighbors(s)) {
+        if (neighbor.getType() == SpiderType.BOUNDARY) {
+          int bx = (int) (centerX + (radius + 40) * Math.cos(angle));
+          int by = (int) (centerY + (radius + 40) * Math.sin(angle));
+          neighbor.setLocation(bx, by);
+        }
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "Circle";
+  }
+}
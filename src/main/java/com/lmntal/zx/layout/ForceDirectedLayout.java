@@ -0,0 +1,387 @@
+package com.lmntal.zx.layout;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import com.lmntal.zx.model.Edge;
+import com.lmntal.zx.model.Spider;
+import com.lmntal.zx.model.SpiderType;
+import com.lmntal.zx.model.ZXGraph;
+
+/**
+ * Fruchterman-Reingold style spring embedder. Repulsion is approximated with
+ * a Barnes-Hut quadtree, so one iteration costs O(n log n). Boundary spiders
+ * take part in the simulation and are then moved onto a ring around the
+ * inner spiders, keeping their angular order.
+ */
+public class ForceDirectedLayout implements LayoutEngine {
+  private static final double EDGE_LENGTH = 70;
+  private static final double THETA = 0.8;
+  private static final double GRAVITY = 0.02;
+  private static final double BOUNDARY_MARGIN = 50;
+  private static final double BOUNDARY_SPACING = 40;
+  private static final double GOLDEN_ANGLE = Math.PI * (3 - Math.sqrt(5));
+  // Below this many spiders, splitting the force loop costs more than it saves
+  private static final int PARALLEL_THRESHOLD = 256;
+
+  private final int maxIterations;
+  private final long timeBudgetMillis;
+  private final boolean parallel;
+
+  public ForceDirectedLayout() {
+    this(300, 1000, Runtime.getRuntime().availableProcessors() > 1);
+  }
+
+  /**
+   * @param maxIterations    upper bound on simulation steps
+   * @param timeBudgetMillis the simulation stops early once this much time has
+   *                         passed
+   * @param parallel         compute repulsion on the common fork-join pool
+   */
+  public ForceDirectedLayout(int maxIterations, long timeBudgetMillis, boolean parallel) {
+    this.maxIterations = Math.max(0, maxIterations);
+    this.timeBudgetMillis = timeBudgetMillis;
+    this.parallel = parallel;
+  }
+
+  @Override
+  public void layout(ZXGraph graph, int centerX, int centerY) {
+    List<Spider> spiders = graph.getSpiders();
+    int n = spiders.size();
+    if (n == 0)
+      return;
+
+    Map<Spider, Integer> index = new IdentityHashMap<>();
+    for (int i = 0; i < n; i++) {
+      index.put(spiders.get(i), i);
+    }
+    List<int[]> links = new ArrayList<>();
+    for (Edge edge : graph.getEdges()) {
+      Integer s = index.get(edge.getSource());
+      Integer t = index.get(edge.getTarget());
+      if (s != null && t != null && !s.equals(t)) {
+        links.add(new int[] { s, t });
+      }
+    }
+
+    double[] x = new double[n];
+    double[] y = new double[n];
+    seed(spiders, x, y);
+    simulate(x, y, links);
+    place(spiders, x, y, centerX, centerY);
+  }
+
+  // Start from the current positions so the editor keeps the user's mental
+  // map; freshly imported spiders all sit at one point and go on a spiral
+  private static void seed(List<Spider> spiders, double[] x, double[] y) {
+    int n = spiders.size();
+    boolean allSame = true;
+    for (int i = 0; i < n; i++) {
+      x[i] = spiders.get(i).getX();
+      y[i] = spiders.get(i).getY();
+      allSame &= x[i] == x[0] && y[i] == y[0];
+    }
+    for (int i = 0; i < n; i++) {
+      double angle = i * GOLDEN_ANGLE;
+      if (allSame) {
+        double r = EDGE_LENGTH * 0.5 * Math.sqrt(i + 0.5);
+        x[i] = r * Math.cos(angle);
+        y[i] = r * Math.sin(angle);
+      } else {
+        // Separates spiders that were stacked on top of each other
+        x[i] += 1e-3 * Math.cos(angle);
+        y[i] += 1e-3 * Math.sin(angle);
+      }
+    }
+  }
+
+  private void simulate(double[] x, double[] y, List<int[]> links) {
+    int n = x.length;
+    double[] dx = new double[n];
+    double[] dy = new double[n];
+    double k2 = EDGE_LENGTH * EDGE_LENGTH;
+    double startTemperature = Math.max(EDGE_LENGTH, EDGE_LENGTH * Math.sqrt(n) / 4);
+    double endTemperature = EDGE_LENGTH / 20;
+    long deadline = System.nanoTime() + timeBudgetMillis * 1_000_000L;
+
+    for (int iteration = 0; iteration < maxIterations && System.nanoTime() < deadline; iteration++) {
+      QuadTree tree = new QuadTree(x, y);
+      IntStream bodies = IntStream.range(0, n);
+      if (parallel && n >= PARALLEL_THRESHOLD) {
+        bodies = bodies.parallel();
+      }
+      // Each body writes only its own slot, so the result does not depend on
+      // how the range is split
+      bodies.forEach(i -> {
+        double[] force = tree.repulsion(i, x[i], y[i], k2);
+        dx[i] = force[0];
+        dy[i] = force[1];
+      });
+
+      for (int[] link : links) {
+        int s = link[0];
+        int t = link[1];
+        double ex = x[s] - x[t];
+        double ey = y[s] - y[t];
+        double d = Math.sqrt(ex * ex + ey * ey);
+        if (d == 0)
+          continue;
+        // d^2 / k along the edge
+        double f = d / EDGE_LENGTH;
+        dx[s] -= ex * f;
+        dy[s] -= ey * f;
+        dx[t] += ex * f;
+        dy[t] += ey * f;
+      }
+
+      double meanX = 0;
+      double meanY = 0;
+      for (int i = 0; i < n; i++) {
+        meanX += x[i];
+        meanY += y[i];
+      }
+      meanX /= n;
+      meanY /= n;
+
+      double progress = maxIterations > 1 ? (double) iteration / (maxIterations - 1) : 1;
+      double temperature = startTemperature * Math.pow(endTemperature / startTemperature, progress);
+      for (int i = 0; i < n; i++) {
+        // Weak pull to the centroid keeps disconnected parts together
+        double fx = dx[i] - GRAVITY * (x[i] - meanX) * EDGE_LENGTH;
+        double fy = dy[i] - GRAVITY * (y[i] - meanY) * EDGE_LENGTH;
+        double length = Math.sqrt(fx * fx + fy * fy);
+        if (length > 0) {
+          double step = Math.min(length, temperature) / length;
+          x[i] += fx * step;
+          y[i] += fy * step;
+        }
+      }
+    }
+  }
+
+  private static void place(List<Spider> spiders, double[] x, double[] y, int centerX, int centerY) {
+    int n = spiders.size();
+    double sumX = 0;
+    double sumY = 0;
+    int inner = 0;
+    for (int i = 0; i < n; i++) {
+      if (spiders.get(i).getType() != SpiderType.BOUNDARY) {
+        sumX += x[i];
+        sumY += y[i];
+        inner++;
+      }
+    }
+    if (inner == 0) {
+      for (int i = 0; i < n; i++) {
+        sumX += x[i];
+        sumY += y[i];
+      }
+      inner = n;
+    }
+    double offsetX = centerX - sumX / inner;
+    double offsetY = centerY - sumY / inner;
+
+    double radius = 0;
+    List<Integer> boundaries = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      x[i] += offsetX;
+      y[i] += offsetY;
+      if (spiders.get(i).getType() == SpiderType.BOUNDARY) {
+        boundaries.add(i);
+      } else {
+        radius = Math.max(radius, Math.hypot(x[i] - centerX, y[i] - centerY));
+      }
+    }
+
+    if (!boundaries.isEmpty()) {
+      double ring = radius + BOUNDARY_MARGIN;
+      double[] angles = new double[n];
+      for (int b : boundaries) {
+        angles[b] = Math.atan2(y[b] - centerY, x[b] - centerX);
+      }
+      boundaries.sort((a, b) -> Double.compare(angles[a], angles[b]));
+      double gap = Math.min(2 * Math.PI / boundaries.size(), BOUNDARY_SPACING / ring);
+      double previous = Double.NEGATIVE_INFINITY;
+      for (int b : boundaries) {
+        double angle = Math.max(angles[b], previous + gap);
+        x[b] = centerX + ring * Math.cos(angle);
+        y[b] = centerY + ring * Math.sin(angle);
+        previous = angle;
+      }
+    }
+
+    for (int i = 0; i < n; i++) {
+      spiders.get(i).setLocation((int) Math.round(x[i]), (int) Math.round(y[i]));
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "Force-directed";
+  }
+
+  /**
+   * Array-backed Barnes-Hut quadtree. Nodes store their mass and center of
+   * mass; leaves hold one body, except at the depth limit where coincident
+   * bodies are merged.
+   */
+  private static final class QuadTree {
+    private static final int MAX_DEPTH = 48;
+    private static final double THETA_SQ = THETA * THETA;
+
+    private int[] child;
+    private int[] body;
+    private double[] minX;
+    private double[] minY;
+    private double[] size;
+    private double[] mass;
+    private double[] comX;
+    private double[] comY;
+    private int count;
+
+    QuadTree(double[] x, double[] y) {
+      int n = x.length;
+      int capacity = 4 * n + 1;
+      child = new int[capacity * 4];
+      body = new int[capacity];
+      minX = new double[capacity];
+      minY = new double[capacity];
+      size = new double[capacity];
+      mass = new double[capacity];
+      comX = new double[capacity];
+      comY = new double[capacity];
+
+      double loX = Double.POSITIVE_INFINITY;
+      double loY = Double.POSITIVE_INFINITY;
+      double hiX = Double.NEGATIVE_INFINITY;
+      double hiY = Double.NEGATIVE_INFINITY;
+      for (int i = 0; i < n; i++) {
+        loX = Math.min(loX, x[i]);
+        loY = Math.min(loY, y[i]);
+        hiX = Math.max(hiX, x[i]);
+        hiY = Math.max(hiY, y[i]);
+      }
+      newNode(loX, loY, Math.max(Math.max(hiX - loX, hiY - loY), 1) * 1.0001);
+      for (int i = 0; i < n; i++) {
+        insert(i, x[i], y[i]);
+      }
+    }
+
+    private int newNode(double x, double y, double side) {
+      if (count == body.length) {
+        int capacity = body.length * 2;
+        child = Arrays.copyOf(child, capacity * 4);
+        body = Arrays.copyOf(body, capacity);
+        minX = Arrays.copyOf(minX, capacity);
+        minY = Arrays.copyOf(minY, capacity);
+        size = Arrays.copyOf(size, capacity);
+        mass = Arrays.copyOf(mass, capacity);
+        comX = Arrays.copyOf(comX, capacity);
+        comY = Arrays.copyOf(comY, capacity);
+      }
+      int node = count++;
+      Arrays.fill(child, node * 4, node * 4 + 4, -1);
+      body[node] = -1;
+      minX[node] = x;
+      minY[node] = y;
+      size[node] = side;
+      mass[node] = 0;
+      return node;
+    }
+
+    private boolean isLeaf(int node) {
+      int base = node * 4;
+      return child[base] < 0 && child[base + 1] < 0 && child[base + 2] < 0 && child[base + 3] < 0;
+    }
+
+    private void insert(int i, double px, double py) {
+      int node = 0;
+      for (int depth = 0;; depth++) {
+        if (isLeaf(node)) {
+          if (mass[node] == 0) {
+            body[node] = i;
+            mass[node] = 1;
+            comX[node] = px;
+            comY[node] = py;
+            return;
+          }
+          if (depth >= MAX_DEPTH || body[node] < 0) {
+            addMass(node, px, py);
+            body[node] = -1;
+            return;
+          }
+          // Push the resident body one level down before descending
+          int resident = body[node];
+          body[node] = -1;
+          int c = childFor(node, comX[node], comY[node]);
+          body[c] = resident;
+          mass[c] = 1;
+          comX[c] = comX[node];
+          comY[c] = comY[node];
+        }
+        addMass(node, px, py);
+        node = childFor(node, px, py);
+      }
+    }
+
+    private void addMass(int node, double px, double py) {
+      double m = mass[node] + 1;
+      comX[node] += (px - comX[node]) / m;
+      comY[node] += (py - comY[node]) / m;
+      mass[node] = m;
+    }
+
+    private int childFor(int node, double px, double py) {
+      double half = size[node] / 2;
+      int qx = px >= minX[node] + half ? 1 : 0;
+      int qy = py >= minY[node] + half ? 1 : 0;
+      int slot = node * 4 + qy * 2 + qx;
+      if (child[slot] < 0) {
+        int c = newNode(minX[node] + qx * half, minY[node] + qy * half, half);
+        child[slot] = c;
+      }
+      return child[slot];
+    }
+
+    /** Repulsive force k^2 / d summed over all other bodies. */
+    double[] repulsion(int i, double px, double py, double k2) {
+      double fx = 0;
+      double fy = 0;
+      int[] stack = new int[4 * MAX_DEPTH + 8];
+      int top = 0;
+      stack[top++] = 0;
+      while (top > 0) {
+        int node = stack[--top];
+        if (mass[node] == 0 || body[node] == i)
+          continue;
+        double ex = px - comX[node];
+        double ey = py - comY[node];
+        double d2 = ex * ex + ey * ey;
+        boolean leaf = isLeaf(node);
+        if (leaf || size[node] * size[node] < THETA_SQ * d2) {
+          if (d2 < 1e-6) {
+            // Coincident with other bodies: push apart in a fixed direction
+            ex = Math.cos(i * GOLDEN_ANGLE) * 0.1;
+            ey = Math.sin(i * GOLDEN_ANGLE) * 0.1;
+            d2 = 0.01;
+          }
+          double f = mass[node] * k2 / d2;
+          fx += ex * f;
+          fy += ey * f;
+        } else {
+          int base = node * 4;
+          for (int q = 0; q < 4; q++) {
+            if (child[base + q] >= 0) {
+              stack[top++] = child[base + q];
+            }
+          }
+        }
+      }
+      return new double[] { fx, fy };
+    }
+  }
+}
@@ -0,0 +1,345 @@
+package com.lmntal.zx.layout;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.lmntal.zx.model.Edge;
+import com.lmntal.zx.model.Spider;
+import com.lmntal.zx.model.SpiderType;
+import com.lmntal.zx.model.ZXGraph;
+
+/**
+ * Sugiyama-style layout for circuit-like diagrams. Boundary spiders are
+ * sorted by label; the first half become inputs in the leftmost column and
+ * the rest outputs in the rightmost one. Inner spiders get columns by longest
+ * path from the inputs, and rows are ordered with alternating barycenter
+ * sweeps. Results are cached by structural hash.
+ */
+public class LayeredLayout implements LayoutEngine {
+  private static final int COLUMN_SPACING = 80;
+  private static final int ROW_SPACING = 60;
+  private static final int MAX_SWEEPS = 24;
+  private static final int CACHE_SIZE = 256;
+
+  private final Map<Long, Placement> cache = Collections.synchronizedMap(
+      new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Placement> eldest) {
+          return size() > CACHE_SIZE;
+        }
+      });
+
+  @Override
+  public void layout(ZXGraph graph, int centerX, int centerY) {
+    List<Spider> spiders = graph.getSpiders();
+    if (spiders.isEmpty())
+      return;
+
+    Structure structure = new Structure(graph, spiders);
+    long key = graph.getStructuralHash();
+    Placement placement = cache.get(key);
+    // The hash ignores spider order, so check the cached entry was computed
+    // for the same indexing before reusing it
+    if (placement == null || !placement.structure().equals(structure)) {
+      placement = compute(structure);
+      cache.put(key, placement);
+    }
+    for (int i = 0; i < spiders.size(); i++) {
+      spiders.get(i).setLocation(centerX + placement.x()[i], centerY + placement.y()[i]);
+    }
+  }
+
+  private static Placement compute(Structure s) {
+    int n = s.labels.length;
+    List<List<Integer>> adjacent = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      adjacent.add(new ArrayList<>());
+    }
+    for (long edge : s.edges) {
+      int u = (int) (edge >>> 32);
+      int v = (int) edge;
+      if (u != v) {
+        adjacent.get(u).add(v);
+        adjacent.get(v).add(u);
+      }
+    }
+
+    List<Integer> boundaries = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      if (s.labels[i] != null) {
+        boundaries.add(i);
+      }
+    }
+    boundaries.sort(Comparator.comparing((Integer i) -> s.labels[i], LayeredLayout::compareLabels));
+    int inputCount = (boundaries.size() + 1) / 2;
+    List<Integer> inputs = boundaries.subList(0, inputCount);
+    List<Integer> outputs = boundaries.subList(inputCount, boundaries.size());
+    boolean[] isInput = new boolean[n];
+    boolean[] isOutput = new boolean[n];
+    inputs.forEach(i -> isInput[i] = true);
+    outputs.forEach(i -> isOutput[i] = true);
+
+    // Edges are oriented along increasing (BFS distance, index), which makes
+    // the graph acyclic; longest paths then give the columns
+    int[] distance = distances(n, adjacent, inputs);
+    Integer[] byDistance = new Integer[n];
+    for (int i = 0; i < n; i++) {
+      byDistance[i] = i;
+    }
+    Arrays.sort(byDistance, Comparator.comparingInt((Integer i) -> distance[i]).thenComparingInt(i -> i));
+    int[] rank = new int[n];
+    for (int r = 0; r < n; r++) {
+      rank[byDistance[r]] = r;
+    }
+
+    int[] layer = new int[n];
+    int firstInner = inputs.isEmpty() ? 0 : 1;
+    int lastInner = 0;
+    for (int v : byDistance) {
+      if (isOutput[v])
+        continue;
+      if (!isInput[v]) {
+        layer[v] = firstInner;
+        for (int u : adjacent.get(v)) {
+          if (!isOutput[u] && rank[u] < rank[v]) {
+            layer[v] = Math.max(layer[v], layer[u] + 1);
+          }
+        }
+      }
+      lastInner = Math.max(lastInner, layer[v]);
+    }
+    for (int v : outputs) {
+      layer[v] = lastInner + 1;
+    }
+    int layerCount = outputs.isEmpty() ? lastInner + 1 : lastInner + 2;
+
+    // Proper layering: long edges get one dummy node per crossed column
+    List<Integer> layerOf = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      layerOf.add(layer[i]);
+    }
+    List<List<Integer>> up = new ArrayList<>();
+    List<List<Integer>> down = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      up.add(new ArrayList<>());
+      down.add(new ArrayList<>());
+    }
+    for (long edge : s.edges) {
+      int u = (int) (edge >>> 32);
+      int v = (int) edge;
+      if (layer[u] == layer[v])
+        continue;
+      int from = layer[u] < layer[v] ? u : v;
+      int to = from == u ? v : u;
+      int previous = from;
+      for (int l = layer[from] + 1; l < layer[to]; l++) {
+        int dummy = layerOf.size();
+        layerOf.add(l);
+        up.add(new ArrayList<>());
+        down.add(new ArrayList<>());
+        down.get(previous).add(dummy);
+        up.get(dummy).add(previous);
+        previous = dummy;
+      }
+      down.get(previous).add(to);
+      up.get(to).add(previous);
+    }
+
+    int total = layerOf.size();
+    List<List<Integer>> layers = new ArrayList<>(layerCount);
+    for (int l = 0; l < layerCount; l++) {
+      layers.add(new ArrayList<>());
+    }
+    for (int v : inputs) {
+      layers.get(0).add(v);
+    }
+    for (int v : byDistance) {
+      if (!isInput[v] && !isOutput[v]) {
+        layers.get(layer[v]).add(v);
+      }
+    }
+    for (int v = n; v < total; v++) {
+      layers.get(layerOf.get(v)).add(v);
+    }
+    for (int v : outputs) {
+      layers.get(layerCount - 1).add(v);
+    }
+
+    int[] position = new int[total];
+    for (List<Integer> nodes : layers) {
+      for (int p = 0; p < nodes.size(); p++) {
+        position[nodes.get(p)] = p;
+      }
+    }
+    // Boundary columns keep their label order
+    boolean firstFixed = !inputs.isEmpty();
+    boolean lastFixed = !outputs.isEmpty();
+    double[] barycenter = new double[total];
+    for (int sweep = 0; sweep < MAX_SWEEPS; sweep += 2) {
+      boolean changed = false;
+      for (int l = 1; l < layerCount; l++) {
+        if (!(lastFixed && l == layerCount - 1)) {
+          changed |= reorder(layers.get(l), up, position, barycenter);
+        }
+      }
+      for (int l = layerCount - 2; l >= 0; l--) {
+        if (!(firstFixed && l == 0)) {
+          changed |= reorder(layers.get(l), down, position, barycenter);
+        }
+      }
+      if (!changed)
+        break;
+    }
+
+    int[] x = new int[n];
+    int[] y = new int[n];
+    for (int i = 0; i < n; i++) {
+      int size = layers.get(layer[i]).size();
+      x[i] = (int) Math.round((layer[i] - (layerCount - 1) / 2.0) * COLUMN_SPACING);
+      y[i] = (int) Math.round((position[i] - (size - 1) / 2.0) * ROW_SPACING);
+    }
+    return new Placement(s, x, y);
+  }
+
+  /**
+   * Sorts one layer by the mean position of each node's neighbors in the
+   * adjacent layer. Nodes without such neighbors keep their position.
+   *
+   * @return whether the order changed
+   */
+  private static boolean reorder(List<Integer> nodes, List<List<Integer>> neighbors, int[] position,
+      double[] barycenter) {
+    for (int v : nodes) {
+      List<Integer> list = neighbors.get(v);
+      if (list.isEmpty()) {
+        barycenter[v] = position[v];
+      } else {
+        double sum = 0;
+        for (int u : list) {
+          sum += position[u];
+        }
+        barycenter[v] = sum / list.size();
+      }
+    }
+    nodes.sort(Comparator.comparingDouble((Integer v) -> barycenter[v]).thenComparingInt(v -> position[v]));
+    boolean changed = false;
+    for (int p = 0; p < nodes.size(); p++) {
+      int v = nodes.get(p);
+      changed |= position[v] != p;
+      position[v] = p;
+    }
+    return changed;
+  }
+
+  // Multi-source BFS from the inputs; each component without an input is
+  // started from its lowest index
+  private static int[] distances(int n, List<List<Integer>> adjacent, List<Integer> inputs) {
+    int[] distance = new int[n];
+    Arrays.fill(distance, -1);
+    ArrayDeque<Integer> queue = new ArrayDeque<>();
+    for (int v : inputs) {
+      distance[v] = 0;
+      queue.add(v);
+    }
+    int next = 0;
+    while (true) {
+      while (!queue.isEmpty()) {
+        int v = queue.poll();
+        for (int u : adjacent.get(v)) {
+          if (distance[u] < 0) {
+            distance[u] = distance[v] + 1;
+            queue.add(u);
+          }
+        }
+      }
+      while (next < n && distance[next] >= 0) {
+        next++;
+      }
+      if (next == n)
+        return distance;
+      distance[next] = 0;
+      queue.add(next);
+    }
+  }
+
+  /** Orders "b2" before "b10" by comparing trailing numbers by value. */
+  static int compareLabels(String a, String b) {
+    int splitA = digitsStart(a);
+    int splitB = digitsStart(b);
+    int result = a.substring(0, splitA).compareTo(b.substring(0, splitB));
+    if (result != 0)
+      return result;
+    String digitsA = a.substring(splitA).replaceFirst("^0+(?=.)", "");
+    String digitsB = b.substring(splitB).replaceFirst("^0+(?=.)", "");
+    if (digitsA.length() != digitsB.length())
+      return Integer.compare(digitsA.length(), digitsB.length());
+    result = digitsA.compareTo(digitsB);
+    return result != 0 ? result : a.compareTo(b);
+  }
+
+  private static int digitsStart(String s) {
+    int i = s.length();
+    while (i > 0 && Character.isDigit(s.charAt(i - 1))) {
+      i--;
+    }
+    return i;
+  }
+
+  @Override
+  public String toString() {
+    return "Layered (circuit)";
+  }
+
+  private record Placement(Structure structure, int[] x, int[] y) {
+  }
+
+  /**
+   * What the layout depends on, by spider index: the edges (as sorted
+   * index pairs) and the boundary labels.
+   */
+  private static final class Structure {
+    final long[] edges;
+    final String[] labels;
+
+    Structure(ZXGraph graph, List<Spider> spiders) {
+      Map<Spider, Integer> index = new IdentityHashMap<>();
+      labels = new String[spiders.size()];
+      for (int i = 0; i < spiders.size(); i++) {
+        Spider spider = spiders.get(i);
+        index.put(spider, i);
+        if (spider.getType() == SpiderType.BOUNDARY) {
+          labels[i] = spider.getLabel() != null ? spider.getLabel() : "";
+        }
+      }
+      List<Edge> graphEdges = graph.getEdges();
+      long[] packed = new long[graphEdges.size()];
+      int count = 0;
+      for (Edge edge : graphEdges) {
+        Integer s = index.get(edge.getSource());
+        Integer t = index.get(edge.getTarget());
+        if (s != null && t != null) {
+          packed[count++] = ((long) Math.min(s, t) << 32) | Math.max(s, t);
+        }
+      }
+      edges = Arrays.copyOf(packed, count);
+      Arrays.sort(edges);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Structure other && Arrays.equals(edges, other.edges) && Arrays.equals(labels, other.labels);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * Arrays.hashCode(edges) + Arrays.hashCode(labels);
+    }
+  }
+}
@@ -0,0 +1,11 @@
+package com.lmntal.zx.layout;
+
+import com.lmntal.zx.model.ZXGraph;
+
+/**
+ * Assigns positions to the spiders of a graph. Implementations must be safe
+ * to use from several threads, since importers share one instance.
+ */
+public interface LayoutEngine {
+  void layout(ZXGraph graph, int centerX, int centerY);
+}
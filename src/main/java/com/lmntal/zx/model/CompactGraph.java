@@ -0,0 +1,403 @@
+package com.lmntal.zx.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read-only diagram stored as parallel arrays, for graphs too large to keep
+ * as one object per spider and edge. Spiders and edges are numbered from 0
+ * in insertion order. Phases, boundary labels and variable labels are
+ * interned, so each spider holds an int code for each instead of a
+ * reference. Incident edges are kept in compressed sparse row form: the
+ * edges of spider {@code s} are {@code incident[offsets[s]]} up to
+ * {@code incident[offsets[s + 1]]}, in the same order {@link ZXGraph} keeps
+ * them, with a self-loop listed once.
+ *
+ * <p>
+ * Converting from a {@link ZXGraph} and back keeps every attribute and both
+ * orders; the element ids are assigned afresh.
+ */
+public final class CompactGraph implements ZXDiagram {
+  private static final SpiderType[] SPIDER_TYPES = SpiderType.values();
+  private static final EdgeType[] EDGE_TYPES = EdgeType.values();
+  private static final int NONE = -1;
+
+  private final int spiderCount;
+  private final byte[] types;
+  private final boolean[] colorUndefined;
+  private final int[] xs;
+  private final int[] ys;
+  private final int[] phases;
+  private final int[] labels;
+  private final int[] variableLabels;
+  private final Phase[] phaseTable;
+  private final String[] nameTable;
+
+  private final int edgeCount;
+  private final int[] sources;
+  private final int[] targets;
+  private final byte[] edgeTypes;
+  private final int[] offsets;
+  private final int[] incident;
+
+  private CompactGraph(Builder builder) {
+    spiderCount = builder.spiderCount;
+    types = Arrays.copyOf(builder.types, spiderCount);
+    colorUndefined = Arrays.copyOf(builder.colorUndefined, spiderCount);
+    xs = Arrays.copyOf(builder.xs, spiderCount);
+    ys = Arrays.copyOf(builder.ys, spiderCount);
+    phases = Arrays.copyOf(builder.phases, spiderCount);
+    labels = Arrays.copyOf(builder.labels, spiderCount);
+    variableLabels = Arrays.copyOf(builder.variableLabels, spiderCount);
+    phaseTable = builder.phaseTable.toArray(new Phase[0]);
+    nameTable = builder.nameTable.toArray(new String[0]);
+
+    edgeCount = builder.edgeCount;
+    sources = Arrays.copyOf(builder.sources, edgeCount);
+    targets = Arrays.copyOf(builder.targets, edgeCount);
+    edgeTypes = Arrays.copyOf(builder.edgeTypes, edgeCount);
+    offsets = new int[spiderCount + 1];
+    for (int e = 0; e < edgeCount; e++) {
+      offsets[sources[e] + 1]++;
+      if (targets[e] != sources[e]) {
+        offsets[targets[e] + 1]++;
+      }
+    }
+    for (int s = 0; s < spiderCount; s++) {
+      offsets[s + 1] += offsets[s];
+    }
+    incident = new int[offsets[spiderCount]];
+    int[] next = Arrays.copyOf(offsets, spiderCount);
+    for (int e = 0; e < edgeCount; e++) {
+      incident[next[sources[e]]++] = e;
+      if (targets[e] != sources[e]) {
+        incident[next[targets[e]]++] = e;
+      }
+    }
+  }
+
+  /** Copies a graph, numbering spiders and edges in the graph's order. */
+  public static CompactGraph of(ZXGraph graph) {
+    Builder builder = new Builder();
+    // Number of each spider, by its id in the graph
+    int[] numbers = new int[graph.getSpiderIdLimit()];
+    for (Spider spider : graph.spiders) {
+      int s = builder.addSpider(spider.getType(), spider.getX(), spider.getY(), spider.getPhaseValue());
+      builder.setLabel(s, spider.getLabel());
+      builder.setVariableLabel(s, spider.getVariableLabel());
+      builder.setColorUndefined(s, spider.isColorUndefined());
+      numbers[spider.getId()] = s;
+    }
+    for (Edge edge : graph.edges) {
+      builder.link(numbers[edge.getSource().getId()], numbers[edge.getTarget().getId()], edge.getType());
+    }
+    return builder.build();
+  }
+
+  public ZXGraph toZXGraph() {
+    ZXGraph graph = new ZXGraph();
+    copyInto(graph);
+    return graph;
+  }
+
+  /** Replaces the contents of the graph with this diagram. */
+  public void copyInto(ZXGraph graph) {
+    graph.clear();
+    Spider[] spiders = new Spider[spiderCount];
+    for (int s = 0; s < spiderCount; s++) {
+      Spider spider = new Spider(xs[s], ys[s], getType(s));
+      spider.setPhaseValue(getPhaseValue(s));
+      spider.setLabel(getLabel(s));
+      spider.setVariableLabel(getVariableLabel(s));
+      spider.setColorUndefined(colorUndefined[s]);
+      graph.addSpider(spider);
+      spiders[s] = spider;
+    }
+    for (int e = 0; e < edgeCount; e++) {
+      graph.addEdge(new Edge(spiders[sources[e]], spiders[targets[e]], getEdgeType(e)));
+    }
+  }
+
+  @Override
+  public int getSpiderCount() {
+    return spiderCount;
+  }
+
+  @Override
+  public int getEdgeCount() {
+    return edgeCount;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return spiderCount == 0 && edgeCount == 0;
+  }
+
+  public SpiderType getType(int spider) {
+    return SPIDER_TYPES[types[spider]];
+  }
+
+  public int getX(int spider) {
+    return xs[spider];
+  }
+
+  public int getY(int spider) {
+    return ys[spider];
+  }
+
+  public String getPhase(int spider) {
+    return getPhaseValue(spider).toString();
+  }
+
+  public Phase getPhaseValue(int spider) {
+    return phaseTable[phases[spider]];
+  }
+
+  /** Spiders have the same phase code exactly when their phases are equal. */
+  public int getPhaseCode(int spider) {
+    return phases[spider];
+  }
+
+  public boolean isPhaseUndefined(int spider) {
+    return getPhaseValue(spider).isUndefined();
+  }
+
+  public boolean isColorUndefined(int spider) {
+    return colorUndefined[spider];
+  }
+
+  public boolean isUndefined(int spider) {
+    return colorUndefined[spider] || isPhaseUndefined(spider);
+  }
+
+  public String getLabel(int spider) {
+    return name(labels[spider]);
+  }
+
+  public String getVariableLabel(int spider) {
+    return name(variableLabels[spider]);
+  }
+
+  private String name(int code) {
+    return code == NONE ? null : nameTable[code];
+  }
+
+  /** Number of edge ends attached to the spider; a self-loop counts twice. */
+  public int getDegree(int spider) {
+    int degree = 0;
+    for (int i = offsets[spider]; i < offsets[spider + 1]; i++) {
+      degree += isSelfLoop(incident[i]) ? 2 : 1;
+    }
+    return degree;
+  }
+
+  /** Number of distinct edges touching the spider. */
+  public int getIncidentCount(int spider) {
+    return offsets[spider + 1] - offsets[spider];
+  }
+
+  /** The {@code k}-th edge touching the spider, in insertion order. */
+  public int getIncidentEdge(int spider, int k) {
+    return incident[offsets[spider] + k];
+  }
+
+  public int getSource(int edge) {
+    return sources[edge];
+  }
+
+  public int getTarget(int edge) {
+    return targets[edge];
+  }
+
+  public int getOpposite(int edge, int end) {
+    return sources[edge] == end ? targets[edge] : sources[edge];
+  }
+
+  public boolean isSelfLoop(int edge) {
+    return sources[edge] == targets[edge];
+  }
+
+  public EdgeType getEdgeType(int edge) {
+    return EDGE_TYPES[edgeTypes[edge]];
+  }
+
+  private boolean isBoundary(int spider) {
+    return getType(spider) == SpiderType.BOUNDARY;
+  }
+
+  @Override
+  public void collectVariables(Set<String> variables) {
+    for (int s = 0; s < spiderCount; s++) {
+      LMNtalAtoms.collectVariables(getType(s), colorUndefined[s], getPhaseValue(s), getVariableLabel(s), variables);
+    }
+  }
+
+  @Override
+  public String toLMNtal() {
+    StringBuilder sb = new StringBuilder(64 * spiderCount);
+    try {
+      writeLMNtal(sb, new HashSet<>());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e); // StringBuilder never throws
+    }
+    return sb.toString();
+  }
+
+  /** Writes the same text as {@link ZXGraph#writeLMNtal} for the same diagram. */
+  @Override
+  public void writeLMNtal(Appendable out, Set<String> variables) throws IOException {
+    if (isEmpty())
+      return;
+
+    // Link number per edge, in edge order; 0 for NORMAL edges to a boundary
+    int[] linkNumbers = new int[edgeCount];
+    int linkCounter = 0;
+    boolean first = true;
+
+    for (int e = 0; e < edgeCount; e++) {
+      boolean sourceIsBoundary = isBoundary(sources[e]);
+      boolean targetIsBoundary = isBoundary(targets[e]);
+      if (!LMNtalAtoms.hasLink(sourceIsBoundary, targetIsBoundary, getEdgeType(e)))
+        continue;
+      int link = linkNumbers[e] = ++linkCounter;
+      if (getEdgeType(e) == EdgeType.HADAMARD) {
+        first = LMNtalAtoms.writeSeparator(out, first);
+        String boundaryLabel = null;
+        if (sourceIsBoundary || targetIsBoundary) {
+          boundaryLabel = getLabel(sourceIsBoundary ? sources[e] : targets[e]);
+        }
+        LMNtalAtoms.writeHadamardAtom(out, link, boundaryLabel);
+      }
+    }
+
+    for (int s = 0; s < spiderCount; s++) {
+      if (!LMNtalAtoms.hasAtom(getType(s), colorUndefined[s], getPhaseValue(s), getVariableLabel(s)))
+        continue;
+      first = LMNtalAtoms.writeSeparator(out, first);
+      LMNtalAtoms.writeSpiderHead(out, getType(s), colorUndefined[s], getPhaseValue(s), getVariableLabel(s),
+          variables);
+      for (int i = offsets[s]; i < offsets[s + 1]; i++) {
+        int e = incident[i];
+        writeLink(out, i == offsets[s], e, sources[e] == s, linkNumbers);
+        if (isSelfLoop(e)) {
+          writeLink(out, false, e, false, linkNumbers);
+        }
+      }
+      out.append('}');
+    }
+  }
+
+  private void writeLink(Appendable out, boolean first, int edge, boolean atSource, int[] linkNumbers)
+      throws IOException {
+    int other = atSource ? targets[edge] : sources[edge];
+    LMNtalAtoms.writeLink(out, first, linkNumbers[edge], getEdgeType(edge), atSource, isBoundary(other),
+        getLabel(other));
+  }
+
+  /**
+   * Collects spiders and edges for a {@link CompactGraph} without creating
+   * an object per element. Spiders and edges are numbered in the order they
+   * are added.
+   */
+  public static final class Builder {
+    private int spiderCount;
+    private byte[] types = new byte[16];
+    private boolean[] colorUndefined = new boolean[16];
+    private int[] xs = new int[16];
+    private int[] ys = new int[16];
+    private int[] phases = new int[16];
+    private int[] labels = new int[16];
+    private int[] variableLabels = new int[16];
+    private final List<Phase> phaseTable = new ArrayList<>();
+    private final Map<Phase, Integer> phaseCodes = new HashMap<>();
+    private final List<String> nameTable = new ArrayList<>();
+    private final Map<String, Integer> nameCodes = new HashMap<>();
+
+    private int edgeCount;
+    private int[] sources = new int[16];
+    private int[] targets = new int[16];
+    private byte[] edgeTypes = new byte[16];
+
+    /** @return the new spider's number */
+    public int addSpider(SpiderType type, int x, int y, Phase phase) {
+      if (spiderCount == types.length) {
+        int capacity = 2 * spiderCount;
+        types = Arrays.copyOf(types, capacity);
+        colorUndefined = Arrays.copyOf(colorUndefined, capacity);
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+        phases = Arrays.copyOf(phases, capacity);
+        labels = Arrays.copyOf(labels, capacity);
+        variableLabels = Arrays.copyOf(variableLabels, capacity);
+      }
+      int s = spiderCount++;
+      types[s] = (byte) type.ordinal();
+      xs[s] = x;
+      ys[s] = y;
+      phases[s] = intern(phase, phaseTable, phaseCodes);
+      labels[s] = NONE;
+      variableLabels[s] = NONE;
+      return s;
+    }
+
+    public void setLabel(int spider, String label) {
+      labels[spider] = label == null ? NONE : intern(label, nameTable, nameCodes);
+    }
+
+    public void setVariableLabel(int spider, String variableLabel) {
+      variableLabels[spider] = variableLabel == null ? NONE : intern(variableLabel, nameTable, nameCodes);
+    }
+
+    public void setColorUndefined(int spider, boolean isColorUndefined) {
+      colorUndefined[spider] = isColorUndefined;
+    }
+
+    /**
+     * @return the new edge's number
+     * @throws IllegalArgumentException if both ends are boundaries, which
+     *                                  {@link ZXGraph#addEdge} refuses too
+     */
+    public int addEdge(int source, int target, EdgeType type) {
+      if (types[source] == SpiderType.BOUNDARY.ordinal() && types[target] == SpiderType.BOUNDARY.ordinal())
+        throw new IllegalArgumentException("Cannot connect two boundary spiders");
+      return link(source, target, type);
+    }
+
+    private int link(int source, int target, EdgeType type) {
+      if (source < 0 || source >= spiderCount || target < 0 || target >= spiderCount)
+        throw new IllegalArgumentException("No such spider: " + (source < 0 || source >= spiderCount ? source : target));
+      if (edgeCount == sources.length) {
+        int capacity = 2 * edgeCount;
+        sources = Arrays.copyOf(sources, capacity);
+        targets = Arrays.copyOf(targets, capacity);
+        edgeTypes = Arrays.copyOf(edgeTypes, capacity);
+      }
+      int e = edgeCount++;
+      sources[e] = source;
+      targets[e] = target;
+      edgeTypes[e] = (byte) type.ordinal();
+      return e;
+    }
+
+    private static <T> int intern(T value, List<T> table, Map<T, Integer> codes) {
+      Integer code = codes.get(value);
+      if (code == null) {
+        code = table.size();
+        table.add(value);
+        codes.put(value, code);
+      }
+      return code;
+    }
+
+    public CompactGraph build() {
+      return new CompactGraph(this);
+    }
+  }
+}
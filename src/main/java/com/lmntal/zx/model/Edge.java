@@ -26,11 +26,20 @@ public class Edge extends GraphElement {
     return target;
   }
 
+  public Spider getOpposite(Spider end) {
+    return end.equals(source) ? target : source;
+  }
+
+  public boolean isSelfLoop() {
+    return source.equals(target);
+  }
+
   public EdgeType getType() {
     return type;
   }
 
   public void setType(EdgeType type) {
     this.type = type;
+    notifyChanged();
   }
 }
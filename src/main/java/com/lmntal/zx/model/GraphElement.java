@@ -1,32 +1,64 @@
 package com.lmntal.zx.model;
 
-import java.util.Objects;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Comparator;
 
+/**
+ * Base of spiders and edges. Elements are equal only to themselves. The id
+ * is assigned by the graph the element is added to and is only meaningful
+ * there.
+ */
 public abstract class GraphElement {
-  private static final AtomicInteger idCounter = new AtomicInteger(0);
-  protected final int id;
+  /**
+   * Orders the elements of one graph by when they were added to it. Unlike
+   * ids, which are reused, this puts an element after every element added
+   * before it.
+   */
+  public static final Comparator<GraphElement> INSERTION_ORDER = Comparator.comparingLong(e -> e.sequence);
 
-  public GraphElement() {
-    this.id = idCounter.getAndIncrement();
-  }
+  private int id = -1;
+  private long sequence; // Insertion count of the owning graph when added
+  private ZXGraph owner; // Graph that indexes this element, if any
 
+  /**
+   * Index of this element among the spiders or edges of its graph, or -1 if
+   * it is in no graph. Ids are small and reused after removal, so they can
+   * index arrays sized by {@link ZXGraph#getSpiderIdLimit} or
+   * {@link ZXGraph#getEdgeIdLimit}.
+   */
   public int getId() {
     return id;
   }
 
-  @Override
-  public boolean equals(Object o) {
-    if (this == o)
-      return true;
-    if (o == null || getClass() != o.getClass())
-      return false;
-    GraphElement that = (GraphElement) o;
-    return id == that.id;
+  ZXGraph getOwner() {
+    return owner;
+  }
+
+  /**
+   * @throws IllegalStateException if the element is already in another graph
+   */
+  void checkAttachable(ZXGraph owner) {
+    if (this.owner != null && this.owner != owner)
+      throw new IllegalStateException("Element already belongs to another graph");
+  }
+
+  void attach(ZXGraph owner, int id, long sequence) {
+    checkAttachable(owner);
+    this.owner = owner;
+    this.id = id;
+    this.sequence = sequence;
+  }
+
+  void detach() {
+    this.owner = null;
+    this.id = -1;
   }
 
-  @Override
-  public int hashCode() {
-    return Objects.hash(id);
+  /**
+   * Tells the owning graph that an attribute affecting its structure changed.
+   */
+  protected void notifyChanged() {
+    if (owner != null) {
+      owner.elementChanged(this);
+    }
   }
 }
@@ -0,0 +1,90 @@
+package com.lmntal.zx.model;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Undo and redo for one graph, kept as {@link GraphSnapshot}s. Call
+ * {@link #record} after each edit; a call that finds nothing changed adds no
+ * step. Beyond the limit, the oldest steps are dropped.
+ *
+ * The graph is only referenced weakly, so a history kept in a map keyed by
+ * its graph does not keep the graph alive. Once the graph is gone, every
+ * operation does nothing.
+ */
+public final class GraphHistory {
+  public static final int DEFAULT_LIMIT = 200;
+
+  private final WeakReference<ZXGraph> graph;
+  private final int limit;
+  private final Deque<GraphSnapshot> undoStack = new ArrayDeque<>();
+  private final Deque<GraphSnapshot> redoStack = new ArrayDeque<>();
+  private GraphSnapshot current;
+
+  public GraphHistory(ZXGraph graph) {
+    this(graph, DEFAULT_LIMIT);
+  }
+
+  public GraphHistory(ZXGraph graph, int limit) {
+    this.graph = new WeakReference<>(graph);
+    this.limit = limit;
+    this.current = graph.snapshot();
+  }
+
+  /** The graph, or null once it has been collected. */
+  public ZXGraph getGraph() {
+    return graph.get();
+  }
+
+  /** Ends the current step. Returns false if the graph did not change. */
+  public boolean record() {
+    ZXGraph graph = this.graph.get();
+    if (graph == null)
+      return false;
+    GraphSnapshot snapshot = graph.snapshot();
+    if (snapshot.hasSameState(current))
+      return false;
+    undoStack.push(current);
+    if (undoStack.size() > limit) {
+      undoStack.removeLast();
+    }
+    redoStack.clear();
+    current = snapshot;
+    return true;
+  }
+
+  /** Whether a recorded step can be undone; call {@link #record} first. */
+  public boolean canUndo() {
+    return !undoStack.isEmpty();
+  }
+
+  public boolean canRedo() {
+    return !redoStack.isEmpty();
+  }
+
+  /**
+   * Goes back one step. Changes not yet recorded become a step of their own
+   * first, so they can be redone.
+   */
+  public boolean undo() {
+    record();
+    ZXGraph graph = this.graph.get();
+    if (graph == null || undoStack.isEmpty())
+      return false;
+    redoStack.push(current);
+    current = undoStack.pop();
+    graph.restore(current);
+    return true;
+  }
+
+  public boolean redo() {
+    ZXGraph graph = this.graph.get();
+    if (record() || graph == null || redoStack.isEmpty())
+      return false;
+    undoStack.push(current);
+    current = redoStack.pop();
+    graph.restore(current);
+    return true;
+  }
+}
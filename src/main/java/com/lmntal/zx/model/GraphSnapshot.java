@@ -0,0 +1,66 @@
+package com.lmntal.zx.model;
+
+import java.util.Objects;
+
+/**
+ * The state of a {@link ZXGraph} at one moment: its spiders, with their
+ * attributes and positions, and its edges. Taking a snapshot is O(1); the
+ * graph keeps its state in persistent tries, and later edits copy only the
+ * paths they touch, so successive snapshots share almost all of their data.
+ * A snapshot can only be restored into the graph it was taken from, but it
+ * does not keep that graph alive.
+ */
+public final class GraphSnapshot {
+  record SpiderState(SpiderType type, int x, int y, Phase phase, String label, String variableLabel,
+      boolean colorUndefined) {
+    static SpiderState of(Spider spider) {
+      return new SpiderState(spider.getType(), spider.getX(), spider.getY(), spider.getPhaseValue(),
+          spider.getLabel(), spider.getVariableLabel(), spider.isColorUndefined());
+    }
+
+    /** Same state apart from the position. */
+    boolean sameAttributes(SpiderState other) {
+      return type == other.type && phase.equals(other.phase) && Objects.equals(label, other.label)
+          && Objects.equals(variableLabel, other.variableLabel) && colorUndefined == other.colorUndefined;
+    }
+  }
+
+  /** Endpoints by spider id; -1 for an end that is not in the graph. */
+  record EdgeState(int source, int target, EdgeType type) {
+  }
+
+  final Object owner; // Token of the graph it was taken from
+  final PersistentIdMap<SpiderState> spiders;
+  final PersistentIdMap<EdgeState> edges;
+  private final long version;
+
+  GraphSnapshot(Object owner, PersistentIdMap<SpiderState> spiders, PersistentIdMap<EdgeState> edges,
+      long version) {
+    this.owner = owner;
+    this.spiders = spiders;
+    this.edges = edges;
+    this.version = version;
+  }
+
+  /** The graph's {@link ZXGraph#getVersion version} when the snapshot was taken. */
+  public long getVersion() {
+    return version;
+  }
+
+  public int getSpiderCount() {
+    return spiders.size();
+  }
+
+  public int getEdgeCount() {
+    return edges.size();
+  }
+
+  /**
+   * True if nothing, positions included, changed between the two snapshots.
+   * This compares trie roots, so it is O(1); a state reached again by
+   * separate edits counts as different.
+   */
+  public boolean hasSameState(GraphSnapshot other) {
+    return other != null && owner == other.owner && spiders == other.spiders && edges == other.edges;
+  }
+}
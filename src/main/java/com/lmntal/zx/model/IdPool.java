@@ -0,0 +1,64 @@
+package com.lmntal.zx.model;
+
+import java.util.Arrays;
+
+/**
+ * Hands out small ids for the elements of one graph. Released ids are
+ * reused first, so every id stays below the largest number of elements the
+ * graph has held at once and can index a plain array.
+ */
+final class IdPool {
+  private int limit;
+  private int[] free = new int[16];
+  private int freeCount;
+  // One more than the position of each free id in free, 0 for ids in use
+  private int[] positions = new int[16];
+
+  int acquire() {
+    if (freeCount == 0)
+      return limit++;
+    int id = free[--freeCount];
+    positions[id] = 0;
+    return id;
+  }
+
+  /**
+   * Takes the given id, which must not be in use. Ids skipped on the way
+   * become free.
+   */
+  int take(int id) {
+    while (limit <= id) {
+      release(limit++);
+    }
+    int position = positions[id] - 1;
+    if (position < 0)
+      throw new IllegalStateException("Id " + id + " is in use");
+    int last = free[--freeCount];
+    free[position] = last;
+    positions[last] = position + 1;
+    positions[id] = 0;
+    return id;
+  }
+
+  void release(int id) {
+    if (freeCount == free.length) {
+      free = Arrays.copyOf(free, 2 * freeCount);
+    }
+    if (id >= positions.length) {
+      positions = Arrays.copyOf(positions, Math.max(2 * positions.length, id + 1));
+    }
+    free[freeCount++] = id;
+    positions[id] = freeCount;
+  }
+
+  /** One more than the largest id handed out so far. */
+  int limit() {
+    return limit;
+  }
+
+  void clear() {
+    limit = 0;
+    freeCount = 0;
+    Arrays.fill(positions, 0);
+  }
+}
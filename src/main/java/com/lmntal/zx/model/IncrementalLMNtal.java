@@ -0,0 +1,269 @@
+package com.lmntal.zx.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.lmntal.zx.model.GraphSnapshot.EdgeState;
+import com.lmntal.zx.model.GraphSnapshot.SpiderState;
+
+/**
+ * The LMNtal text of one graph, kept up to date as the graph changes. The
+ * text of each atom is cached per spider and edge; {@link #update} finds the
+ * elements that changed since the last call by comparing snapshots, writes
+ * only the atoms that depend on them, and describes the result as one
+ * replacement per run of atoms that changed, were added or were removed.
+ *
+ * The atoms are those of {@link ZXGraph#toLMNtal()}, but each link is named
+ * after the id of its edge ({@code L<id + 1>}) instead of being numbered in
+ * edge order, so removing an edge leaves the names of the others alone.
+ */
+public final class IncrementalLMNtal {
+  private static final String SEPARATOR = ",\n";
+
+  /**
+   * Replace the characters from start to end with text. Positions are in the
+   * text as left by the patches before this one.
+   */
+  public record Patch(int start, int end, String text) {
+  }
+
+  private final ZXGraph graph;
+  private GraphSnapshot emitted;
+  // Cached atoms by element id, null for elements without one
+  private String[] spiderAtoms = new String[0];
+  private String[] edgeAtoms = new String[0];
+  private int[] linkNumbers = new int[0];
+  // Atoms of the current text, in order, and the spider or edge of each
+  private List<String> atoms = new ArrayList<>();
+  private List<GraphElement> keys = new ArrayList<>();
+  // Spiders and edges with an atom in the current text, by id
+  private GraphElement[] shownSpiders = new GraphElement[0];
+  private GraphElement[] shownEdges = new GraphElement[0];
+  private int lastWritten;
+
+  public IncrementalLMNtal(ZXGraph graph) {
+    this.graph = graph;
+    update();
+  }
+
+  public ZXGraph getGraph() {
+    return graph;
+  }
+
+  public String getText() {
+    return String.join(SEPARATOR, atoms);
+  }
+
+  /** Number of atoms the last {@link #update} had to write. */
+  public int getLastWritten() {
+    return lastWritten;
+  }
+
+  /**
+   * Brings the text up to date. Returns the changes to the previous text, to
+   * be applied in order; none if it did not change.
+   */
+  public List<Patch> update() {
+    GraphSnapshot current = graph.snapshot();
+    if (current.hasSameState(emitted))
+      return List.of();
+    spiderAtoms = grow(spiderAtoms, graph.getSpiderIdLimit());
+    edgeAtoms = grow(edgeAtoms, graph.getEdgeIdLimit());
+    if (linkNumbers.length < graph.getEdgeIdLimit()) {
+      linkNumbers = Arrays.copyOf(linkNumbers, graph.getEdgeIdLimit());
+    }
+    BitSet dirtySpiders = new BitSet();
+    BitSet dirtyEdges = new BitSet();
+    if (emitted == null) {
+      dirtySpiders.set(0, graph.getSpiderIdLimit());
+      dirtyEdges.set(0, graph.getEdgeIdLimit());
+    } else {
+      findChanges(current, dirtySpiders, dirtyEdges);
+    }
+    emitted = current;
+
+    // An edge gains or loses its link when an end becomes or stops being a
+    // boundary, or its type changes; both were marked dirty above
+    for (int id = dirtyEdges.nextSetBit(0); id >= 0; id = dirtyEdges.nextSetBit(id + 1)) {
+      Edge edge = graph.edgeById(id);
+      linkNumbers[id] = edge != null && ZXGraph.hasLink(edge) ? id + 1 : 0;
+    }
+
+    lastWritten = 0;
+    List<String> next = new ArrayList<>(atoms.size() + 16);
+    List<GraphElement> nextKeys = new ArrayList<>(atoms.size() + 16);
+    StringBuilder sb = new StringBuilder();
+    Set<String> unused = new HashSet<>();
+    try {
+      for (Edge edge : graph.edges) {
+        int id = edge.getId();
+        if (dirtyEdges.get(id)) {
+          edgeAtoms[id] = null;
+          if (linkNumbers[id] != 0 && edge.getType() == EdgeType.HADAMARD) {
+            sb.setLength(0);
+            ZXGraph.writeHadamardAtom(sb, edge, linkNumbers[id]);
+            edgeAtoms[id] = sb.toString();
+            lastWritten++;
+          }
+        }
+        if (edgeAtoms[id] != null) {
+          next.add(edgeAtoms[id]);
+          nextKeys.add(edge);
+        }
+      }
+      for (Spider spider : graph.spiders) {
+        int id = spider.getId();
+        if (dirtySpiders.get(id)) {
+          spiderAtoms[id] = null;
+          if (ZXGraph.hasAtom(spider)) {
+            sb.setLength(0);
+            graph.writeSpiderAtom(sb, spider, linkNumbers, unused);
+            spiderAtoms[id] = sb.toString();
+            lastWritten++;
+          }
+        }
+        if (spiderAtoms[id] != null) {
+          next.add(spiderAtoms[id]);
+          nextKeys.add(spider);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e); // StringBuilder never throws
+    }
+    List<Patch> patches = diff(next, nextKeys);
+    atoms = next;
+    keys = nextKeys;
+    shownSpiders = new GraphElement[graph.getSpiderIdLimit()];
+    shownEdges = new GraphElement[graph.getEdgeIdLimit()];
+    for (GraphElement key : keys) {
+      (key instanceof Spider ? shownSpiders : shownEdges)[key.getId()] = key;
+    }
+    return patches;
+  }
+
+  // Marks what depends on the spiders and edges that changed since the last
+  // update. Moving a spider changes nothing in the text.
+  private void findChanges(GraphSnapshot current, BitSet dirtySpiders, BitSet dirtyEdges) {
+    List<Spider> changed = new ArrayList<>();
+    PersistentIdMap.<SpiderState>diff(emitted.spiders, current.spiders, (id, before, after) -> {
+      if (before != null && after != null && before.sameAttributes(after))
+        return;
+      dirtySpiders.set(id);
+      if (after != null) {
+        changed.add(graph.spiderById(id));
+      }
+    });
+    PersistentIdMap.<EdgeState>diff(emitted.edges, current.edges, (id, before, after) -> {
+      dirtyEdges.set(id);
+      for (EdgeState state : new EdgeState[] { before, after }) {
+        if (state != null) {
+          markSpider(state.source(), dirtySpiders);
+          markSpider(state.target(), dirtySpiders);
+        }
+      }
+    });
+    // Neighbors show a boundary's label, and whether it is one
+    for (Spider spider : changed) {
+      for (Edge edge : graph.getIncidentEdges(spider)) {
+        markEdge(edge, dirtyEdges, dirtySpiders);
+      }
+    }
+  }
+
+  private static void markEdge(Edge edge, BitSet dirtyEdges, BitSet dirtySpiders) {
+    dirtyEdges.set(edge.getId());
+    markSpider(edge.getSource().getId(), dirtySpiders);
+    markSpider(edge.getTarget().getId(), dirtySpiders);
+  }
+
+  private static void markSpider(int id, BitSet dirtySpiders) {
+    if (id >= 0) {
+      dirtySpiders.set(id);
+    }
+  }
+
+  private static String[] grow(String[] atoms, int limit) {
+    return atoms.length < limit ? Arrays.copyOf(atoms, Math.max(2 * atoms.length, limit)) : atoms;
+  }
+
+  // Whether the element has an atom in the current text
+  private boolean isShown(GraphElement key) {
+    GraphElement[] shown = key instanceof Spider ? shownSpiders : shownEdges;
+    return key.getId() >= 0 && key.getId() < shown.length && shown[key.getId()] == key;
+  }
+
+  // Whether the element has an atom in the next text
+  private boolean isInNext(GraphElement key) {
+    if (key.getOwner() != graph)
+      return false;
+    return (key instanceof Spider ? spiderAtoms : edgeAtoms)[key.getId()] != null;
+  }
+
+  // One replacement for each run of atoms between atoms that are unchanged.
+  // Surviving elements keep their relative order, so both lists are walked
+  // together.
+  private List<Patch> diff(List<String> after, List<GraphElement> afterKeys) {
+    List<Patch> patches = new ArrayList<>();
+    int shift = 0; // Length added by the patches so far
+    int offset = 0; // Start of atom i in the previous text
+    int i = 0;
+    int j = 0;
+    while (i < atoms.size() || j < after.size()) {
+      if (i < atoms.size() && j < after.size() && keys.get(i) == afterKeys.get(j)
+          && atoms.get(i).equals(after.get(j))) {
+        offset += atoms.get(i++).length() + SEPARATOR.length();
+        j++;
+        continue;
+      }
+      int firstOld = i;
+      int firstNew = j;
+      int start = offset;
+      while (i < atoms.size() || j < after.size()) {
+        boolean hasOld = i < atoms.size();
+        boolean hasNew = j < after.size();
+        if (hasOld && hasNew && keys.get(i) == afterKeys.get(j)) {
+          if (atoms.get(i).equals(after.get(j)))
+            break;
+          offset += atoms.get(i++).length() + SEPARATOR.length();
+          j++;
+        } else if (hasOld && !isInNext(keys.get(i))) {
+          offset += atoms.get(i++).length() + SEPARATOR.length();
+        } else if (hasNew && !isShown(afterKeys.get(j))) {
+          j++;
+        } else {
+          // An element moved, which only re-adding it does; replace the rest
+          while (i < atoms.size()) {
+            offset += atoms.get(i++).length() + SEPARATOR.length();
+          }
+          j = after.size();
+        }
+      }
+
+      List<String> inserted = after.subList(firstNew, j);
+      StringBuilder text = new StringBuilder();
+      int end;
+      if (firstOld > 0) {
+        // Each replaced atom comes with the separator before it
+        start -= SEPARATOR.length();
+        end = offset - SEPARATOR.length();
+        inserted.forEach(atom -> text.append(SEPARATOR).append(atom));
+      } else if (i < atoms.size()) {
+        // The text starts with the replaced atoms; each brings the separator after it
+        end = offset;
+        inserted.forEach(atom -> text.append(atom).append(SEPARATOR));
+      } else {
+        end = Math.max(0, offset - SEPARATOR.length());
+        text.append(String.join(SEPARATOR, inserted));
+      }
+      patches.add(new Patch(start + shift, end + shift, text.toString()));
+      shift += text.length() - (end - start);
+    }
+    return patches;
+  }
+}
@@ -0,0 +1,113 @@
+package com.lmntal.zx.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The LMNtal text of one rule, as written by {@link ZXRule#toLMNtal()} with
+ * links named as in {@link IncrementalLMNtal}, kept up to date as the rule
+ * changes. Each side is an {@link IncrementalLMNtal}; {@link #update}
+ * passes on its patches, moved to where the side sits in the rule, and
+ * rewrites the guard only when it changes.
+ */
+public final class IncrementalRuleLMNtal {
+  // Stands for the neck, which holds the guard, in the parts of the text
+  private static final Object NECK = new Object();
+
+  private final ZXRule rule;
+  private final IncrementalLMNtal lhs;
+  private final IncrementalLMNtal rhs;
+  private RuleType type;
+  private String guard;
+  // Fixed strings, sides and NECK, in text order; see layout()
+  private List<Object> parts;
+  private int[] lengths;
+
+  public IncrementalRuleLMNtal(ZXRule rule) {
+    this.rule = rule;
+    this.lhs = new IncrementalLMNtal(rule.getLhs());
+    this.rhs = new IncrementalLMNtal(rule.getRhs());
+    reset();
+  }
+
+  public ZXRule getRule() {
+    return rule;
+  }
+
+  public String getText() {
+    StringBuilder sb = new StringBuilder();
+    parts.forEach(part -> sb.append(text(part)));
+    return sb.toString();
+  }
+
+  /** Number of atoms the last {@link #update} had to write. */
+  public int getLastWritten() {
+    return lhs.getLastWritten() + rhs.getLastWritten();
+  }
+
+  /**
+   * Brings the text up to date. Returns the changes to the previous text, to
+   * be applied in order; none if it did not change.
+   */
+  public List<IncrementalLMNtal.Patch> update() {
+    List<IncrementalLMNtal.Patch> lhsPatches = lhs.update();
+    List<IncrementalLMNtal.Patch> rhsPatches = rhs.update();
+    if (rule.getType() != type) {
+      int length = 0;
+      for (int partLength : lengths) {
+        length += partLength;
+      }
+      reset();
+      return List.of(new IncrementalLMNtal.Patch(0, length, getText()));
+    }
+    String nextGuard = rule.guard();
+    boolean guardChanged = !nextGuard.equals(guard);
+    guard = nextGuard;
+
+    List<IncrementalLMNtal.Patch> patches = new ArrayList<>();
+    int start = 0; // Start of the part in the text as patched so far
+    for (int k = 0; k < parts.size(); k++) {
+      Object part = parts.get(k);
+      if (part == lhs || part == rhs) {
+        for (IncrementalLMNtal.Patch patch : part == lhs ? lhsPatches : rhsPatches) {
+          patches.add(new IncrementalLMNtal.Patch(start + patch.start(), start + patch.end(), patch.text()));
+          lengths[k] += patch.text().length() - (patch.end() - patch.start());
+        }
+      } else if (part == NECK && guardChanged) {
+        String neck = text(NECK);
+        patches.add(new IncrementalLMNtal.Patch(start, start + lengths[k], neck));
+        lengths[k] = neck.length();
+      }
+      start += lengths[k];
+    }
+    return patches;
+  }
+
+  private void reset() {
+    type = rule.getType();
+    guard = rule.guard();
+    parts = layout();
+    lengths = new int[parts.size()];
+    for (int k = 0; k < parts.size(); k++) {
+      lengths[k] = text(parts.get(k)).length();
+    }
+  }
+
+  // Mirrors ZXRule.writeLMNtal: one direction, and its reverse for a two-way rule
+  private List<Object> layout() {
+    String header = rule.getName() + "@@\n";
+    List<Object> layout = new ArrayList<>(List.of(header, lhs, NECK, rhs, "."));
+    if (type == RuleType.EQUALS) {
+      layout.addAll(List.of("\n\n" + header, rhs, NECK, lhs, "."));
+    }
+    return layout;
+  }
+
+  private String text(Object part) {
+    if (part == NECK)
+      return ZXRule.neck(guard);
+    if (part instanceof IncrementalLMNtal side)
+      return side.getText();
+    return (String) part;
+  }
+}
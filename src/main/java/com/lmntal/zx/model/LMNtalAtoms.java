@@ -0,0 +1,109 @@
+package com.lmntal.zx.model;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * How spiders and edges are written as LMNtal atoms. {@link ZXGraph} and
+ * {@link CompactGraph} each walk their own storage and write through these
+ * methods, so the same diagram gives the same text.
+ */
+final class LMNtalAtoms {
+  private LMNtalAtoms() {
+  }
+
+  private static boolean hasText(String label) {
+    return label != null && !label.trim().isEmpty();
+  }
+
+  /**
+   * Adds the guard variables ({@code C<label>} for an undefined color,
+   * {@code P<label>} for an undefined phase) of one spider.
+   */
+  static void collectVariables(SpiderType type, boolean colorUndefined, Phase phase, String variableLabel,
+      Set<String> variables) {
+    if (type == SpiderType.BOUNDARY || !hasText(variableLabel))
+      return;
+    if (colorUndefined) {
+      variables.add("C" + variableLabel);
+    }
+    if (phase.isUndefined()) {
+      variables.add("P" + variableLabel);
+    }
+  }
+
+  // Edges between two boundaries are dropped; NORMAL edges to a boundary use
+  // the boundary's label instead of a link of their own
+  static boolean hasLink(boolean sourceIsBoundary, boolean targetIsBoundary, EdgeType type) {
+    if (sourceIsBoundary && targetIsBoundary)
+      return false;
+    return type == EdgeType.HADAMARD || !(sourceIsBoundary || targetIsBoundary);
+  }
+
+  static boolean hasAtom(SpiderType type, boolean colorUndefined, Phase phase, String variableLabel) {
+    if (type == SpiderType.BOUNDARY)
+      return false;
+    // Undefined spiders without a label should be prevented by the controller
+    return !(colorUndefined || phase.isUndefined()) || hasText(variableLabel);
+  }
+
+  /**
+   * Writes a Hadamard gate. The boundary label is that of the end that is a
+   * boundary, or null if neither end is one.
+   */
+  static void writeHadamardAtom(Appendable out, int link, String boundaryLabel) throws IOException {
+    String linkName = String.valueOf(link);
+    if (boundaryLabel != null) {
+      out.append("h{e^i(180), +L").append(linkName).append(", +").append(boundaryLabel.toUpperCase()).append('}');
+    } else {
+      out.append("h{e^i(180), +L").append(linkName).append("a, +L").append(linkName).append("b}");
+    }
+  }
+
+  /** Writes a spider atom up to its links, which {@link #writeLink} adds. */
+  static void writeSpiderHead(Appendable out, SpiderType type, boolean colorUndefined, Phase phase,
+      String variableLabel, Set<String> variables) throws IOException {
+    out.append("{c(");
+    if (colorUndefined) {
+      out.append('C').append(variableLabel);
+      variables.add("C" + variableLabel);
+    } else {
+      out.append(type == SpiderType.Z ? "+1" : "-1");
+    }
+    out.append("), e^i(");
+    if (phase.isUndefined()) {
+      out.append('P').append(variableLabel);
+      variables.add("P" + variableLabel);
+    } else {
+      out.append(phase.toString());
+    }
+    out.append("), ");
+  }
+
+  /**
+   * Writes the link name of an edge seen from its source or target end. The
+   * link is 0 for a NORMAL edge to a boundary, which shows the label of the
+   * boundary at the other end instead.
+   */
+  static void writeLink(Appendable out, boolean first, int link, EdgeType type, boolean atSource,
+      boolean otherIsBoundary, String otherLabel) throws IOException {
+    if (!first) {
+      out.append(", ");
+    }
+    if (link == 0) {
+      out.append('+').append(otherLabel.toUpperCase());
+      return;
+    }
+    out.append("+L").append(String.valueOf(link));
+    if (type == EdgeType.HADAMARD && !otherIsBoundary) {
+      out.append(atSource ? 'a' : 'b');
+    }
+  }
+
+  static boolean writeSeparator(Appendable out, boolean first) throws IOException {
+    if (!first) {
+      out.append(",\n");
+    }
+    return false;
+  }
+}
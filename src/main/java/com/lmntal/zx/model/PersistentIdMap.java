@@ -0,0 +1,154 @@
+package com.lmntal.zx.model;
+
+/**
+ * Persistent map from element ids to values that shares structure with the
+ * maps it was derived from. It is a 32-way trie over the bits of the id, so
+ * an update copies only the path to one leaf, O(log n).
+ *
+ * Maps and their nodes carry the edit token they were created under, and
+ * updates made with the same token change them in place instead of copying.
+ * The owner of a map switches to a new token whenever it hands the map out,
+ * so bulk updates between two snapshots cost no more than a mutable table.
+ */
+final class PersistentIdMap<V> {
+  private static final int BITS = 5;
+  private static final int WIDTH = 1 << BITS;
+  private static final int MASK = WIDTH - 1;
+  private static final PersistentIdMap<?> EMPTY = new PersistentIdMap<>(null, null, 0, 0);
+
+  /** Receives the ids whose values differ between two maps. */
+  @FunctionalInterface
+  interface Difference<V> {
+    void accept(int id, V before, V after);
+  }
+
+  private static final class Node {
+    final Object edit;
+    final Object[] slots;
+
+    Node(Object edit, Object[] slots) {
+      this.edit = edit;
+      this.slots = slots;
+    }
+  }
+
+  // Only changed while the edit token is current
+  private final Object edit;
+  private Node root;
+  private int shift; // Bit offset of the root's slot index
+  private int size;
+
+  private PersistentIdMap(Object edit, Node root, int shift, int size) {
+    this.edit = edit;
+    this.root = root;
+    this.shift = shift;
+    this.size = size;
+  }
+
+  @SuppressWarnings("unchecked")
+  static <V> PersistentIdMap<V> empty() {
+    return (PersistentIdMap<V>) EMPTY;
+  }
+
+  int size() {
+    return size;
+  }
+
+  @SuppressWarnings("unchecked")
+  V get(int id) {
+    if (root == null || id >>> shift >= WIDTH)
+      return null;
+    Node node = root;
+    for (int s = shift; s > 0; s -= BITS) {
+      node = (Node) node.slots[(id >>> s) & MASK];
+      if (node == null)
+        return null;
+    }
+    return (V) node.slots[id & MASK];
+  }
+
+  PersistentIdMap<V> with(int id, V value, Object edit) {
+    V old = get(id);
+    if (old == value)
+      return this;
+    Node newRoot = root == null ? new Node(edit, new Object[WIDTH]) : root;
+    int newShift = shift;
+    while (id >>> newShift >= WIDTH) {
+      Object[] slots = new Object[WIDTH];
+      slots[0] = newRoot;
+      newRoot = new Node(edit, slots);
+      newShift += BITS;
+    }
+    newRoot = set(newRoot, newShift, id, value, edit);
+    return update(newRoot, newShift, old == null ? size + 1 : size, edit);
+  }
+
+  PersistentIdMap<V> without(int id, Object edit) {
+    if (get(id) == null)
+      return this;
+    if (size == 1)
+      return empty();
+    return update(set(root, shift, id, null, edit), shift, size - 1, edit);
+  }
+
+  private PersistentIdMap<V> update(Node root, int shift, int size, Object edit) {
+    if (this.edit != edit)
+      return new PersistentIdMap<>(edit, root, shift, size);
+    this.root = root;
+    this.shift = shift;
+    this.size = size;
+    return this;
+  }
+
+  private static Node set(Node node, int shift, int id, Object value, Object edit) {
+    Node result = node.edit == edit ? node : new Node(edit, node.slots.clone());
+    int slot = (id >>> shift) & MASK;
+    if (shift == 0) {
+      result.slots[slot] = value;
+    } else {
+      Node child = (Node) result.slots[slot];
+      result.slots[slot] = set(child == null ? new Node(edit, new Object[WIDTH]) : child, shift - BITS, id, value,
+          edit);
+    }
+    return result;
+  }
+
+  /**
+   * Reports every id whose value is not the same object in both maps.
+   * Subtrees the maps share are skipped, so the cost grows with the number of
+   * updates that separate them rather than with their size.
+   */
+  static <V> void diff(PersistentIdMap<V> before, PersistentIdMap<V> after, Difference<V> out) {
+    int shift = Math.max(before.shift, after.shift);
+    diff(lift(before, shift), lift(after, shift), shift, 0, out);
+  }
+
+  // The root of the map seen as a trie of the given height
+  private static Node lift(PersistentIdMap<?> map, int shift) {
+    Node node = map.root;
+    for (int s = map.shift; node != null && s < shift; s += BITS) {
+      Object[] slots = new Object[WIDTH];
+      slots[0] = node;
+      node = new Node(null, slots);
+    }
+    return node;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <V> void diff(Node before, Node after, int shift, int base, Difference<V> out) {
+    if (before == after)
+      return;
+    for (int i = 0; i < WIDTH; i++) {
+      Object b = before == null ? null : before.slots[i];
+      Object a = after == null ? null : after.slots[i];
+      if (b == a)
+        continue;
+      int id = base | (i << shift);
+      if (shift == 0) {
+        out.accept(id, (V) b, (V) a);
+      } else {
+        diff((Node) b, (Node) a, shift - BITS, id, out);
+      }
+    }
+  }
+}
@@ -0,0 +1,274 @@
+package com.lmntal.zx.model;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A spider phase: an exact rational multiple of π, or a symbol. Numeric
+ * phases are kept normalized into [0, 2π) and reduced, packed into one long
+ * as numerator and denominator, so equality, hashing and addition are plain
+ * arithmetic. Symbols cover the undefined phase "?" of rule spiders and any
+ * other text that is not a number; they are compared by name.
+ *
+ * <p>
+ * Phases are written in degrees, as LMNtal programs use them: "90" for π/2,
+ * "22.5" for π/8, and "180/7" when the decimal would not end. {@link #parse}
+ * reads that form back, as well as multiples of π such as "pi/2" or "3π/4".
+ */
+public final class Phase {
+  private static final Pattern DEGREES = Pattern.compile("([+-]?\\d+(?:\\.\\d+)?)(?:\\s*/\\s*(\\d+))?");
+  private static final Pattern RADIANS = Pattern.compile("([+-]?)(\\d*)\\s*(?:pi|π)(?:\\s*/\\s*(\\d+))?",
+      Pattern.CASE_INSENSITIVE);
+  private static final BigInteger MAX_DENOMINATOR = BigInteger.valueOf(Integer.MAX_VALUE);
+
+  // Multiples of π/4, shared so that common phases are not allocated
+  private static final Phase[] QUARTERS = new Phase[8];
+  static {
+    for (int k = 0; k < 8; k++) {
+      long gcd = gcd(k, 4);
+      QUARTERS[k] = new Phase(pack(k / gcd, 4 / gcd), null);
+    }
+  }
+
+  public static final Phase ZERO = QUARTERS[0];
+  public static final Phase PI = QUARTERS[4];
+  public static final Phase UNDEFINED = new Phase(0, "?");
+
+  // Numerator in the upper 32 bits (unsigned), denominator in the lower; 0 for a symbol
+  private final long bits;
+  private final String symbol;
+  private String text;
+
+  private Phase(long bits, String symbol) {
+    this.bits = bits;
+    this.symbol = symbol;
+  }
+
+  private static long pack(long numerator, long denominator) {
+    return numerator << 32 | denominator;
+  }
+
+  /**
+   * The phase {@code numerator / denominator · π}, normalized.
+   *
+   * @throws ArithmeticException if the reduced denominator does not fit in an
+   *                             int
+   */
+  public static Phase of(long numerator, long denominator) {
+    if (denominator == 0)
+      throw new ArithmeticException("Phase denominator is zero");
+    if (denominator < 0) {
+      numerator = Math.negateExact(numerator);
+      denominator = Math.negateExact(denominator);
+    }
+    long gcd = gcd(Math.abs(numerator % denominator), denominator);
+    numerator /= gcd;
+    denominator /= gcd;
+    if (denominator > Integer.MAX_VALUE)
+      throw new ArithmeticException("Phase denominator too large: " + denominator);
+    long period = 2 * denominator;
+    numerator %= period;
+    if (numerator < 0) {
+      numerator += period;
+    }
+    if (4 % denominator == 0)
+      return QUARTERS[(int) (numerator * (4 / denominator))];
+    return new Phase(pack(numerator, denominator), null);
+  }
+
+  public static Phase ofDegrees(long degrees) {
+    return of(degrees, 180);
+  }
+
+  /** A symbolic phase; "?" gives {@link #UNDEFINED}. */
+  public static Phase symbol(String name) {
+    return "?".equals(name) ? UNDEFINED : new Phase(0, name);
+  }
+
+  /**
+   * Reads degrees ("90", "-45", "22.5", "180/7") or multiples of π ("pi",
+   * "-pi/2", "3π/4"). Blank text is 0. Anything else becomes a symbol.
+   */
+  public static Phase parse(String text) {
+    String trimmed = text == null ? "" : text.trim();
+    if (trimmed.isEmpty())
+      return ZERO;
+    if (isDigits(trimmed) && trimmed.length() < 18)
+      return ofDegrees(Long.parseLong(trimmed));
+    try {
+      Matcher degrees = DEGREES.matcher(trimmed);
+      if (degrees.matches()) {
+        BigDecimal value = new BigDecimal(degrees.group(1));
+        BigInteger denominator = BigInteger.TEN.pow(value.scale()).multiply(BigInteger.valueOf(180));
+        if (degrees.group(2) != null) {
+          denominator = denominator.multiply(new BigInteger(degrees.group(2)));
+        }
+        return of(value.unscaledValue(), denominator);
+      }
+      Matcher radians = RADIANS.matcher(trimmed);
+      if (radians.matches()) {
+        BigInteger numerator = radians.group(2).isEmpty() ? BigInteger.ONE : new BigInteger(radians.group(2));
+        if (radians.group(1).equals("-")) {
+          numerator = numerator.negate();
+        }
+        BigInteger denominator = radians.group(3) == null ? BigInteger.ONE : new BigInteger(radians.group(3));
+        return of(numerator, denominator);
+      }
+    } catch (ArithmeticException e) {
+      // Too fine to represent; keep the text as it is
+    }
+    return symbol(trimmed);
+  }
+
+  private static Phase of(BigInteger numerator, BigInteger denominator) {
+    if (denominator.signum() == 0)
+      throw new ArithmeticException("Phase denominator is zero");
+    BigInteger gcd = numerator.gcd(denominator);
+    numerator = numerator.divide(gcd);
+    denominator = denominator.divide(gcd);
+    if (denominator.compareTo(MAX_DENOMINATOR) > 0)
+      throw new ArithmeticException("Phase denominator too large: " + denominator);
+    return of(numerator.mod(denominator.shiftLeft(1)).longValueExact(), denominator.longValueExact());
+  }
+
+  private static boolean isDigits(String text) {
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c < '0' || c > '9')
+        return false;
+    }
+    return true;
+  }
+
+  public boolean isNumeric() {
+    return symbol == null;
+  }
+
+  public boolean isUndefined() {
+    return this == UNDEFINED;
+  }
+
+  /** The numerator of this phase as a multiple of π, in [0, 2 · denominator). */
+  public long getNumerator() {
+    return requireNumeric() >>> 32;
+  }
+
+  public long getDenominator() {
+    return requireNumeric() & 0xFFFFFFFFL;
+  }
+
+  /** The name of a symbolic phase, or null. */
+  public String getSymbol() {
+    return symbol;
+  }
+
+  private long requireNumeric() {
+    if (symbol != null)
+      throw new IllegalStateException("Symbolic phase has no value: " + symbol);
+    return bits;
+  }
+
+  /**
+   * Sum of two numeric phases, normalized. Intermediate terms that overflow a
+   * long are computed with BigInteger instead.
+   *
+   * @throws IllegalStateException if either phase is a symbol
+   * @throws ArithmeticException   if the reduced denominator of the sum does
+   *                               not fit in an int
+   */
+  public Phase add(Phase other) {
+    long n1 = getNumerator();
+    long d1 = getDenominator();
+    long n2 = other.getNumerator();
+    long d2 = other.getDenominator();
+    if (d1 == d2)
+      return of(n1 + n2, d1);
+    long gcd = gcd(d1, d2);
+    long numerator;
+    try {
+      numerator = Math.addExact(Math.multiplyExact(n1, d2 / gcd), Math.multiplyExact(n2, d1 / gcd));
+    } catch (ArithmeticException e) {
+      return of(BigInteger.valueOf(n1).multiply(BigInteger.valueOf(d2 / gcd))
+          .add(BigInteger.valueOf(n2).multiply(BigInteger.valueOf(d1 / gcd))),
+          BigInteger.valueOf(d1 / gcd).multiply(BigInteger.valueOf(d2)));
+    }
+    return of(numerator, d1 / gcd * d2); // Both below 2^31, so no overflow
+  }
+
+  public Phase negate() {
+    return of(-getNumerator(), getDenominator());
+  }
+
+  public boolean isZero() {
+    return bits == ZERO.bits && symbol == null;
+  }
+
+  /** Whether this is 0 or π. */
+  public boolean isPauli() {
+    return this == ZERO || this == PI;
+  }
+
+  /** Whether this is π/2 or 3π/2. */
+  public boolean isProperClifford() {
+    return this == QUARTERS[2] || this == QUARTERS[6];
+  }
+
+  public double toDegrees() {
+    return 180.0 * getNumerator() / getDenominator();
+  }
+
+  private static long gcd(long a, long b) {
+    while (b != 0) {
+      long t = a % b;
+      a = b;
+      b = t;
+    }
+    return a;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o)
+      return true;
+    if (!(o instanceof Phase))
+      return false;
+    Phase that = (Phase) o;
+    return bits == that.bits && (symbol == null ? that.symbol == null : symbol.equals(that.symbol));
+  }
+
+  @Override
+  public int hashCode() {
+    return symbol == null ? Long.hashCode(bits) : symbol.hashCode();
+  }
+
+  /** The phase in degrees, as LMNtal writes it, or the symbol. */
+  @Override
+  public String toString() {
+    if (text == null) {
+      text = symbol != null ? symbol : formatDegrees();
+    }
+    return text;
+  }
+
+  private String formatDegrees() {
+    long numerator = 180 * getNumerator();
+    long denominator = getDenominator();
+    long gcd = gcd(numerator, denominator);
+    numerator /= gcd;
+    denominator /= gcd;
+    if (denominator == 1)
+      return Long.toString(numerator);
+    long rest = denominator;
+    while (rest % 2 == 0) {
+      rest /= 2;
+    }
+    while (rest % 5 == 0) {
+      rest /= 5;
+    }
+    if (rest == 1)
+      return new BigDecimal(numerator).divide(new BigDecimal(denominator)).toPlainString();
+    return numerator + "/" + denominator;
+  }
+}
@@ -0,0 +1,100 @@
+package com.lmntal.zx.model;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+public final class RuleValidator {
+
+  public record Violation(String title, String message) {
+  }
+
+  private RuleValidator() {
+  }
+
+  /**
+   * Checks that variable and boundary labels are unique on each side, that
+   * boundary labels match across sides, and that every variable used on the
+   * produced side is bound on the matched side.
+   *
+   * @return the first problem found, or null if the rule can be exported
+   */
+  public static Violation validate(ZXRule rule) {
+    // Validate uniqueness of variable labels within LHS and RHS
+    List<String> lhsVariableLabels = rule.getLhs().getSpiders().stream()
+        .map(Spider::getVariableLabel)
+        .filter(Objects::nonNull)
+        .collect(Collectors.toList());
+
+    if (new HashSet<>(lhsVariableLabels).size() < lhsVariableLabels.size()) {
+      return new Violation("Rule Error", "Variable labels must be unique on the left side of the rule.");
+    }
+
+    List<String> rhsVariableLabels = rule.getRhs().getSpiders().stream()
+        .map(Spider::getVariableLabel)
+        .filter(Objects::nonNull)
+        .collect(Collectors.toList());
+
+    if (new HashSet<>(rhsVariableLabels).size() < rhsVariableLabels.size()) {
+      return new Violation("Rule Error", "Variable labels must be unique on the right side of the rule.");
+    }
+
+    // Validate uniqueness of boundary labels within LHS and RHS
+    List<String> lhsBoundaryLabelList = rule.getLhs().getSpiders().stream()
+        .filter(s -> s.getType() == SpiderType.BOUNDARY)
+        .map(Spider::getLabel)
+        .filter(Objects::nonNull)
+        .collect(Collectors.toList());
+
+    if (new HashSet<>(lhsBoundaryLabelList).size() < lhsBoundaryLabelList.size()) {
+      return new Violation("Rule Error", "Boundary labels must be unique on the left side of the rule.");
+    }
+
+    List<String> rhsBoundaryLabelList = rule.getRhs().getSpiders().stream()
+        .filter(s -> s.getType() == SpiderType.BOUNDARY)
+        .map(Spider::getLabel)
+        .filter(Objects::nonNull)
+        .collect(Collectors.toList());
+
+    if (new HashSet<>(rhsBoundaryLabelList).size() < rhsBoundaryLabelList.size()) {
+      return new Violation("Rule Error", "Boundary labels must be unique on the right side of the rule.");
+    }
+
+    // Boundary node validation
+    Set<String> lhsBoundaryLabels = new HashSet<>(lhsBoundaryLabelList);
+    Set<String> rhsBoundaryLabels = new HashSet<>(rhsBoundaryLabelList);
+
+    if (!lhsBoundaryLabels.equals(rhsBoundaryLabels)) {
+      return new Violation("Rule Error", "Boundary node labels must match on both sides of the rule.");
+    }
+
+    // Variable validation
+    Set<String> lhsVars = new HashSet<>();
+    rule.getLhs().collectVariables(lhsVars);
+    Set<String> rhsVars = new HashSet<>();
+    rule.getRhs().collectVariables(rhsVars);
+
+    Set<String> missingInLhs = new HashSet<>(rhsVars);
+    missingInLhs.removeAll(lhsVars);
+    if (!missingInLhs.isEmpty()) {
+      return new Violation("Rule Validation Error",
+          "Validation Error in rule '" + rule.getName() + "':\n" +
+              "The following variables from the RHS are missing in the LHS:\n" +
+              String.join(", ", missingInLhs));
+    }
+
+    if (rule.getType() == RuleType.EQUALS) {
+      Set<String> missingInRhs = new HashSet<>(lhsVars);
+      missingInRhs.removeAll(rhsVars);
+      if (!missingInRhs.isEmpty()) {
+        return new Violation("Rule Validation Error",
+            "Validation Error in rule '" + rule.getName() + "' (reverse direction):\n" +
+                "The following variables from the RHS are missing in the LHS:\n" +
+                String.join(", ", missingInRhs));
+      }
+    }
+    return null;
+  }
+}
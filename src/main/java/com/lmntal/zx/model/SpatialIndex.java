@@ -0,0 +1,347 @@
+package com.lmntal.zx.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Uniform grid over spider positions and edge segments, used for hit testing.
+ * Spiders are bucketed by the cell containing their center; edges are
+ * registered in every cell their segment passes through. Edges spanning more
+ * than {@link #LONG_EDGE_CELLS} cells are kept in a separate set that every
+ * query scans, so moving their endpoints stays cheap.
+ */
+class SpatialIndex {
+  static final int CELL_SIZE = 64;
+  static final int LONG_EDGE_CELLS = 32;
+
+  private final CellTable<Spider> spiderCells = new CellTable<>();
+  private final CellTable<Edge> edgeCells = new CellTable<>();
+  private final Set<Edge> longEdges = new LinkedHashSet<>();
+
+  void clear() {
+    spiderCells.clear();
+    edgeCells.clear();
+    longEdges.clear();
+  }
+
+  void insert(Spider spider) {
+    spiderCells.add(cellOf(spider.getX()), cellOf(spider.getY()), spider);
+  }
+
+  void remove(Spider spider) {
+    spiderCells.remove(cellOf(spider.getX()), cellOf(spider.getY()), spider);
+  }
+
+  void insert(Edge edge) {
+    Spider s = edge.getSource();
+    Spider t = edge.getTarget();
+    updateSegment(edge, s.getX(), s.getY(), t.getX(), t.getY(), true);
+  }
+
+  void remove(Edge edge) {
+    Spider s = edge.getSource();
+    Spider t = edge.getTarget();
+    updateSegment(edge, s.getX(), s.getY(), t.getX(), t.getY(), false);
+  }
+
+  /**
+   * Re-buckets a spider and its incident edges after the spider has moved
+   * away from (oldX, oldY).
+   */
+  void move(Spider spider, int oldX, int oldY, List<Edge> incidentEdges) {
+    spiderCells.remove(cellOf(oldX), cellOf(oldY), spider);
+    insert(spider);
+    for (Edge e : incidentEdges) {
+      Spider s = e.getSource();
+      Spider t = e.getTarget();
+      int sx = s == spider ? oldX : s.getX();
+      int sy = s == spider ? oldY : s.getY();
+      int tx = t == spider ? oldX : t.getX();
+      int ty = t == spider ? oldY : t.getY();
+      updateSegment(e, sx, sy, tx, ty, false);
+      insert(e);
+    }
+  }
+
+  Spider nearestSpider(int x, int y, int tolerance) {
+    Spider best = null;
+    long bestDistSq = (long) tolerance * tolerance;
+    int cx1 = cellOf(x - tolerance), cx2 = cellOf(x + tolerance);
+    int cy1 = cellOf(y - tolerance), cy2 = cellOf(y + tolerance);
+    for (int cx = cx1; cx <= cx2; cx++) {
+      for (int cy = cy1; cy <= cy2; cy++) {
+        List<Spider> bucket = spiderCells.get(cx, cy);
+        if (bucket == null)
+          continue;
+        for (int i = 0; i < bucket.size(); i++) {
+          Spider s = bucket.get(i);
+          long dx = s.getX() - x;
+          long dy = s.getY() - y;
+          long distSq = dx * dx + dy * dy;
+          if (distSq < bestDistSq) {
+            bestDistSq = distSq;
+            best = s;
+          }
+        }
+      }
+    }
+    return best;
+  }
+
+  Edge nearestEdge(int x, int y, int tolerance) {
+    Edge best = null;
+    double bestDistSq = (double) tolerance * tolerance;
+    int cx1 = cellOf(x - tolerance), cx2 = cellOf(x + tolerance);
+    int cy1 = cellOf(y - tolerance), cy2 = cellOf(y + tolerance);
+    for (int cx = cx1; cx <= cx2; cx++) {
+      for (int cy = cy1; cy <= cy2; cy++) {
+        List<Edge> bucket = edgeCells.get(cx, cy);
+        if (bucket == null)
+          continue;
+        for (int i = 0; i < bucket.size(); i++) {
+          Edge e = bucket.get(i);
+          double distSq = segmentDistSq(e.getSource().getX(), e.getSource().getY(),
+              e.getTarget().getX(), e.getTarget().getY(), x, y);
+          if (distSq < bestDistSq) {
+            bestDistSq = distSq;
+            best = e;
+          }
+        }
+      }
+    }
+    for (Edge e : longEdges) {
+      double distSq = segmentDistSq(e.getSource().getX(), e.getSource().getY(),
+          e.getTarget().getX(), e.getTarget().getY(), x, y);
+      if (distSq < bestDistSq) {
+        bestDistSq = distSq;
+        best = e;
+      }
+    }
+    return best;
+  }
+
+  void collectSpiders(int x, int y, int width, int height, Collection<? super Spider> out) {
+    int maxX = x + width;
+    int maxY = y + height;
+    spiderCells.forEachBucket(cellOf(x), cellOf(y), cellOf(maxX), cellOf(maxY), bucket -> {
+      for (int i = 0; i < bucket.size(); i++) {
+        Spider s = bucket.get(i);
+        if (s.getX() >= x && s.getX() <= maxX && s.getY() >= y && s.getY() <= maxY) {
+          out.add(s);
+        }
+      }
+    });
+  }
+
+  // Conservative: every edge registered in a cell overlapping the area is
+  // added, as are all long edges.
+  void collectEdges(int x, int y, int width, int height, Collection<? super Edge> out) {
+    edgeCells.forEachBucket(cellOf(x), cellOf(y), cellOf(x + width), cellOf(y + height), out::addAll);
+    out.addAll(longEdges);
+  }
+
+  /** Number of cells holding a spider, plus those holding an edge. */
+  int cellCount() {
+    return spiderCells.size + edgeCells.size;
+  }
+
+  static int cellOf(int coordinate) {
+    return Math.floorDiv(coordinate, CELL_SIZE);
+  }
+
+  static double segmentDistSq(int x1, int y1, int x2, int y2, int px, int py) {
+    double dx = x2 - x1;
+    double dy = y2 - y1;
+    double lenSq = dx * dx + dy * dy;
+    double t = lenSq == 0 ? 0 : ((px - x1) * dx + (py - y1) * dy) / lenSq;
+    t = Math.max(0, Math.min(1, t));
+    double ex = x1 + t * dx - px;
+    double ey = y1 + t * dy - py;
+    return ex * ex + ey * ey;
+  }
+
+  // Walks the cells column by column, covering the segment's y-extent within
+  // each column. This may include a cell the segment only touches at a corner.
+  private void updateSegment(Edge edge, int x1, int y1, int x2, int y2, boolean add) {
+    if (Math.abs(cellOf(x2) - cellOf(x1)) + Math.abs(cellOf(y2) - cellOf(y1)) > LONG_EDGE_CELLS) {
+      if (add) {
+        longEdges.add(edge);
+      } else {
+        longEdges.remove(edge);
+      }
+      return;
+    }
+    if (x1 > x2) {
+      int tx = x1, ty = y1;
+      x1 = x2;
+      y1 = y2;
+      x2 = tx;
+      y2 = ty;
+    }
+    int cx1 = cellOf(x1), cx2 = cellOf(x2);
+    double slope = x2 == x1 ? 0 : (double) (y2 - y1) / (x2 - x1);
+    for (int cx = cx1; cx <= cx2; cx++) {
+      int cy1, cy2;
+      if (x1 == x2) {
+        cy1 = cellOf(Math.min(y1, y2));
+        cy2 = cellOf(Math.max(y1, y2));
+      } else {
+        double xa = Math.max(x1, (double) cx * CELL_SIZE);
+        double xb = Math.min(x2, (double) (cx + 1) * CELL_SIZE);
+        double ya = y1 + (xa - x1) * slope;
+        double yb = y1 + (xb - x1) * slope;
+        cy1 = Math.floorDiv((int) Math.floor(Math.min(ya, yb)), CELL_SIZE);
+        cy2 = Math.floorDiv((int) Math.floor(Math.max(ya, yb)), CELL_SIZE);
+      }
+      for (int cy = cy1; cy <= cy2; cy++) {
+        if (add) {
+          edgeCells.add(cx, cy, edge);
+        } else {
+          edgeCells.remove(cx, cy, edge);
+        }
+      }
+    }
+  }
+
+  /**
+   * Open-addressing map from packed cell coordinates to buckets, so lookups
+   * do not box their keys. A bucket is dropped once it is empty, so the
+   * table only holds occupied cells however far spiders are dragged.
+   */
+  private static final class CellTable<T> {
+    private long[] keys = new long[64];
+    private Object[] buckets = new Object[64];
+    private int size = 0;
+
+    void clear() {
+      Arrays.fill(buckets, null);
+      size = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    List<T> get(int cx, int cy) {
+      int i = indexOf(pack(cx, cy));
+      return i < 0 ? null : (List<T>) buckets[i];
+    }
+
+    private int indexOf(long key) {
+      int mask = keys.length - 1;
+      for (int i = mix(key) & mask;; i = (i + 1) & mask) {
+        if (buckets[i] == null)
+          return -1;
+        if (keys[i] == key)
+          return i;
+      }
+    }
+
+    /**
+     * Visits the non-empty buckets inside the given cell range. When the range
+     * covers more cells than the table holds, the table is scanned instead.
+     */
+    @SuppressWarnings("unchecked")
+    void forEachBucket(int cx1, int cy1, int cx2, int cy2, Consumer<List<T>> action) {
+      long cellCount = ((long) cx2 - cx1 + 1) * ((long) cy2 - cy1 + 1);
+      if (cellCount > size) {
+        for (int i = 0; i < keys.length; i++) {
+          List<T> bucket = (List<T>) buckets[i];
+          if (bucket == null)
+            continue;
+          int cx = (int) (keys[i] >> 32);
+          int cy = (int) keys[i];
+          if (cx >= cx1 && cx <= cx2 && cy >= cy1 && cy <= cy2) {
+            action.accept(bucket);
+          }
+        }
+        return;
+      }
+      for (int cx = cx1; cx <= cx2; cx++) {
+        for (int cy = cy1; cy <= cy2; cy++) {
+          List<T> bucket = get(cx, cy);
+          if (bucket != null) {
+            action.accept(bucket);
+          }
+        }
+      }
+    }
+
+    void add(int cx, int cy, T element) {
+      List<T> bucket = get(cx, cy);
+      if (bucket == null) {
+        bucket = new ArrayList<>(4);
+        put(pack(cx, cy), bucket);
+      }
+      bucket.add(element);
+    }
+
+    @SuppressWarnings("unchecked")
+    void remove(int cx, int cy, T element) {
+      int i = indexOf(pack(cx, cy));
+      if (i < 0)
+        return;
+      List<T> bucket = (List<T>) buckets[i];
+      bucket.remove(element);
+      if (bucket.isEmpty()) {
+        delete(i);
+      }
+    }
+
+    // Backward-shift deletion: entries later in the probe run move into the
+    // gap, unless their home slot lies after it, so lookups need no tombstones
+    private void delete(int gap) {
+      int mask = keys.length - 1;
+      buckets[gap] = null;
+      size--;
+      for (int i = (gap + 1) & mask; buckets[i] != null; i = (i + 1) & mask) {
+        int home = mix(keys[i]) & mask;
+        if (((i - home) & mask) >= ((i - gap) & mask)) {
+          keys[gap] = keys[i];
+          buckets[gap] = buckets[i];
+          buckets[i] = null;
+          gap = i;
+        }
+      }
+    }
+
+    private void put(long key, List<T> bucket) {
+      if ((size + 1) * 2 > keys.length) {
+        grow();
+      }
+      int mask = keys.length - 1;
+      int i = mix(key) & mask;
+      while (buckets[i] != null) {
+        i = (i + 1) & mask;
+      }
+      keys[i] = key;
+      buckets[i] = bucket;
+      size++;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void grow() {
+      long[] oldKeys = keys;
+      Object[] oldBuckets = buckets;
+      keys = new long[oldKeys.length * 2];
+      buckets = new Object[oldBuckets.length * 2];
+      size = 0;
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldBuckets[i] != null) {
+          put(oldKeys[i], (List<T>) oldBuckets[i]);
+        }
+      }
+    }
+
+    private static long pack(int cx, int cy) {
+      return ((long) cx << 32) | (cy & 0xffffffffL);
+    }
+
+    private static int mix(long key) {
+      long h = key * 0x9E3779B97F4A7C15L;
+      return (int) (h ^ (h >>> 32));
+    }
+  }
+}
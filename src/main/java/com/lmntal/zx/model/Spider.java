@@ -5,7 +5,7 @@ import java.awt.Point;
 public class Spider extends GraphElement {
   private int x, y;
   private SpiderType type;
-  private String phase = "0";
+  private Phase phase = Phase.ZERO;
   private String label; // For BOUNDARY type
   private String variableLabel; // For undefined spiders in rules
   private boolean isColorUndefined = false;
@@ -28,7 +28,7 @@ public class Spider extends GraphElement {
   }
 
   public boolean isPhaseUndefined() {
-    return "?".equals(phase);
+    return phase.isUndefined();
   }
 
   public boolean isUndefined() {
@@ -40,7 +40,7 @@ public class Spider extends GraphElement {
   }
 
   public void setX(int x) {
-    this.x = x;
+    setLocation(x, this.y);
   }
 
   public int getY() {
@@ -48,7 +48,7 @@ public class Spider extends GraphElement {
   }
 
   public void setY(int y) {
-    this.y = y;
+    setLocation(this.x, y);
   }
 
   public Point getLocation() {
@@ -56,8 +56,13 @@ public class Spider extends GraphElement {
   }
 
   public void setLocation(int x, int y) {
+    int oldX = this.x;
+    int oldY = this.y;
     this.x = x;
     this.y = y;
+    if (getOwner() != null && (oldX != x || oldY != y)) {
+      getOwner().spiderMoved(this, oldX, oldY);
+    }
   }
 
   public SpiderType getType() {
@@ -66,14 +71,26 @@ public class Spider extends GraphElement {
 
   public void setType(SpiderType type) {
     this.type = type;
+    notifyChanged();
   }
 
+  /** The phase in degrees, or its symbol; see {@link Phase#toString}. */
   public String getPhase() {
-    return phase;
+    return phase.toString();
   }
 
+  /** Sets the phase from text, as read by {@link Phase#parse}. */
   public void setPhase(String phase) {
+    setPhaseValue(Phase.parse(phase));
+  }
+
+  public Phase getPhaseValue() {
+    return phase;
+  }
+
+  public void setPhaseValue(Phase phase) {
     this.phase = phase;
+    notifyChanged();
   }
 
   public String getLabel() {
@@ -82,6 +99,7 @@ public class Spider extends GraphElement {
 
   public void setLabel(String label) {
     this.label = label;
+    notifyChanged();
   }
 
   public String getVariableLabel() {
@@ -90,6 +108,7 @@ public class Spider extends GraphElement {
 
   public void setVariableLabel(String variableLabel) {
     this.variableLabel = variableLabel;
+    notifyChanged();
   }
 
   public boolean isColorUndefined() {
@@ -98,5 +117,6 @@ public class Spider extends GraphElement {
 
   public void setColorUndefined(boolean isColorUndefined) {
     this.isColorUndefined = isColorUndefined;
+    notifyChanged();
   }
 }
@@ -0,0 +1,329 @@
+package com.lmntal.zx.model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Weisfeiler-Lehman color refinement over ZX graphs, used for order-independent
+ * hashing and as the pruning step of an exact isomorphism test.
+ */
+final class StructuralHash {
+  private static final long NORMAL_SALT = 0x1F3D5B79A2C4E6F1L;
+  private static final long HADAMARD_SALT = 0x6A09E667F3BCC909L;
+  // Backtracking steps allowed before falling back to comparing emitted LMNtal
+  private static final long SEARCH_BUDGET = 2_000_000;
+
+  private StructuralHash() {
+  }
+
+  static long hash(ZXGraph graph) {
+    Indexed g = new Indexed(graph);
+    long h = mix(g.nodes.length * 31L + g.edgeCount);
+    long sum = 0;
+    for (long color : g.colors) {
+      sum += mix(color);
+    }
+    return mix(h ^ sum) + g.rounds;
+  }
+
+  static boolean isomorphic(ZXGraph a, ZXGraph b) {
+    Indexed ga = new Indexed(a);
+    Indexed gb = new Indexed(b);
+    if (ga.nodes.length != gb.nodes.length || ga.edgeCount != gb.edgeCount || ga.rounds != gb.rounds) {
+      return false;
+    }
+    if (identityMappingMatches(ga, gb)) {
+      return true;
+    }
+    Boolean result = search(ga, gb);
+    if (result == null) {
+      return a.toLMNtal().equals(b.toLMNtal());
+    }
+    return result;
+  }
+
+  // Graphs copied with setData keep their spider order, so try that first
+  private static boolean identityMappingMatches(Indexed a, Indexed b) {
+    for (int i = 0; i < a.nodes.length; i++) {
+      if (a.colors[i] != b.colors[i] || !sameAttributes(a.nodes[i], b.nodes[i])) {
+        return false;
+      }
+    }
+    return a.multiplicity.equals(b.multiplicity);
+  }
+
+  /**
+   * Backtracking search for a color-preserving bijection that also preserves
+   * edge multiplicities per edge type.
+   *
+   * @return the answer, or null if the search budget ran out
+   */
+  private static Boolean search(Indexed a, Indexed b) {
+    int n = a.nodes.length;
+    Map<Long, int[]> candidatesByColor = groupByColor(b);
+    Map<Long, int[]> classesInA = groupByColor(a);
+    for (Map.Entry<Long, int[]> entry : classesInA.entrySet()) {
+      int[] inB = candidatesByColor.get(entry.getKey());
+      if (inB == null || inB.length != entry.getValue().length) {
+        return false;
+      }
+    }
+
+    int[] order = searchOrder(a, classesInA);
+    int[] mapAB = new int[n];
+    int[] mapBA = new int[n];
+    int[] choice = new int[n];
+    Arrays.fill(mapAB, -1);
+    Arrays.fill(mapBA, -1);
+    Arrays.fill(choice, -1);
+
+    long steps = 0;
+    int depth = 0;
+    while (depth >= 0 && depth < n) {
+      if (++steps > SEARCH_BUDGET) {
+        return null;
+      }
+      int v = order[depth];
+      if (mapAB[v] != -1) {
+        mapBA[mapAB[v]] = -1;
+        mapAB[v] = -1;
+      }
+      int[] candidates = candidatesByColor.get(a.colors[v]);
+      boolean found = false;
+      for (int k = choice[depth] + 1; k < candidates.length; k++) {
+        int w = candidates[k];
+        if (mapBA[w] != -1 || !sameAttributes(a.nodes[v], b.nodes[w]) || !consistent(a, b, v, w, mapAB, mapBA)) {
+          continue;
+        }
+        mapAB[v] = w;
+        mapBA[w] = v;
+        choice[depth] = k;
+        found = true;
+        break;
+      }
+      if (found) {
+        depth++;
+        if (depth < n) {
+          choice[depth] = -1;
+        }
+      } else {
+        choice[depth] = -1;
+        depth--;
+      }
+    }
+    return depth == n;
+  }
+
+  private static boolean consistent(Indexed a, Indexed b, int v, int w, int[] mapAB, int[] mapBA) {
+    for (int i = 0; i < a.adjacent[v].length; i++) {
+      int u = a.adjacent[v][i];
+      int type = a.adjacentType[v][i];
+      int mapped = u == v ? w : mapAB[u];
+      if (mapped != -1 && a.count(v, u, type) != b.count(w, mapped, type)) {
+        return false;
+      }
+    }
+    for (int i = 0; i < b.adjacent[w].length; i++) {
+      int x = b.adjacent[w][i];
+      int type = b.adjacentType[w][i];
+      int mapped = x == w ? v : mapBA[x];
+      if (mapped != -1 && b.count(w, x, type) != a.count(v, mapped, type)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // Breadth-first from the rarest colors, so each step is constrained by
+  // already mapped neighbors
+  private static int[] searchOrder(Indexed a, Map<Long, int[]> classes) {
+    int n = a.nodes.length;
+    Integer[] byRarity = new Integer[n];
+    for (int i = 0; i < n; i++) {
+      byRarity[i] = i;
+    }
+    Arrays.sort(byRarity, (x, y) -> Integer.compare(classes.get(a.colors[x]).length, classes.get(a.colors[y]).length));
+
+    int[] order = new int[n];
+    boolean[] queued = new boolean[n];
+    int size = 0;
+    ArrayDeque<Integer> queue = new ArrayDeque<>();
+    for (int start : byRarity) {
+      if (queued[start])
+        continue;
+      queued[start] = true;
+      queue.add(start);
+      while (!queue.isEmpty()) {
+        int v = queue.poll();
+        order[size++] = v;
+        for (int u : a.adjacent[v]) {
+          if (!queued[u]) {
+            queued[u] = true;
+            queue.add(u);
+          }
+        }
+      }
+    }
+    return order;
+  }
+
+  private static Map<Long, int[]> groupByColor(Indexed g) {
+    Map<Long, List<Integer>> groups = new HashMap<>();
+    for (int i = 0; i < g.nodes.length; i++) {
+      groups.computeIfAbsent(g.colors[i], k -> new ArrayList<>()).add(i);
+    }
+    Map<Long, int[]> result = new HashMap<>();
+    groups.forEach((color, members) -> result.put(color, members.stream().mapToInt(Integer::intValue).toArray()));
+    return result;
+  }
+
+  static boolean sameAttributes(Spider a, Spider b) {
+    if (a.getType() == SpiderType.BOUNDARY || b.getType() == SpiderType.BOUNDARY) {
+      return a.getType() == b.getType() && Objects.equals(a.getLabel(), b.getLabel());
+    }
+    if (a.isColorUndefined() != b.isColorUndefined() || a.isPhaseUndefined() != b.isPhaseUndefined()) {
+      return false;
+    }
+    if (!a.isColorUndefined() && a.getType() != b.getType()) {
+      return false;
+    }
+    if (!a.isPhaseUndefined() && !a.getPhaseValue().equals(b.getPhaseValue())) {
+      return false;
+    }
+    return !a.isUndefined() || Objects.equals(a.getVariableLabel(), b.getVariableLabel());
+  }
+
+  private static long initialColor(Spider s) {
+    if (s.getType() == SpiderType.BOUNDARY) {
+      return mix(0xB0B0L ^ Objects.hashCode(s.getLabel()));
+    }
+    long h = s.isColorUndefined() ? 3 : s.getType().ordinal();
+    h = mix(h * 31 + (s.isPhaseUndefined() ? 0x3FL : s.getPhaseValue().hashCode()));
+    if (s.isUndefined()) {
+      h = mix(h * 31 + Objects.hashCode(s.getVariableLabel()));
+    }
+    return h;
+  }
+
+  private static long salt(int edgeType) {
+    return edgeType == EdgeType.HADAMARD.ordinal() ? HADAMARD_SALT : NORMAL_SALT;
+  }
+
+  // SplitMix64 finalizer
+  static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  /**
+   * Index-based snapshot of a graph with its refined colors. Self-loops appear
+   * twice in the adjacency of their spider.
+   */
+  private static final class Indexed {
+    final Spider[] nodes;
+    final int edgeCount;
+    final int[][] adjacent;
+    final int[][] adjacentType;
+    // Edge count keyed by (lower index, higher index, type)
+    final Map<Long, Integer> multiplicity = new HashMap<>();
+    long[] colors;
+    int rounds;
+
+    Indexed(ZXGraph graph) {
+      List<Spider> spiders = graph.getSpiders();
+      List<Edge> edges = graph.getEdges();
+      nodes = spiders.toArray(new Spider[0]);
+      edgeCount = edges.size();
+      Map<Spider, Integer> index = new IdentityHashMap<>();
+      for (int i = 0; i < nodes.length; i++) {
+        index.put(nodes[i], i);
+      }
+
+      int[] degree = new int[nodes.length];
+      int[] src = new int[edgeCount];
+      int[] dst = new int[edgeCount];
+      int[] type = new int[edgeCount];
+      for (int e = 0; e < edgeCount; e++) {
+        Edge edge = edges.get(e);
+        src[e] = index.getOrDefault(edge.getSource(), -1);
+        dst[e] = index.getOrDefault(edge.getTarget(), -1);
+        type[e] = edge.getType().ordinal();
+        if (src[e] < 0 || dst[e] < 0)
+          continue;
+        degree[src[e]]++;
+        degree[dst[e]]++;
+        multiplicity.merge(key(src[e], dst[e], type[e]), 1, Integer::sum);
+      }
+
+      adjacent = new int[nodes.length][];
+      adjacentType = new int[nodes.length][];
+      for (int i = 0; i < nodes.length; i++) {
+        adjacent[i] = new int[degree[i]];
+        adjacentType[i] = new int[degree[i]];
+      }
+      int[] fill = new int[nodes.length];
+      for (int e = 0; e < edgeCount; e++) {
+        if (src[e] < 0 || dst[e] < 0)
+          continue;
+        adjacent[src[e]][fill[src[e]]] = dst[e];
+        adjacentType[src[e]][fill[src[e]]++] = type[e];
+        adjacent[dst[e]][fill[dst[e]]] = src[e];
+        adjacentType[dst[e]][fill[dst[e]]++] = type[e];
+      }
+      refine();
+    }
+
+    private void refine() {
+      int n = nodes.length;
+      colors = new long[n];
+      for (int i = 0; i < n; i++) {
+        colors[i] = initialColor(nodes[i]);
+      }
+      int distinct = countDistinct(colors);
+      rounds = 0;
+      while (rounds < Math.max(1, n)) {
+        long[] next = new long[n];
+        for (int v = 0; v < n; v++) {
+          long sum = 0;
+          for (int i = 0; i < adjacent[v].length; i++) {
+            sum += mix(colors[adjacent[v][i]] + salt(adjacentType[v][i]));
+          }
+          next[v] = mix(colors[v] * 0x9E3779B97F4A7C15L + sum);
+        }
+        colors = next;
+        rounds++;
+        int nextDistinct = countDistinct(colors);
+        if (nextDistinct == distinct)
+          break;
+        distinct = nextDistinct;
+      }
+    }
+
+    int count(int u, int v, int type) {
+      return multiplicity.getOrDefault(key(u, v, type), 0);
+    }
+
+    private long key(int u, int v, int type) {
+      long lo = Math.min(u, v);
+      long hi = Math.max(u, v);
+      return ((lo * nodes.length + hi) << 1) | type;
+    }
+
+    private static int countDistinct(long[] values) {
+      Set<Long> seen = new HashSet<>();
+      for (long value : values) {
+        seen.add(value);
+      }
+      return seen.size();
+    }
+  }
+}
@@ -0,0 +1,33 @@
+package com.lmntal.zx.model;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * What the editable {@link ZXGraph} and the array-based {@link CompactGraph}
+ * have in common: their size and their LMNtal form. Both write the same text
+ * for the same diagram.
+ */
+public interface ZXDiagram {
+  int getSpiderCount();
+
+  int getEdgeCount();
+
+  boolean isEmpty();
+
+  /**
+   * Adds the guard variables ({@code C<label>} for undefined colors,
+   * {@code P<label>} for undefined phases) that {@link #writeLMNtal} would
+   * emit, without producing any output.
+   */
+  void collectVariables(Set<String> variables);
+
+  /**
+   * Streams the diagram as comma-separated LMNtal atoms (without the
+   * trailing period). Hadamard gates come first, then one atom per
+   * non-boundary spider.
+   */
+  void writeLMNtal(Appendable out, Set<String> variables) throws IOException;
+
+  String toLMNtal();
+}
@@ -1,18 +1,48 @@
 package com.lmntal.zx.model;
 
-import java.awt.geom.Line2D;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
-public class ZXGraph {
-  protected final List<Spider> spiders = new ArrayList<>();
-  protected final List<Edge> edges = new ArrayList<>();
+import com.lmntal.zx.model.GraphSnapshot.EdgeState;
+import com.lmntal.zx.model.GraphSnapshot.SpiderState;
+
+public class ZXGraph implements ZXDiagram {
+  protected final Set<Spider> spiders = new LinkedHashSet<>();
+  protected final Set<Edge> edges = new LinkedHashSet<>();
+  // Incident edges per spider id, in insertion order. A self-loop is stored
+  // once. Indexed by id so that walking the graph does not hash spiders.
+  private final List<List<Edge>> incidence = new ArrayList<>();
+  private final SpatialIndex spatialIndex = new SpatialIndex();
+  private final IdPool spiderIds = new IdPool();
+  private final IdPool edgeIds = new IdPool();
+  private Spider[] spidersById = new Spider[16];
+  private Edge[] edgesById = new Edge[16];
+  // Persistent copy of the state above, kept in step so snapshots are O(1).
+  // Trie nodes made under the current edit token are not in any snapshot yet
+  // and are updated in place.
+  private PersistentIdMap<SpiderState> spiderStates = PersistentIdMap.empty();
+  private PersistentIdMap<EdgeState> edgeStates = PersistentIdMap.empty();
+  private Object edit = new Object();
+  // Marks this graph's snapshots without them referring to the graph
+  private final Object snapshotOwner = new Object();
+  // Changed on every structural change; positions are not structural
+  private long version = 0;
+  private long lastVersion = 0;
+  private long hashVersion = -1;
+  private long cachedHash;
   private int boundaryCounter = 0;
+  // Spiders and edges added so far; orders them for painting
+  private long insertions = 0;
   final private AtomicInteger variableCounter = new AtomicInteger(0);
 
   public ZXGraph() {
@@ -23,7 +53,23 @@ public class ZXGraph {
   }
 
   public void addSpider(Spider spider) {
+    if (spiders.contains(spider))
+      return;
+    spider.checkAttachable(this); // Before anything changes
+    attachSpider(spider, spiderIds.acquire());
+  }
+
+  private void attachSpider(Spider spider, int id) {
     spiders.add(spider);
+    while (incidence.size() <= id) {
+      incidence.add(null);
+    }
+    incidence.set(id, new ArrayList<>());
+    spider.attach(this, id, insertions++);
+    spidersById = store(spidersById, id, spider);
+    spiderStates = spiderStates.with(id, SpiderState.of(spider), edit);
+    spatialIndex.insert(spider);
+    changed();
   }
 
   public void addEdge(Edge edge) {
@@ -31,16 +77,114 @@ public class ZXGraph {
       System.err.println("Attempted to connect two boundary spiders. Operation aborted in model.");
       return;
     }
+    linkEdge(edge);
+  }
+
+  private void linkEdge(Edge edge) {
+    if (edges.contains(edge))
+      return;
+    edge.checkAttachable(this); // Before anything changes
+    linkEdge(edge, edgeIds.acquire());
+  }
+
+  private void linkEdge(Edge edge, int id) {
     edges.add(edge);
+    List<Edge> sourceIncident = incident(edge.getSource());
+    if (sourceIncident != null) {
+      sourceIncident.add(edge);
+    }
+    List<Edge> targetIncident = incident(edge.getTarget());
+    if (targetIncident != null && !edge.isSelfLoop()) {
+      targetIncident.add(edge);
+    }
+    edge.attach(this, id, insertions++);
+    edgesById = store(edgesById, id, edge);
+    edgeStates = edgeStates.with(id, stateOf(edge), edit);
+    spatialIndex.insert(edge);
+    changed();
+  }
+
+  // Null for a spider that is not in this graph
+  private List<Edge> incident(Spider spider) {
+    return spider.getOwner() == this ? incidence.get(spider.getId()) : null;
+  }
+
+  private static <T> T[] store(T[] byId, int id, T element) {
+    if (id >= byId.length) {
+      byId = Arrays.copyOf(byId, Math.max(2 * byId.length, id + 1));
+    }
+    byId[id] = element;
+    return byId;
+  }
+
+  private EdgeState stateOf(Edge edge) {
+    return new EdgeState(localId(edge.getSource()), localId(edge.getTarget()), edge.getType());
+  }
+
+  private int localId(Spider spider) {
+    return spider.getOwner() == this ? spider.getId() : -1;
   }
 
   public void removeSpider(Spider spider) {
-    edges.removeIf(e -> e.getSource().equals(spider) || e.getTarget().equals(spider));
-    spiders.remove(spider);
+    List<Edge> incident = incident(spider);
+    if (incident != null) {
+      incidence.set(spider.getId(), null);
+      for (Edge e : incident) {
+        edges.remove(e);
+        spatialIndex.remove(e);
+        releaseEdge(e);
+        if (!e.isSelfLoop()) {
+          List<Edge> otherIncident = incident(e.getOpposite(spider));
+          if (otherIncident != null) {
+            otherIncident.remove(e);
+          }
+        }
+      }
+    }
+    if (spiders.remove(spider)) {
+      spatialIndex.remove(spider);
+      releaseSpider(spider);
+    }
+    changed();
+  }
+
+  private void releaseSpider(Spider spider) {
+    if (spider.getOwner() == this) {
+      spidersById[spider.getId()] = null;
+      spiderStates = spiderStates.without(spider.getId(), edit);
+      releaseOwnership(spider, spiderIds);
+    }
+  }
+
+  private void releaseEdge(Edge edge) {
+    if (edge.getOwner() == this) {
+      edgesById[edge.getId()] = null;
+      edgeStates = edgeStates.without(edge.getId(), edit);
+      releaseOwnership(edge, edgeIds);
+    }
+  }
+
+  private void releaseOwnership(GraphElement element, IdPool ids) {
+    if (element.getOwner() == this) {
+      ids.release(element.getId());
+      element.detach();
+    }
   }
 
   public void removeEdge(Edge edge) {
-    edges.remove(edge);
+    if (!edges.remove(edge))
+      return;
+    spatialIndex.remove(edge);
+    releaseEdge(edge);
+    changed();
+    List<Edge> sourceIncident = incident(edge.getSource());
+    if (sourceIncident != null) {
+      sourceIncident.remove(edge);
+    }
+    List<Edge> targetIncident = incident(edge.getTarget());
+    if (targetIncident != null && !edge.isSelfLoop()) {
+      targetIncident.remove(edge);
+    }
   }
 
   public List<Spider> getSpiders() {
@@ -51,27 +195,235 @@ public class ZXGraph {
     return new ArrayList<>(edges);
   }
 
-  public Spider findSpiderAt(int x, int y, int tolerance) {
-    for (Spider s : spiders) {
-      if (Math.sqrt(Math.pow(s.getX() - x, 2) + Math.pow(s.getY() - y, 2)) < tolerance) {
-        return s;
+  @Override
+  public int getSpiderCount() {
+    return spiders.size();
+  }
+
+  @Override
+  public int getEdgeCount() {
+    return edges.size();
+  }
+
+  /** One more than the largest id of a spider in this graph; see {@link GraphElement#getId}. */
+  public int getSpiderIdLimit() {
+    return spiderIds.limit();
+  }
+
+  /** One more than the largest id of an edge in this graph. */
+  public int getEdgeIdLimit() {
+    return edgeIds.limit();
+  }
+
+  Spider spiderById(int id) {
+    return id < spidersById.length ? spidersById[id] : null;
+  }
+
+  Edge edgeById(int id) {
+    return id < edgesById.length ? edgesById[id] : null;
+  }
+
+  public boolean containsSpider(Spider spider) {
+    return spiders.contains(spider);
+  }
+
+  /**
+   * Returns the edges touching the given spider, in insertion order. The view
+   * is read-only and reflects later changes to the graph.
+   */
+  public List<Edge> getIncidentEdges(Spider spider) {
+    List<Edge> incident = incident(spider);
+    return incident == null ? Collections.emptyList() : Collections.unmodifiableList(incident);
+  }
+
+  /**
+   * Returns the spiders adjacent to the given spider, one entry per incident
+   * edge. A self-loop contributes the spider itself once.
+   */
+  public List<Spider> getNeighbors(Spider spider) {
+    List<Edge> incident = incident(spider);
+    if (incident == null)
+      return Collections.emptyList();
+    List<Spider> neighbors = new ArrayList<>(incident.size());
+    for (Edge e : incident) {
+      neighbors.add(e.getOpposite(spider));
+    }
+    return neighbors;
+  }
+
+  /**
+   * Number of edge ends attached to the spider; a self-loop counts twice.
+   */
+  public int getDegree(Spider spider) {
+    List<Edge> incident = incident(spider);
+    if (incident == null)
+      return 0;
+    int degree = incident.size();
+    for (Edge e : incident) {
+      if (e.isSelfLoop()) {
+        degree++;
       }
     }
-    return null;
+    return degree;
+  }
+
+  /**
+   * Returns the spider whose center is nearest to (x, y) and strictly within
+   * the tolerance, or null.
+   */
+  public Spider findSpiderAt(int x, int y, int tolerance) {
+    return spatialIndex.nearestSpider(x, y, tolerance);
   }
 
+  /**
+   * Returns the edge whose segment is nearest to (x, y) and strictly within the
+   * tolerance, or null.
+   */
   public Edge findEdgeAt(int x, int y, int tolerance) {
-    for (Edge e : edges) {
-      if (new Line2D.Float(e.getSource().getLocation(), e.getTarget().getLocation()).ptSegDist(x, y) < tolerance) {
-        return e;
+    return spatialIndex.nearestEdge(x, y, tolerance);
+  }
+
+  /**
+   * Adds every spider whose center lies in the given area to {@code out}.
+   */
+  public void collectSpidersIn(int x, int y, int width, int height, Collection<? super Spider> out) {
+    spatialIndex.collectSpiders(x, y, width, height, out);
+  }
+
+  /**
+   * Adds every edge that may cross the given area to {@code out}. The result
+   * can include nearby edges and, unless {@code out} is a set, duplicates.
+   */
+  public void collectEdgesIn(int x, int y, int width, int height, Collection<? super Edge> out) {
+    spatialIndex.collectEdges(x, y, width, height, out);
+  }
+
+  void elementChanged(GraphElement element) {
+    if (element instanceof Spider spider) {
+      SpiderState state = SpiderState.of(spider);
+      if (state.equals(spiderStates.get(spider.getId())))
+        return;
+      spiderStates = spiderStates.with(spider.getId(), state, edit);
+    } else if (element instanceof Edge edge) {
+      EdgeState state = stateOf(edge);
+      if (state.equals(edgeStates.get(edge.getId())))
+        return;
+      edgeStates = edgeStates.with(edge.getId(), state, edit);
+    }
+    changed();
+  }
+
+  private void changed() {
+    version = ++lastVersion;
+  }
+
+  /**
+   * Number that changes whenever spiders, edges or their attributes change.
+   * Moving a spider does not count as a change. A version is never handed
+   * out twice, except that {@link #restore} brings back the version of the
+   * snapshot, so equal versions of one graph mean equal structure.
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * Order-independent 64-bit hash of the graph structure: spider colors,
+   * phases, boundary and variable labels, and edge types. Positions and
+   * insertion order are ignored. Cached until the next change.
+   */
+  public long getStructuralHash() {
+    if (hashVersion != version) {
+      cachedHash = StructuralHash.hash(this);
+      hashVersion = version;
+    }
+    return cachedHash;
+  }
+
+  void spiderMoved(Spider spider, int oldX, int oldY) {
+    if (spiders.contains(spider)) {
+      spatialIndex.move(spider, oldX, oldY, getIncidentEdges(spider));
+      spiderStates = spiderStates.with(spider.getId(), SpiderState.of(spider), edit);
+    }
+  }
+
+  /**
+   * Captures the current state in O(1). Later edits copy the trie paths they
+   * touch instead of changing the snapshot.
+   */
+  public GraphSnapshot snapshot() {
+    edit = new Object();
+    return new GraphSnapshot(snapshotOwner, spiderStates, edgeStates, version);
+  }
+
+  /**
+   * Brings the graph back to the state of a snapshot taken from it. Only the
+   * spiders and edges that differ are touched: spiders still in the graph are
+   * updated in place and keep their identity, others are removed or created
+   * under their old ids.
+   *
+   * @throws IllegalArgumentException if the snapshot is of another graph
+   */
+  public void restore(GraphSnapshot snapshot) {
+    if (snapshot.owner != snapshotOwner)
+      throw new IllegalArgumentException("Snapshot was taken from another graph");
+    edit = new Object(); // Keeps the tries being compared from changing
+    // Edges that differ are removed first and linked again once their ends exist
+    List<Integer> relinked = new ArrayList<>();
+    PersistentIdMap.diff(edgeStates, snapshot.edges, (id, before, after) -> {
+      if (before != null) {
+        removeEdge(edgesById[id]);
+      }
+      if (after != null) {
+        relinked.add(id);
+      }
+    });
+    PersistentIdMap.diff(spiderStates, snapshot.spiders, (id, before, after) -> {
+      if (after == null) {
+        removeSpider(spidersById[id]);
+      } else if (before == null) {
+        Spider spider = new Spider(after.x(), after.y(), after.type());
+        assign(spider, after);
+        attachSpider(spider, spiderIds.take(id));
+      } else {
+        assign(spidersById[id], after);
+      }
+    });
+    for (int id : relinked) {
+      EdgeState state = snapshot.edges.get(id);
+      if (state.source() >= 0 && state.target() >= 0) {
+        linkEdge(new Edge(spidersById[state.source()], spidersById[state.target()], state.type()), edgeIds.take(id));
       }
     }
-    return null;
+    spiderStates = snapshot.spiders;
+    edgeStates = snapshot.edges;
+    version = snapshot.getVersion();
+    edit = new Object();
+  }
+
+  private static void assign(Spider spider, SpiderState state) {
+    spider.setType(state.type());
+    spider.setPhaseValue(state.phase());
+    spider.setLabel(state.label());
+    spider.setVariableLabel(state.variableLabel());
+    spider.setColorUndefined(state.colorUndefined());
+    spider.setLocation(state.x(), state.y());
   }
 
   public void clear() {
+    spiders.forEach(spider -> releaseOwnership(spider, spiderIds));
+    edges.forEach(edge -> releaseOwnership(edge, edgeIds));
     spiders.clear();
     edges.clear();
+    incidence.clear();
+    spatialIndex.clear();
+    spiderIds.clear();
+    edgeIds.clear();
+    Arrays.fill(spidersById, null);
+    Arrays.fill(edgesById, null);
+    spiderStates = PersistentIdMap.empty();
+    edgeStates = PersistentIdMap.empty();
+    changed();
     boundaryCounter = 0;
     variableCounter.set(0);
   }
@@ -83,21 +435,26 @@ public class ZXGraph {
 
     this.boundaryCounter = other.boundaryCounter;
     this.variableCounter.set(other.variableCounter.get());
-    Map<Integer, Spider> oldIdToNewSpider = new HashMap<>();
-    for (Spider oldSpider : other.getSpiders()) {
+    // Copies by the id of the original; ends outside the other graph have none
+    Spider[] copies = new Spider[other.getSpiderIdLimit()];
+    for (Spider oldSpider : other.spiders) {
       Spider newSpider = new Spider(oldSpider);
-      this.spiders.add(newSpider);
-      oldIdToNewSpider.put(oldSpider.getId(), newSpider);
+      this.addSpider(newSpider);
+      copies[oldSpider.getId()] = newSpider;
     }
-    for (Edge oldEdge : other.getEdges()) {
-      Spider newSource = oldIdToNewSpider.get(oldEdge.getSource().getId());
-      Spider newTarget = oldIdToNewSpider.get(oldEdge.getTarget().getId());
+    for (Edge oldEdge : other.edges) {
+      Spider newSource = other.copyOf(oldEdge.getSource(), copies);
+      Spider newTarget = other.copyOf(oldEdge.getTarget(), copies);
       if (newSource != null && newTarget != null) {
-        this.edges.add(new Edge(oldEdge, newSource, newTarget));
+        this.linkEdge(new Edge(oldEdge, newSource, newTarget));
       }
     }
   }
 
+  private Spider copyOf(Spider spider, Spider[] copies) {
+    return spider.getOwner() == this ? copies[spider.getId()] : null;
+  }
+
   public String generateUniqueBoundaryLabel() {
     int i = 1;
     while (true) {
@@ -130,118 +487,122 @@ public class ZXGraph {
         .anyMatch(s -> label.equalsIgnoreCase(s.getLabel()));
   }
 
+  @Override
   public boolean isEmpty() {
     return spiders.isEmpty() && edges.isEmpty();
   }
 
+  /**
+   * Structural equality up to renumbering of spiders and edges. Graphs with
+   * different structural hashes are rejected immediately.
+   */
   public boolean isIdenticalTo(ZXGraph other) {
     if (other == null)
       return false;
     if (this.spiders.size() != other.spiders.size() || this.edges.size() != other.edges.size()) {
       return false;
     }
-    Map<String, Long> thisBoundaryCounts = this.spiders.stream()
-        .filter(s -> s.getType() == SpiderType.BOUNDARY && s.getLabel() != null)
-        .collect(Collectors.groupingBy(Spider::getLabel, Collectors.counting()));
-    Map<String, Long> otherBoundaryCounts = other.spiders.stream()
-        .filter(s -> s.getType() == SpiderType.BOUNDARY && s.getLabel() != null)
-        .collect(Collectors.groupingBy(Spider::getLabel, Collectors.counting()));
-
-    if (!thisBoundaryCounts.equals(otherBoundaryCounts)) {
+    if (this.getStructuralHash() != other.getStructuralHash()) {
       return false;
     }
-    return this.toLMNtal().equals(other.toLMNtal());
+    return StructuralHash.isomorphic(this, other);
   }
 
+  @Override
   public String toLMNtal() {
-    return toLMNtal(new java.util.HashSet<>());
+    return toLMNtal(new HashSet<>());
   }
 
   public String toLMNtal(Set<String> variables) {
-    if (isEmpty())
-      return "";
+    StringBuilder sb = new StringBuilder(64 * spiders.size());
+    try {
+      writeLMNtal(sb, variables);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e); // StringBuilder never throws
+    }
+    return sb.toString();
+  }
 
-    ArrayList<String> components = new ArrayList<>();
-    Map<Spider, List<String>> spiderToLinks = new HashMap<>();
+  @Override
+  public void collectVariables(Set<String> variables) {
     for (Spider spider : this.spiders) {
-      if (spider.getType() != SpiderType.BOUNDARY) {
-        spiderToLinks.put(spider, new ArrayList<>());
-      }
+      LMNtalAtoms.collectVariables(spider.getType(), spider.isColorUndefined(), spider.getPhaseValue(),
+          spider.getVariableLabel(), variables);
     }
+  }
 
-    AtomicInteger linkCounter = new AtomicInteger(0);
+  @Override
+  public void writeLMNtal(Appendable out, Set<String> variables) throws IOException {
+    if (isEmpty())
+      return;
 
-    for (Edge edge : this.edges) {
-      Spider source = edge.getSource();
-      Spider target = edge.getTarget();
-      boolean sourceIsBoundary = source.getType() == SpiderType.BOUNDARY;
-      boolean targetIsBoundary = target.getType() == SpiderType.BOUNDARY;
+    // Link number per edge id, in edge order; 0 for NORMAL edges to a boundary
+    int[] linkNumbers = new int[getEdgeIdLimit()];
+    int linkCounter = 0;
+    boolean first = true;
 
-      if (sourceIsBoundary && targetIsBoundary) {
+    for (Edge edge : this.edges) {
+      if (!hasLink(edge))
         continue;
-      }
-
-      if (sourceIsBoundary || targetIsBoundary) {
-        Spider boundaryNode = sourceIsBoundary ? source : target;
-        Spider otherNode = sourceIsBoundary ? target : source;
-        String boundaryLabel = "+" + boundaryNode.getLabel().toUpperCase();
-
-        if (edge.getType() == EdgeType.HADAMARD) {
-          String intermediateLink = "+L" + linkCounter.incrementAndGet();
-          spiderToLinks.get(otherNode).add(intermediateLink);
-          components.add(String.format("h{e^i(180), %s, %s}", intermediateLink, boundaryLabel));
-        } else { // NORMAL Edge
-          spiderToLinks.get(otherNode).add(boundaryLabel);
-        }
-      } else { // Edge between two non-boundary spiders
-        String linkName = "+L" + linkCounter.incrementAndGet();
-        if (edge.getType() == EdgeType.HADAMARD) {
-          String link1 = linkName + "a";
-          String link2 = linkName + "b";
-          spiderToLinks.get(source).add(link1);
-          spiderToLinks.get(target).add(link2);
-          components.add(String.format("h{e^i(180), %s, %s}", link1, link2));
-        } else {
-          spiderToLinks.get(source).add(linkName);
-          spiderToLinks.get(target).add(linkName);
-        }
+      int link = linkNumbers[edge.getId()] = ++linkCounter;
+      if (edge.getType() == EdgeType.HADAMARD) {
+        first = LMNtalAtoms.writeSeparator(out, first);
+        writeHadamardAtom(out, edge, link);
       }
     }
 
     for (Spider spider : this.spiders) {
-      if (spider.getType() == SpiderType.BOUNDARY)
+      if (!hasAtom(spider))
         continue;
-      String color;
-      String phase;
-
-      if (spider.isUndefined()) {
-        String vLabel = spider.getVariableLabel();
-        if (vLabel == null || vLabel.trim().isEmpty()) {
-          // This should be prevented by the controller logic
-          continue;
-        }
-        if (spider.isColorUndefined()) {
-          color = "C" + vLabel;
-          variables.add(color);
-        } else {
-          color = (spider.getType() == SpiderType.Z) ? "+1" : "-1";
-        }
+      first = LMNtalAtoms.writeSeparator(out, first);
+      writeSpiderAtom(out, spider, linkNumbers, variables);
+    }
+  }
 
-        if (spider.isPhaseUndefined()) {
-          phase = "P" + vLabel;
-          variables.add(phase);
-        } else {
-          phase = spider.getPhase();
-        }
-      } else {
-        color = (spider.getType() == SpiderType.Z) ? "+1" : "-1";
-        phase = spider.getPhase();
-      }
+  static boolean hasLink(Edge edge) {
+    return LMNtalAtoms.hasLink(edge.getSource().getType() == SpiderType.BOUNDARY,
+        edge.getTarget().getType() == SpiderType.BOUNDARY, edge.getType());
+  }
 
-      String links = String.join(", ", spiderToLinks.get(spider));
-      components.add(String.format("{c(%s), e^i(%s), %s}", color, phase, links));
+  static boolean hasAtom(Spider spider) {
+    return LMNtalAtoms.hasAtom(spider.getType(), spider.isColorUndefined(), spider.getPhaseValue(),
+        spider.getVariableLabel());
+  }
+
+  static void writeHadamardAtom(Appendable out, Edge edge, int link) throws IOException {
+    Spider source = edge.getSource();
+    Spider target = edge.getTarget();
+    String boundaryLabel = null;
+    if (source.getType() == SpiderType.BOUNDARY) {
+      boundaryLabel = source.getLabel();
+    } else if (target.getType() == SpiderType.BOUNDARY) {
+      boundaryLabel = target.getLabel();
     }
+    LMNtalAtoms.writeHadamardAtom(out, link, boundaryLabel);
+  }
+
+  /**
+   * Writes the atom of a spider for which {@link #hasAtom} holds. Link
+   * numbers are indexed by edge id, 0 for edges without a link.
+   */
+  void writeSpiderAtom(Appendable out, Spider spider, int[] linkNumbers, Set<String> variables) throws IOException {
+    LMNtalAtoms.writeSpiderHead(out, spider.getType(), spider.isColorUndefined(), spider.getPhaseValue(),
+        spider.getVariableLabel(), variables);
+    boolean firstLink = true;
+    for (Edge edge : incidence.get(spider.getId())) {
+      writeLink(out, firstLink, edge, edge.getSource() == spider, linkNumbers);
+      if (edge.isSelfLoop()) {
+        writeLink(out, false, edge, false, linkNumbers);
+      }
+      firstLink = false;
+    }
+    out.append('}');
+  }
 
-    return String.join(",\n", components);
+  private static void writeLink(Appendable out, boolean first, Edge edge, boolean atSource, int[] linkNumbers)
+      throws IOException {
+    Spider other = atSource ? edge.getTarget() : edge.getSource();
+    LMNtalAtoms.writeLink(out, first, linkNumbers[edge.getId()], edge.getType(), atSource,
+        other.getType() == SpiderType.BOUNDARY, other.getLabel());
   }
 }
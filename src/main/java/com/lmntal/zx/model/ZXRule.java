@@ -1,9 +1,11 @@
 package com.lmntal.zx.model;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.TreeSet;
 
 public class ZXRule {
   private final String name;
@@ -60,30 +62,50 @@ public class ZXRule {
   }
 
   public String toLMNtal() {
-    Set<String> lhsVars = new HashSet<>();
-    Set<String> rhsVars = new HashSet<>();
-
-    String lhsStr = lhs.toLMNtal(lhsVars);
-    String rhsStr = rhs.toLMNtal(rhsVars);
-
-    Set<String> allVars = new HashSet<>();
-    allVars.addAll(lhsVars);
-    allVars.addAll(rhsVars);
-
     StringBuilder sb = new StringBuilder(256);
-    String guard = "";
-    if (!allVars.isEmpty()) {
-      String varString = allVars.stream().sorted().collect(Collectors.joining("), int("));
-      guard = " int(" + varString + ") | ";
+    try {
+      writeLMNtal(sb);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e); // StringBuilder never throws
     }
+    return sb.toString();
+  }
 
-    sb.append(String.format("%s@@\n%s\n:-%s\n%s.", this.getName(), lhsStr, guard, rhsStr));
-
+  /**
+   * Streams the rule, followed by its reverse when the rule is two-way. Both
+   * directions share one guard built from the variables of either side.
+   */
+  public void writeLMNtal(Appendable out) throws IOException {
+    String guard = guard();
+    writeDirection(out, lhs, rhs, guard);
     if (type == RuleType.EQUALS) {
-      sb.append("\n\n");
-      sb.append(String.format("%s@@\n%s\n:-%s\n%s.", this.getName(), rhsStr, guard, lhsStr));
+      out.append("\n\n");
+      writeDirection(out, rhs, lhs, guard);
     }
-    return sb.toString();
+  }
+
+  /** The guard shared by both directions, built from the variables of either side. */
+  String guard() {
+    Set<String> allVars = new TreeSet<>();
+    lhs.collectVariables(allVars);
+    rhs.collectVariables(allVars);
+    if (allVars.isEmpty())
+      return "";
+    return " int(" + String.join("), int(", allVars) + ") | ";
+  }
+
+  /** What separates the two sides of a direction. */
+  static String neck(String guard) {
+    return "\n:-" + guard + "\n";
+  }
+
+  private void writeDirection(Appendable out, ZXGraph from, ZXGraph to, String guard) throws IOException {
+    Set<String> unused = new HashSet<>();
+    out.append(this.getName()).append("@@\n");
+    from.writeLMNtal(out, unused);
+    out.append(neck(guard));
+    to.writeLMNtal(out, unused);
+    out.append('.');
   }
 
   public final void setData(ZXRule other) {
@@ -0,0 +1,34 @@
+package com.lmntal.zx.rewrite;
+
+import java.util.Map;
+
+import com.lmntal.zx.model.Edge;
+import com.lmntal.zx.model.EdgeType;
+import com.lmntal.zx.model.Phase;
+import com.lmntal.zx.model.Spider;
+import com.lmntal.zx.model.SpiderType;
+import com.lmntal.zx.model.ZXRule;
+
+/**
+ * One occurrence of a rule's left-hand side in a graph.
+ *
+ * @param spiders    non-boundary LHS spiders to the graph spiders they matched
+ * @param boundaries boundary label to the graph edge that leaves the match
+ * @param colors     variable label to the color bound by an undefined color
+ * @param phases     variable label to the phase bound by an undefined phase
+ */
+public record Match(ZXRule rule, Map<Spider, Spider> spiders, Map<String, Boundary> boundaries,
+    Map<String, SpiderType> colors, Map<String, Phase> phases) {
+
+  /**
+   * Where a boundary of the rule meets the rest of the graph.
+   *
+   * @param edge     the graph edge matched by the boundary's edge
+   * @param outside  the end of that edge outside the match
+   * @param residual what is left of the edge once the rule's own edge is
+   *                 taken off: a Hadamard in the rule consumes the Hadamard
+   *                 on the graph edge
+   */
+  public record Boundary(Edge edge, Spider outside, EdgeType residual) {
+  }
+}
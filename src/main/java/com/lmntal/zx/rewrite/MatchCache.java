@@ -0,0 +1,163 @@
+package com.lmntal.zx.rewrite;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.lmntal.zx.model.Spider;
+
+/**
+ * Search results of each rule by anchor spider, kept across rewrite steps.
+ * An anchor is either known to match, known not to match, or pending. A
+ * rule's match only depends on the spiders and edges within its radius of
+ * the anchor, plus one hop for the edges leaving it, so after a step only
+ * anchors that close to the changed spiders go back to pending. Finding the
+ * next match then costs about the size of the last change instead of a
+ * search of the whole graph.
+ */
+public final class MatchCache {
+  private final List<RuleMatcher> matchers;
+  private final SpiderIndex index;
+  private final List<Entries> entries;
+  // Hops from a changed spider within which each rule's anchors go stale; -1 for every anchor
+  private final int[] reach;
+  private final int maxReach;
+  private long hits;
+  private long misses;
+  private long invalidations;
+
+  MatchCache(List<RuleMatcher> matchers, SpiderIndex index) {
+    this.matchers = matchers;
+    this.index = index;
+    this.entries = matchers.stream().map(matcher -> new Entries(matcher.seeds(index))).toList();
+    this.reach = new int[matchers.size()];
+    int max = 0;
+    for (int r = 0; r < reach.length; r++) {
+      int radius = matchers.get(r).getRadius();
+      reach[r] = radius < 0 ? -1 : radius + 1;
+      max = Math.max(max, reach[r]);
+    }
+    this.maxReach = max;
+  }
+
+  /**
+   * Each request for a rule stands in for a look at every seed spider of
+   * the rule. A seed whose entry is still known counts as a hit, a pending
+   * one that has to be searched from as a miss.
+   *
+   * @param hits          entries reused
+   * @param misses        anchors searched from
+   * @param invalidations entries sent back to pending after a change
+   */
+  public record Stats(long hits, long misses, long invalidations) {
+    public double hitRate() {
+      long requests = hits + misses;
+      return requests == 0 ? 0 : (double) hits / requests;
+    }
+  }
+
+  /** A match of the given rule in the current graph, or null if it has none. */
+  Match find(int rule) {
+    Entries own = entries.get(rule);
+    RuleMatcher matcher = matchers.get(rule);
+    Match found = own.matches.isEmpty() ? null : own.matches.values().iterator().next();
+    int searched = 0;
+    Iterator<Spider> it = own.pending.iterator();
+    while (found == null && it.hasNext()) {
+      Spider anchor = it.next();
+      it.remove();
+      if (!index.getGraph().containsSpider(anchor))
+        continue;
+      searched++;
+      found = matcher.findAt(index, anchor);
+      if (found != null) {
+        own.matches.put(anchor, found);
+      }
+    }
+    misses += searched;
+    hits += Math.max(0, matcher.seedCount(index) - searched);
+    return found;
+  }
+
+  /**
+   * Drops what a change may have made stale.
+   *
+   * @param removed spiders taken out of the graph
+   * @param changed spiders added, or whose edges, color or phase changed
+   */
+  void invalidate(Collection<Spider> removed, Collection<Spider> changed) {
+    for (Spider spider : removed) {
+      for (Entries own : entries) {
+        own.matches.remove(spider);
+        own.pending.remove(spider);
+      }
+    }
+    for (int r = 0; r < reach.length; r++) {
+      if (reach[r] < 0) {
+        Entries own = entries.get(r);
+        own.matches.clear();
+        own.pending.clear();
+        for (Spider seed : matchers.get(r).seeds(index)) {
+          if (own.pending.add(seed)) {
+            invalidations++;
+          }
+        }
+      }
+    }
+
+    // Breadth-first out to the widest reach; removed spiders need no search
+    // of their own, as any path to them passes a changed neighbor first
+    Map<Spider, Integer> distance = new HashMap<>();
+    ArrayDeque<Spider> queue = new ArrayDeque<>();
+    for (Spider spider : changed) {
+      if (index.getGraph().containsSpider(spider) && distance.putIfAbsent(spider, 0) == null) {
+        queue.add(spider);
+      }
+    }
+    while (!queue.isEmpty()) {
+      Spider spider = queue.poll();
+      int d = distance.get(spider);
+      for (int r = 0; r < reach.length; r++) {
+        if (d <= reach[r]) {
+          Entries own = entries.get(r);
+          boolean stale = own.matches.remove(spider) != null;
+          // Anchors that cannot seed the rule are known not to match
+          if (matchers.get(r).isSeed(index, spider)) {
+            stale |= own.pending.add(spider);
+          } else {
+            own.pending.remove(spider);
+          }
+          if (stale) {
+            invalidations++;
+          }
+        }
+      }
+      if (d < maxReach) {
+        for (Spider neighbor : index.getGraph().getNeighbors(spider)) {
+          if (distance.putIfAbsent(neighbor, d + 1) == null) {
+            queue.add(neighbor);
+          }
+        }
+      }
+    }
+  }
+
+  public Stats getStats() {
+    return new Stats(hits, misses, invalidations);
+  }
+
+  private static final class Entries {
+    private final Map<Spider, Match> matches = new LinkedHashMap<>();
+    private final Set<Spider> pending;
+
+    Entries(Collection<Spider> seeds) {
+      pending = new LinkedHashSet<>(seeds);
+    }
+  }
+}
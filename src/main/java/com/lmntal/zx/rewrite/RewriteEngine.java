@@ -0,0 +1,283 @@
+package com.lmntal.zx.rewrite;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import com.lmntal.zx.model.Edge;
+import com.lmntal.zx.model.EdgeType;
+import com.lmntal.zx.model.Spider;
+import com.lmntal.zx.model.SpiderType;
+import com.lmntal.zx.model.ZXGraph;
+import com.lmntal.zx.model.ZXRule;
+
+/**
+ * Applies rules to a graph in place until none of them matches. Rules are
+ * used left to right only, also when they are two-way.
+ *
+ * <p>
+ * {@link #rewrite} applies one match per step, trying rules in list order.
+ * It keeps a {@link MatchCache} across steps, so only the neighborhood of
+ * each change is searched again.
+ * {@link #rewriteInBatches} searches all rules at once on the fork-join pool,
+ * keeps a set of matches that do not interfere, and applies them together;
+ * earlier rules win conflicts.
+ */
+public class RewriteEngine {
+  public static final int DEFAULT_MAX_STEPS = 10_000;
+  // Below this many (rule, seed) pairs a round is searched on one thread
+  private static final int PARALLEL_THRESHOLD = 256;
+
+  private final List<RuleMatcher> matchers;
+  private boolean parallel = true;
+  private Long seed = null;
+  private MatchCache.Stats cacheStats = null;
+
+  public RewriteEngine(List<RuleMatcher> matchers) {
+    this.matchers = List.copyOf(matchers);
+  }
+
+  /**
+   * @param steps    rewrites applied
+   * @param fixpoint whether rewriting stopped because no rule matched, rather
+   *                 than at the step limit
+   */
+  public record Result(int steps, boolean fixpoint) {
+  }
+
+  public Result rewrite(ZXGraph graph) {
+    return rewrite(graph, DEFAULT_MAX_STEPS);
+  }
+
+  public Result rewrite(ZXGraph graph, int maxSteps) {
+    SpiderIndex index = new SpiderIndex(graph);
+    MatchCache cache = new MatchCache(matchers, index);
+    try {
+      int steps = 0;
+      while (steps < maxSteps) {
+        Match match = null;
+        for (int r = 0; r < matchers.size() && match == null; r++) {
+          match = cache.find(r);
+        }
+        if (match == null)
+          return new Result(steps, true);
+        List<Spider> changed = apply(index, match);
+        for (Match.Boundary boundary : match.boundaries().values()) {
+          changed.add(boundary.outside());
+        }
+        cache.invalidate(match.spiders().values(), changed);
+        steps++;
+      }
+      return new Result(steps, false);
+    } finally {
+      cacheStats = cache.getStats();
+    }
+  }
+
+  /**
+   * Rewrites in rounds. Each round searches every rule from every seed
+   * spider while the graph is left untouched, picks matches greedily in rule
+   * then seed order, skipping any that overlaps one already picked, and
+   * applies the picked matches one after another. The result does not depend
+   * on thread scheduling.
+   */
+  public Result rewriteInBatches(ZXGraph graph, int maxSteps) {
+    SpiderIndex index = new SpiderIndex(graph);
+    int steps = 0;
+    while (steps < maxSteps) {
+      List<Match> batch = selectIndependent(findAll(index));
+      if (batch.isEmpty())
+        return new Result(steps, true);
+      for (Match match : batch) {
+        if (steps == maxSteps)
+          break;
+        apply(index, match);
+        steps++;
+      }
+    }
+    return new Result(steps, false);
+  }
+
+  private List<Match> findAll(SpiderIndex index) {
+    List<Anchor> anchors = new ArrayList<>();
+    for (int r = 0; r < matchers.size(); r++) {
+      for (Spider spider : matchers.get(r).seeds(index)) {
+        anchors.add(new Anchor(r, spider));
+      }
+    }
+    Stream<Anchor> stream = anchors.stream();
+    if (parallel && anchors.size() >= PARALLEL_THRESHOLD) {
+      stream = stream.parallel();
+    }
+    // The stream is ordered, so results come back in anchor order
+    List<Match> found = stream
+        .map(anchor -> matchers.get(anchor.rule()).findAt(index, anchor.spider()))
+        .filter(Objects::nonNull)
+        .toList();
+    if (seed == null)
+      return found;
+    // Shuffle among matches of the same rule only, keeping rule priority
+    List<Match> shuffled = new ArrayList<>(found.size());
+    Random random = new Random(seed);
+    int start = 0;
+    while (start < found.size()) {
+      int end = start;
+      while (end < found.size() && found.get(end).rule() == found.get(start).rule()) {
+        end++;
+      }
+      List<Match> sameRule = new ArrayList<>(found.subList(start, end));
+      Collections.shuffle(sameRule, random);
+      shuffled.addAll(sameRule);
+      start = end;
+    }
+    return shuffled;
+  }
+
+  /**
+   * Keeps each match whose spiders are not used by an earlier kept match.
+   * A match's outside neighbors must also survive the earlier rewrites, and
+   * its spiders must not be the outside neighbors of an earlier match.
+   */
+  private static List<Match> selectIndependent(List<Match> matches) {
+    Set<Spider> claimed = new HashSet<>();
+    Set<Spider> bordering = new HashSet<>();
+    List<Match> selected = new ArrayList<>();
+    for (Match match : matches) {
+      Collection<Spider> inner = match.spiders().values();
+      boolean free = true;
+      for (Spider spider : inner) {
+        if (claimed.contains(spider) || bordering.contains(spider)) {
+          free = false;
+          break;
+        }
+      }
+      for (Match.Boundary boundary : match.boundaries().values()) {
+        if (!free)
+          break;
+        free = !claimed.contains(boundary.outside());
+      }
+      if (free) {
+        claimed.addAll(inner);
+        for (Match.Boundary boundary : match.boundaries().values()) {
+          bordering.add(boundary.outside());
+        }
+        selected.add(match);
+      }
+    }
+    return selected;
+  }
+
+  /**
+   * Replaces a match by the rule's right-hand side. The match must come from
+   * this graph with no changes made since.
+   *
+   * @return the spiders created for the right-hand side
+   */
+  public static List<Spider> apply(ZXGraph graph, Match match) {
+    return apply(new SpiderIndex(graph), match);
+  }
+
+  static List<Spider> apply(SpiderIndex index, Match match) {
+    ZXGraph graph = index.getGraph();
+    ZXGraph rhs = match.rule().getRhs();
+
+    // The right-hand side keeps its shape, centered where the match was
+    double matchX = 0, matchY = 0;
+    for (Spider spider : match.spiders().values()) {
+      matchX += spider.getX();
+      matchY += spider.getY();
+      graph.removeSpider(spider);
+      index.update(spider);
+    }
+    matchX /= match.spiders().size();
+    matchY /= match.spiders().size();
+    List<Spider> inner = new ArrayList<>();
+    double rhsX = 0, rhsY = 0;
+    for (Spider spider : rhs.getSpiders()) {
+      if (spider.getType() != SpiderType.BOUNDARY) {
+        inner.add(spider);
+        rhsX += spider.getX();
+        rhsY += spider.getY();
+      }
+    }
+    if (!inner.isEmpty()) {
+      rhsX /= inner.size();
+      rhsY /= inner.size();
+    }
+
+    Map<Spider, Spider> created = new HashMap<>();
+    List<Spider> result = new ArrayList<>(inner.size());
+    for (Spider spider : inner) {
+      SpiderType type = spider.isColorUndefined() ? match.colors().get(spider.getVariableLabel()) : spider.getType();
+      Spider copy = new Spider((int) Math.round(matchX + spider.getX() - rhsX),
+          (int) Math.round(matchY + spider.getY() - rhsY), type);
+      copy.setPhaseValue(
+          spider.isPhaseUndefined() ? match.phases().get(spider.getVariableLabel()) : spider.getPhaseValue());
+      graph.addSpider(copy);
+      created.put(spider, copy);
+      result.add(copy);
+    }
+    for (Edge edge : rhs.getEdges()) {
+      Spider source = created.get(edge.getSource());
+      Spider target = created.get(edge.getTarget());
+      EdgeType type = edge.getType();
+      if (source == null || target == null) {
+        // One end is a boundary: reconnect to what the matched edge led to
+        Spider boundary = source == null ? edge.getSource() : edge.getTarget();
+        Match.Boundary outside = match.boundaries().get(boundary.getLabel());
+        if (outside == null)
+          continue;
+        if (source == null) {
+          source = outside.outside();
+        } else {
+          target = outside.outside();
+        }
+        // Two Hadamards in a row cancel
+        if (outside.residual() == EdgeType.HADAMARD) {
+          type = type == EdgeType.HADAMARD ? EdgeType.NORMAL : EdgeType.HADAMARD;
+        }
+      }
+      graph.addEdge(new Edge(source, target, type));
+    }
+
+    result.forEach(index::update);
+    for (Match.Boundary boundary : match.boundaries().values()) {
+      index.update(boundary.outside());
+    }
+    return result;
+  }
+
+  /** Cache statistics of the last {@link #rewrite}, or null before the first. */
+  public MatchCache.Stats getCacheStats() {
+    return cacheStats;
+  }
+
+  public List<ZXRule> getRules() {
+    return matchers.stream().map(RuleMatcher::getRule).toList();
+  }
+
+  /** Whether {@link #rewriteInBatches} searches on the common fork-join pool. */
+  public void setParallel(boolean parallel) {
+    this.parallel = parallel;
+  }
+
+  /**
+   * Makes {@link #rewriteInBatches} consider matches of the same rule in an
+   * order shuffled with this seed, instead of graph order. A given seed
+   * always gives the same result.
+   */
+  public void setSeed(long seed) {
+    this.seed = seed;
+  }
+
+  private record Anchor(int rule, Spider spider) {
+  }
+}
@@ -0,0 +1,441 @@
+package com.lmntal.zx.rewrite;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import com.lmntal.zx.model.Edge;
+import com.lmntal.zx.model.EdgeType;
+import com.lmntal.zx.model.Phase;
+import com.lmntal.zx.model.RuleValidator;
+import com.lmntal.zx.model.Spider;
+import com.lmntal.zx.model.SpiderType;
+import com.lmntal.zx.model.ZXGraph;
+import com.lmntal.zx.model.ZXRule;
+
+/**
+ * Finds occurrences of a rule's left-hand side in a graph, with the same
+ * meaning as the exported LMNtal rule. Each non-boundary LHS spider matches
+ * a spider of the same color, phase and degree, so every edge of a matched
+ * spider is accounted for; edges between matched spiders must be exactly the
+ * rule's. Each boundary stands for one edge leaving the match. Undefined
+ * colors and phases match anything and bind their variable label.
+ *
+ * <p>
+ * The search is VF2-style: LHS spiders are ordered so each one after the
+ * first of its component is adjacent to an earlier one, then mapped one at a
+ * time, taking candidates from the neighbors of that earlier spider's image
+ * and pruning on color, phase, degree and edges to the spiders mapped so
+ * far. Component roots are seeded from an index keyed on color, degree and,
+ * when the rule fixes it, phase. Before searching, the rule's
+ * {@link RuleSignature} is checked against the index's counts, which rules
+ * out most non-matching rules without looking at any spider.
+ */
+public class RuleMatcher {
+  private final ZXRule rule;
+  // Non-boundary LHS spiders in search order; arrays below use the same order
+  private final Spider[] pattern;
+  private final int[] degree;
+  // Position of an earlier adjacent spider, or -1 for the root of a component
+  private final int[] parent;
+  // Edge counts between two positions by type; a self-loop counts once
+  private final int[][] normalEdges;
+  private final int[][] hadamardEdges;
+  // Boundary edges per position, Hadamard ones first
+  private final List<List<Leg>> legs;
+  private final RuleSignature signature;
+  // Largest distance from the first spider to another, or -1 if the LHS is disconnected
+  private final int radius;
+
+  /**
+   * @throws IllegalArgumentException if the rule fails
+   *                                  {@link RuleValidator#validate}, or a
+   *                                  boundary does not have exactly one edge
+   *                                  on each side
+   */
+  public RuleMatcher(ZXRule rule) {
+    RuleValidator.Violation violation = RuleValidator.validate(rule);
+    if (violation != null) {
+      throw new IllegalArgumentException(violation.message());
+    }
+    checkBoundaries(rule, rule.getLhs());
+    checkBoundaries(rule, rule.getRhs());
+    this.rule = rule;
+
+    ZXGraph lhs = rule.getLhs();
+    signature = new RuleSignature(lhs);
+    List<Spider> inner = new ArrayList<>();
+    for (Spider spider : lhs.getSpiders()) {
+      if (spider.getType() != SpiderType.BOUNDARY) {
+        inner.add(spider);
+      }
+    }
+    int k = inner.size();
+    pattern = new Spider[k];
+    degree = new int[k];
+    parent = new int[k];
+    normalEdges = new int[k][k];
+    hadamardEdges = new int[k][k];
+    legs = new ArrayList<>(k);
+
+    int[] order = searchOrder(lhs, inner);
+    Map<Spider, Integer> position = new HashMap<>();
+    for (int p = 0; p < k; p++) {
+      pattern[p] = inner.get(order[p]);
+      degree[p] = lhs.getDegree(pattern[p]);
+      position.put(pattern[p], p);
+      legs.add(new ArrayList<>());
+    }
+    for (int p = 0; p < k; p++) {
+      parent[p] = -1;
+      for (Edge edge : lhs.getIncidentEdges(pattern[p])) {
+        Spider other = edge.getOpposite(pattern[p]);
+        Integer q = position.get(other);
+        if (q == null) {
+          Leg leg = new Leg(other.getLabel(), edge.getType());
+          if (edge.getType() == EdgeType.HADAMARD) {
+            legs.get(p).add(0, leg);
+          } else {
+            legs.get(p).add(leg);
+          }
+        } else {
+          // Each non-loop edge is seen from both ends; count it from the later one
+          if (q > p)
+            continue;
+          int[][] counts = edge.getType() == EdgeType.HADAMARD ? hadamardEdges : normalEdges;
+          counts[p][q]++;
+          if (q != p) {
+            counts[q][p]++;
+            if (parent[p] < 0) {
+              parent[p] = q;
+            }
+          }
+        }
+      }
+    }
+    radius = computeRadius();
+  }
+
+  private int computeRadius() {
+    int k = pattern.length;
+    if (k == 0)
+      return 0;
+    int[] distance = new int[k];
+    Arrays.fill(distance, -1);
+    distance[0] = 0;
+    ArrayDeque<Integer> queue = new ArrayDeque<>(List.of(0));
+    int result = 0;
+    int reached = 1;
+    while (!queue.isEmpty()) {
+      int p = queue.poll();
+      for (int q = 0; q < k; q++) {
+        if (distance[q] < 0 && normalEdges[p][q] + hadamardEdges[p][q] > 0) {
+          distance[q] = distance[p] + 1;
+          result = distance[q];
+          reached++;
+          queue.add(q);
+        }
+      }
+    }
+    return reached == k ? result : -1;
+  }
+
+  private static void checkBoundaries(ZXRule rule, ZXGraph side) {
+    for (Spider spider : side.getSpiders()) {
+      if (spider.getType() == SpiderType.BOUNDARY && side.getDegree(spider) != 1) {
+        throw new IllegalArgumentException("Boundary '" + spider.getLabel() + "' in rule '" + rule.getName()
+            + "' must have exactly one edge on each side.");
+      }
+    }
+  }
+
+  /**
+   * Orders the spiders so that each one, unless it starts a new component,
+   * is adjacent to an earlier one. Components start from their highest
+   * degree spider; within a component the spider with most edges to those
+   * already ordered comes next.
+   */
+  private static int[] searchOrder(ZXGraph lhs, List<Spider> inner) {
+    int k = inner.size();
+    Map<Spider, Integer> indexOf = new HashMap<>();
+    for (int i = 0; i < k; i++) {
+      indexOf.put(inner.get(i), i);
+    }
+    int[] links = new int[k];
+    boolean[] placed = new boolean[k];
+    int[] order = new int[k];
+    for (int p = 0; p < k; p++) {
+      int best = -1;
+      for (int i = 0; i < k; i++) {
+        if (!placed[i] && (best < 0 || links[i] > links[best]
+            || (links[i] == links[best] && lhs.getDegree(inner.get(i)) > lhs.getDegree(inner.get(best))))) {
+          best = i;
+        }
+      }
+      order[p] = best;
+      placed[best] = true;
+      for (Spider neighbor : lhs.getNeighbors(inner.get(best))) {
+        Integer i = indexOf.get(neighbor);
+        if (i != null && !placed[i]) {
+          links[i]++;
+        }
+      }
+    }
+    return order;
+  }
+
+  public ZXRule getRule() {
+    return rule;
+  }
+
+  /**
+   * How far from its first spider a match can reach: every matched spider
+   * lies within this many edges, and the edges leaving the match one more.
+   * -1 if the left-hand side is not connected, so a match can be spread
+   * anywhere.
+   */
+  int getRadius() {
+    return radius;
+  }
+
+  /** Returns the first occurrence found in the graph, or null. */
+  public Match findFirst(ZXGraph graph) {
+    return findFirst(new SpiderIndex(graph));
+  }
+
+  Match findFirst(SpiderIndex index) {
+    Match[] found = new Match[1];
+    search(index, null, match -> {
+      found[0] = match;
+      return true;
+    });
+    return found[0];
+  }
+
+  /**
+   * Spiders the first LHS spider could match, going by the index alone. A
+   * search from each of them, in turn, covers every match.
+   */
+  List<Spider> seeds(SpiderIndex index) {
+    List<Spider> seeds = new ArrayList<>();
+    if (pattern.length > 0 && signature.admits(index)) {
+      for (SpiderType color : colors(0)) {
+        seeds.addAll(bucket(index, 0, color));
+      }
+    }
+    return seeds;
+  }
+
+  /** The number of spiders {@link #seeds} returns, without collecting them. */
+  int seedCount(SpiderIndex index) {
+    int count = 0;
+    if (pattern.length > 0 && signature.admits(index)) {
+      for (SpiderType color : colors(0)) {
+        count += bucket(index, 0, color).size();
+      }
+    }
+    return count;
+  }
+
+  /** Whether the spider could be a seed, ignoring the rule's signature. */
+  boolean isSeed(SpiderIndex index, Spider spider) {
+    if (pattern.length == 0)
+      return false;
+    for (SpiderType color : colors(0)) {
+      if (bucket(index, 0, color).contains(spider))
+        return true;
+    }
+    return false;
+  }
+
+  /** Returns a match whose first LHS spider maps to the seed, or null. */
+  Match findAt(SpiderIndex index, Spider seed) {
+    Match[] found = new Match[1];
+    search(index, List.of(seed), match -> {
+      found[0] = match;
+      return true;
+    });
+    return found[0];
+  }
+
+  /**
+   * Reports matches to the visitor until it returns true. If {@code roots}
+   * is not null, only those spiders are tried for the first LHS spider.
+   *
+   * @return whether the visitor stopped the search
+   */
+  boolean search(SpiderIndex index, Collection<Spider> roots, Predicate<Match> visitor) {
+    // Rules the graph cannot satisfy are dropped before any search
+    if (pattern.length == 0 || !signature.admits(index))
+      return false;
+    return new Search(index, visitor).extend(0, roots);
+  }
+
+  private boolean accepts(int p, Spider target) {
+    Spider spider = pattern[p];
+    if (target.getType() == SpiderType.BOUNDARY)
+      return false;
+    if (!spider.isColorUndefined() && (target.isColorUndefined() || target.getType() != spider.getType()))
+      return false;
+    if (!spider.isPhaseUndefined() && (target.isPhaseUndefined() || !spider.getPhaseValue().equals(target.getPhaseValue())))
+      return false;
+    return true;
+  }
+
+  private Collection<Spider> bucket(SpiderIndex index, int p, SpiderType color) {
+    return pattern[p].isPhaseUndefined() ? index.get(color, degree[p])
+        : index.get(color, degree[p], pattern[p].getPhaseValue());
+  }
+
+  private List<SpiderType> colors(int p) {
+    return pattern[p].isColorUndefined() ? List.of(SpiderType.Z, SpiderType.X) : List.of(pattern[p].getType());
+  }
+
+  private record Leg(String label, EdgeType type) {
+  }
+
+  private final class Search {
+    private final SpiderIndex index;
+    private final ZXGraph graph;
+    private final Predicate<Match> visitor;
+    private final Spider[] image = new Spider[pattern.length];
+    private final Map<Spider, Integer> mapped = new HashMap<>();
+    private final int[] normalCount = new int[pattern.length];
+    private final int[] hadamardCount = new int[pattern.length];
+
+    Search(SpiderIndex index, Predicate<Match> visitor) {
+      this.index = index;
+      this.graph = index.getGraph();
+      this.visitor = visitor;
+    }
+
+    private boolean extend(int p, Collection<Spider> roots) {
+      if (p == pattern.length)
+        return complete();
+      for (Collection<Spider> group : candidates(p, roots)) {
+        for (Spider candidate : group) {
+          if (feasible(p, candidate)) {
+            image[p] = candidate;
+            mapped.put(candidate, p);
+            boolean stop = extend(p + 1, roots);
+            mapped.remove(candidate);
+            if (stop)
+              return true;
+          }
+        }
+      }
+      return false;
+    }
+
+    // Index buckets are walked in place rather than copied; the graph does
+    // not change during a search
+    private List<Collection<Spider>> candidates(int p, Collection<Spider> roots) {
+      if (parent[p] >= 0) {
+        // Multi-edges list a neighbor more than once
+        return List.of(new LinkedHashSet<>(graph.getNeighbors(image[parent[p]])));
+      }
+      List<Collection<Spider>> groups = new ArrayList<>(2);
+      for (SpiderType color : colors(p)) {
+        Collection<Spider> bucket = bucket(index, p, color);
+        if (p == 0 && roots != null) {
+          List<Spider> allowed = new ArrayList<>();
+          for (Spider root : roots) {
+            if (bucket.contains(root)) {
+              allowed.add(root);
+            }
+          }
+          groups.add(allowed);
+        } else {
+          groups.add(bucket);
+        }
+      }
+      return groups;
+    }
+
+    private boolean feasible(int p, Spider target) {
+      if (mapped.containsKey(target) || !accepts(p, target) || graph.getDegree(target) != degree[p])
+        return false;
+      for (int q = 0; q <= p; q++) {
+        normalCount[q] = 0;
+        hadamardCount[q] = 0;
+      }
+      for (Edge edge : graph.getIncidentEdges(target)) {
+        Integer q = edge.isSelfLoop() ? Integer.valueOf(p) : mapped.get(edge.getOpposite(target));
+        if (q != null) {
+          if (edge.getType() == EdgeType.HADAMARD) {
+            hadamardCount[q]++;
+          } else {
+            normalCount[q]++;
+          }
+        }
+      }
+      for (int q = 0; q <= p; q++) {
+        if (normalCount[q] != normalEdges[p][q] || hadamardCount[q] != hadamardEdges[p][q])
+          return false;
+      }
+      return true;
+    }
+
+    private boolean complete() {
+      Map<String, SpiderType> colors = new LinkedHashMap<>();
+      Map<String, Phase> phases = new LinkedHashMap<>();
+      Map<Spider, Spider> spiders = new LinkedHashMap<>();
+      Map<String, Match.Boundary> boundaries = new LinkedHashMap<>();
+      for (int p = 0; p < pattern.length; p++) {
+        Spider spider = pattern[p];
+        Spider target = image[p];
+        String variable = spider.getVariableLabel();
+        if (spider.isColorUndefined() && variable != null) {
+          SpiderType bound = colors.putIfAbsent(variable, target.getType());
+          if (bound != null && bound != target.getType())
+            return false;
+        }
+        if (spider.isPhaseUndefined() && variable != null) {
+          Phase bound = phases.putIfAbsent(variable, target.getPhaseValue());
+          if (bound != null && !bound.equals(target.getPhaseValue()))
+            return false;
+        }
+        spiders.put(spider, target);
+        if (!assignLegs(p, boundaries))
+          return false;
+      }
+      return visitor.test(new Match(rule, spiders, boundaries, colors, phases));
+    }
+
+    // Gives each boundary leg of position p one edge leaving the match
+    private boolean assignLegs(int p, Map<String, Match.Boundary> boundaries) {
+      List<Leg> pending = legs.get(p);
+      if (pending.isEmpty())
+        return true;
+      List<Edge> outgoing = new ArrayList<>();
+      for (Edge edge : graph.getIncidentEdges(image[p])) {
+        if (!edge.isSelfLoop() && !mapped.containsKey(edge.getOpposite(image[p]))) {
+          outgoing.add(edge);
+        }
+      }
+      boolean[] taken = new boolean[outgoing.size()];
+      for (Leg leg : pending) {
+        int chosen = -1;
+        for (int i = 0; i < outgoing.size() && chosen < 0; i++) {
+          if (!taken[i] && (leg.type() == EdgeType.NORMAL || outgoing.get(i).getType() == EdgeType.HADAMARD)) {
+            chosen = i;
+          }
+        }
+        if (chosen < 0)
+          return false;
+        taken[chosen] = true;
+        Edge edge = outgoing.get(chosen);
+        EdgeType residual = leg.type() == EdgeType.HADAMARD ? EdgeType.NORMAL : edge.getType();
+        boundaries.put(leg.label(), new Match.Boundary(edge, edge.getOpposite(image[p]), residual));
+      }
+      return true;
+    }
+  }
+}
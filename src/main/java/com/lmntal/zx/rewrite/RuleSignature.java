@@ -0,0 +1,79 @@
+package com.lmntal.zx.rewrite;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.lmntal.zx.model.Edge;
+import com.lmntal.zx.model.EdgeType;
+import com.lmntal.zx.model.Phase;
+import com.lmntal.zx.model.Spider;
+import com.lmntal.zx.model.SpiderType;
+import com.lmntal.zx.model.ZXGraph;
+
+/**
+ * What a rule's left-hand side needs from a graph before a match is
+ * possible: how many spiders of each color and degree, of each fixed phase,
+ * and how many Hadamard edge ends. Checked against the bucket sizes of a
+ * {@link SpiderIndex}, so rejecting a rule costs one lookup per entry,
+ * independent of the graph's size.
+ */
+final class RuleSignature {
+  // Spiders of a defined color, by color and degree
+  private final Map<Demand, Integer> byColor = new HashMap<>();
+  // All non-boundary spiders, by degree (color null)
+  private final Map<Demand, Integer> byDegree = new HashMap<>();
+  // Spiders with a fixed phase, by color (null if undefined), degree and phase
+  private final Map<Demand, Integer> byPhase = new HashMap<>();
+  private final int hadamardEnds;
+
+  RuleSignature(ZXGraph lhs) {
+    int ends = 0;
+    for (Spider spider : lhs.getSpiders()) {
+      if (spider.getType() == SpiderType.BOUNDARY)
+        continue;
+      int degree = lhs.getDegree(spider);
+      SpiderType color = spider.isColorUndefined() ? null : spider.getType();
+      byDegree.merge(new Demand(null, degree, null), 1, Integer::sum);
+      if (color != null) {
+        byColor.merge(new Demand(color, degree, null), 1, Integer::sum);
+      }
+      if (!spider.isPhaseUndefined()) {
+        byPhase.merge(new Demand(color, degree, spider.getPhaseValue()), 1, Integer::sum);
+      }
+      for (Edge edge : lhs.getIncidentEdges(spider)) {
+        if (edge.getType() == EdgeType.HADAMARD) {
+          ends += edge.isSelfLoop() ? 2 : 1;
+        }
+      }
+    }
+    hadamardEnds = ends;
+  }
+
+  /** False when the graph certainly has no match; true when it might. */
+  boolean admits(SpiderIndex index) {
+    if (index.getHadamardEnds() < hadamardEnds)
+      return false;
+    for (Map.Entry<Demand, Integer> entry : byColor.entrySet()) {
+      Demand demand = entry.getKey();
+      if (index.count(demand.color(), demand.degree()) < entry.getValue())
+        return false;
+    }
+    for (Map.Entry<Demand, Integer> entry : byDegree.entrySet()) {
+      int degree = entry.getKey().degree();
+      if (index.count(SpiderType.Z, degree) + index.count(SpiderType.X, degree) < entry.getValue())
+        return false;
+    }
+    for (Map.Entry<Demand, Integer> entry : byPhase.entrySet()) {
+      Demand demand = entry.getKey();
+      int available = demand.color() != null ? index.count(demand.color(), demand.degree(), demand.phase())
+          : index.count(SpiderType.Z, demand.degree(), demand.phase())
+              + index.count(SpiderType.X, demand.degree(), demand.phase());
+      if (available < entry.getValue())
+        return false;
+    }
+    return true;
+  }
+
+  private record Demand(SpiderType color, int degree, Phase phase) {
+  }
+}
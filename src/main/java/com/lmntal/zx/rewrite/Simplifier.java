@@ -0,0 +1,353 @@
+package com.lmntal.zx.rewrite;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.lmntal.zx.model.Edge;
+import com.lmntal.zx.model.EdgeType;
+import com.lmntal.zx.model.Phase;
+import com.lmntal.zx.model.Spider;
+import com.lmntal.zx.model.SpiderType;
+import com.lmntal.zx.model.ZXGraph;
+
+/**
+ * Simplifies a graph in place with the standard ZX rules:
+ * <ul>
+ * <li>spider fusion over normal edges, dropping the self-loops it leaves (a
+ * Hadamard self-loop adds 180 to the phase);</li>
+ * <li>Hopf cancellation of parallel edges in pairs: Hadamard edges between
+ * spiders of one color, normal edges between spiders of different colors;</li>
+ * <li>removal of phase-0 spiders with two legs;</li>
+ * <li>in graph-like mode, color change of every X spider to Z by toggling its
+ * edges, then local complementation on interior spiders with phase 90 or
+ * 270 and pivoting on interior pairs with phase 0 or 180.</li>
+ * </ul>
+ * The rules are driven by a queue of spiders. A rule that fires queues the
+ * spiders it touched and their neighbors, so only changed neighborhoods are
+ * looked at again. Spiders with an undefined color or a non-numeric phase
+ * are left alone. Results are equal to the input up to a global scalar.
+ */
+public class Simplifier {
+  private final ZXGraph graph;
+  private final Set<Spider> queue = new LinkedHashSet<>();
+  private boolean graphLike = true;
+  private int fusions;
+  private int identities;
+  private int cancellations;
+  private int colorChanges;
+  private int localComplementations;
+  private int pivots;
+
+  public Simplifier(ZXGraph graph) {
+    this.graph = graph;
+  }
+
+  /**
+   * Counts of each rule applied. Cancellations cover Hopf pairs and removed
+   * self-loops.
+   */
+  public record Result(int fusions, int identities, int cancellations, int colorChanges, int localComplementations,
+      int pivots) {
+    public int total() {
+      return fusions + identities + cancellations + colorChanges + localComplementations + pivots;
+    }
+  }
+
+  public Result simplify() {
+    queue.addAll(graph.getSpiders());
+    while (!queue.isEmpty()) {
+      Iterator<Spider> it = queue.iterator();
+      Spider spider = it.next();
+      it.remove();
+      if (!graph.containsSpider(spider) || !isPlain(spider))
+        continue;
+      if (graphLike && spider.getType() == SpiderType.X) {
+        changeColor(spider);
+      } else if (!removeLoops(spider) && !fuse(spider) && !cancelParallel(spider) && !removeIdentity(spider)
+          && graphLike && !complementLocally(spider)) {
+        pivot(spider);
+      }
+    }
+    return new Result(fusions, identities, cancellations, colorChanges, localComplementations, pivots);
+  }
+
+  private static boolean isPlain(Spider spider) {
+    return spider.getType() != SpiderType.BOUNDARY && !spider.isUndefined() && spider.getPhaseValue().isNumeric();
+  }
+
+  // Queues the spider, if still present, and its neighbors
+  private void touch(Spider spider) {
+    if (graph.containsSpider(spider)) {
+      queue.add(spider);
+      queue.addAll(graph.getNeighbors(spider));
+    }
+  }
+
+  private boolean removeLoops(Spider spider) {
+    boolean removed = false;
+    for (Edge edge : new ArrayList<>(graph.getIncidentEdges(spider))) {
+      if (edge.isSelfLoop()) {
+        graph.removeEdge(edge);
+        if (edge.getType() == EdgeType.HADAMARD) {
+          spider.setPhaseValue(spider.getPhaseValue().add(Phase.PI));
+        }
+        cancellations++;
+        removed = true;
+      }
+    }
+    if (removed) {
+      touch(spider);
+    }
+    return removed;
+  }
+
+  // The sum of two phases, or null if it is too fine to represent exactly;
+  // rewrites that would need it are skipped
+  private static Phase sum(Phase a, Phase b) {
+    try {
+      return a.add(b);
+    } catch (ArithmeticException e) {
+      return null;
+    }
+  }
+
+  private boolean fuse(Spider spider) {
+    for (Edge edge : graph.getIncidentEdges(spider)) {
+      Spider other = edge.getOpposite(spider);
+      if (edge.getType() == EdgeType.NORMAL && !edge.isSelfLoop() && isPlain(other)
+          && other.getType() == spider.getType()) {
+        Phase phase = sum(spider.getPhaseValue(), other.getPhaseValue());
+        if (phase == null)
+          continue;
+        graph.removeEdge(edge);
+        // Further edges between the two become self-loops
+        for (Edge moved : new ArrayList<>(graph.getIncidentEdges(other))) {
+          Spider end = moved.getOpposite(other);
+          graph.addEdge(new Edge(spider, end.equals(other) ? spider : end, moved.getType()));
+        }
+        spider.setPhaseValue(phase);
+        graph.removeSpider(other);
+        fusions++;
+        touch(spider);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean cancelParallel(Spider spider) {
+    Map<Spider, List<Edge>> byNeighbor = new LinkedHashMap<>();
+    for (Edge edge : graph.getIncidentEdges(spider)) {
+      Spider other = edge.getOpposite(spider);
+      if (!edge.isSelfLoop() && isPlain(other)) {
+        EdgeType cancelling = other.getType() == spider.getType() ? EdgeType.HADAMARD : EdgeType.NORMAL;
+        if (edge.getType() == cancelling) {
+          byNeighbor.computeIfAbsent(other, k -> new ArrayList<>()).add(edge);
+        }
+      }
+    }
+    boolean removed = false;
+    for (Map.Entry<Spider, List<Edge>> entry : byNeighbor.entrySet()) {
+      List<Edge> parallel = entry.getValue();
+      for (int i = 0; i + 1 < parallel.size(); i += 2) {
+        graph.removeEdge(parallel.get(i));
+        graph.removeEdge(parallel.get(i + 1));
+        cancellations++;
+        removed = true;
+      }
+      if (parallel.size() > 1) {
+        touch(entry.getKey());
+      }
+    }
+    if (removed) {
+      touch(spider);
+    }
+    return removed;
+  }
+
+  private boolean removeIdentity(Spider spider) {
+    List<Edge> incident = graph.getIncidentEdges(spider);
+    if (incident.size() != 2 || !spider.getPhaseValue().isZero())
+      return false;
+    Edge first = incident.get(0);
+    Edge second = incident.get(1);
+    if (first.isSelfLoop() || second.isSelfLoop())
+      return false;
+    Spider a = first.getOpposite(spider);
+    Spider b = second.getOpposite(spider);
+    // Two boundaries cannot be joined directly
+    if (a.getType() == SpiderType.BOUNDARY && b.getType() == SpiderType.BOUNDARY)
+      return false;
+    EdgeType type = first.getType() == second.getType() ? EdgeType.NORMAL : EdgeType.HADAMARD;
+    graph.removeSpider(spider);
+    graph.addEdge(new Edge(a, b, type));
+    identities++;
+    touch(a);
+    touch(b);
+    return true;
+  }
+
+  private void changeColor(Spider spider) {
+    spider.setType(SpiderType.Z);
+    for (Edge edge : graph.getIncidentEdges(spider)) {
+      if (!edge.isSelfLoop()) {
+        edge.setType(edge.getType() == EdgeType.HADAMARD ? EdgeType.NORMAL : EdgeType.HADAMARD);
+      }
+    }
+    colorChanges++;
+    touch(spider);
+  }
+
+  private boolean complementLocally(Spider spider) {
+    if (!spider.getPhaseValue().isProperClifford())
+      return false;
+    List<Spider> neighbors = interiorNeighbors(spider);
+    if (neighbors == null)
+      return false;
+    Phase shift = spider.getPhaseValue().negate();
+    List<Phase> phases = new ArrayList<>(neighbors.size());
+    for (Spider neighbor : neighbors) {
+      Phase phase = sum(neighbor.getPhaseValue(), shift);
+      if (phase == null)
+        return false;
+      phases.add(phase);
+    }
+    graph.removeSpider(spider);
+    Map<Spider, Map<Spider, Edge>> links = hadamardLinks(neighbors);
+    for (int i = 0; i < neighbors.size(); i++) {
+      for (int j = i + 1; j < neighbors.size(); j++) {
+        toggleHadamard(links, neighbors.get(i), neighbors.get(j));
+      }
+    }
+    for (int i = 0; i < neighbors.size(); i++) {
+      neighbors.get(i).setPhaseValue(phases.get(i));
+      touch(neighbors.get(i));
+    }
+    localComplementations++;
+    return true;
+  }
+
+  private boolean pivot(Spider spider) {
+    if (!spider.getPhaseValue().isPauli())
+      return false;
+    List<Spider> neighbors = interiorNeighbors(spider);
+    if (neighbors == null)
+      return false;
+    for (Spider other : neighbors) {
+      if (!other.getPhaseValue().isPauli())
+        continue;
+      List<Spider> otherNeighbors = interiorNeighbors(other);
+      if (otherNeighbors == null)
+        continue;
+
+      Set<Spider> onlyFirst = new LinkedHashSet<>(neighbors);
+      onlyFirst.remove(other);
+      Set<Spider> onlySecond = new LinkedHashSet<>(otherNeighbors);
+      onlySecond.remove(spider);
+      Set<Spider> shared = new LinkedHashSet<>(onlyFirst);
+      shared.retainAll(onlySecond);
+      onlyFirst.removeAll(shared);
+      onlySecond.removeAll(shared);
+
+      graph.removeSpider(spider);
+      graph.removeSpider(other);
+      List<Spider> touched = new ArrayList<>(onlyFirst);
+      touched.addAll(onlySecond);
+      touched.addAll(shared);
+      Map<Spider, Map<Spider, Edge>> links = hadamardLinks(touched);
+      toggleAll(links, onlyFirst, onlySecond);
+      toggleAll(links, onlyFirst, shared);
+      toggleAll(links, onlySecond, shared);
+      Phase sum = spider.getPhaseValue().add(other.getPhaseValue()).add(Phase.PI);
+      for (Spider s : onlyFirst) {
+        s.setPhaseValue(s.getPhaseValue().add(other.getPhaseValue()));
+        touch(s);
+      }
+      for (Spider s : onlySecond) {
+        s.setPhaseValue(s.getPhaseValue().add(spider.getPhaseValue()));
+        touch(s);
+      }
+      for (Spider s : shared) {
+        s.setPhaseValue(s.getPhaseValue().add(sum));
+        touch(s);
+      }
+      pivots++;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * The neighbors of a Z spider when it is interior in the graph-like sense:
+   * every edge is a single Hadamard edge to a plain Z spider. Otherwise null.
+   */
+  private List<Spider> interiorNeighbors(Spider spider) {
+    if (spider.getType() != SpiderType.Z)
+      return null;
+    List<Spider> neighbors = new ArrayList<>();
+    Set<Spider> seen = new LinkedHashSet<>();
+    for (Edge edge : graph.getIncidentEdges(spider)) {
+      Spider other = edge.getOpposite(spider);
+      if (edge.isSelfLoop() || edge.getType() != EdgeType.HADAMARD || !isPlain(other)
+          || other.getType() != SpiderType.Z || !seen.add(other))
+        return null;
+      neighbors.add(other);
+    }
+    return neighbors;
+  }
+
+  /**
+   * Hadamard edges among the given spiders, by both ends. Built once per
+   * local complementation or pivot so toggling a pair is a lookup rather
+   * than a scan of an incidence list.
+   */
+  private Map<Spider, Map<Spider, Edge>> hadamardLinks(List<Spider> spiders) {
+    Map<Spider, Map<Spider, Edge>> links = new HashMap<>();
+    for (Spider spider : spiders) {
+      links.put(spider, new HashMap<>());
+    }
+    for (Spider spider : spiders) {
+      Map<Spider, Edge> own = links.get(spider);
+      for (Edge edge : graph.getIncidentEdges(spider)) {
+        Spider other = edge.getOpposite(spider);
+        if (edge.getType() == EdgeType.HADAMARD && !edge.isSelfLoop() && links.containsKey(other)) {
+          own.putIfAbsent(other, edge);
+        }
+      }
+    }
+    return links;
+  }
+
+  private void toggleAll(Map<Spider, Map<Spider, Edge>> links, Set<Spider> from, Set<Spider> to) {
+    for (Spider a : from) {
+      for (Spider b : to) {
+        toggleHadamard(links, a, b);
+      }
+    }
+  }
+
+  // Adding a Hadamard edge next to an existing one cancels both (Hopf)
+  private void toggleHadamard(Map<Spider, Map<Spider, Edge>> links, Spider a, Spider b) {
+    Edge existing = links.get(a).remove(b);
+    if (existing != null) {
+      links.get(b).remove(a);
+      graph.removeEdge(existing);
+    } else {
+      Edge edge = new Edge(a, b, EdgeType.HADAMARD);
+      graph.addEdge(edge);
+      links.get(a).put(b, edge);
+      links.get(b).put(a, edge);
+    }
+  }
+
+  /** Whether to turn X spiders into Z and use local complementation and pivoting. */
+  public void setGraphLike(boolean graphLike) {
+    this.graphLike = graphLike;
+  }
+}
@@ -0,0 +1,114 @@
+package com.lmntal.zx.rewrite;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.lmntal.zx.model.Edge;
+import com.lmntal.zx.model.EdgeType;
+import com.lmntal.zx.model.Phase;
+import com.lmntal.zx.model.Spider;
+import com.lmntal.zx.model.SpiderType;
+import com.lmntal.zx.model.ZXGraph;
+
+/**
+ * Non-boundary spiders of a target graph, bucketed by color and degree, and
+ * also by phase. The matcher seeds its search from one bucket, and bucket
+ * sizes double as the histogram {@link RuleSignature} checks rules against.
+ * The rewrite engine refreshes the spiders each step touches instead of
+ * rebuilding the index.
+ */
+final class SpiderIndex {
+  private final ZXGraph graph;
+  private final Map<Key, Set<Spider>> buckets = new HashMap<>();
+  private final Map<Key, Set<Spider>> phaseBuckets = new HashMap<>();
+  private final Map<Spider, Key> keys = new HashMap<>();
+  // Hadamard edge ends at indexed spiders; a Hadamard self-loop counts twice
+  private final Map<Spider, Integer> hadamardEndsOf = new HashMap<>();
+  private int hadamardEnds = 0;
+
+  SpiderIndex(ZXGraph graph) {
+    this.graph = graph;
+    for (Spider spider : graph.getSpiders()) {
+      update(spider);
+    }
+  }
+
+  ZXGraph getGraph() {
+    return graph;
+  }
+
+  /** Re-files a spider after it was added, removed or had edges changed. */
+  void update(Spider spider) {
+    Key old = keys.remove(spider);
+    if (old != null) {
+      remove(buckets, old.withoutPhase(), spider);
+      remove(phaseBuckets, old, spider);
+      hadamardEnds -= hadamardEndsOf.remove(spider);
+    }
+    if (graph.containsSpider(spider) && spider.getType() != SpiderType.BOUNDARY) {
+      Key key = new Key(spider.getType(), graph.getDegree(spider),
+          spider.isPhaseUndefined() ? null : spider.getPhaseValue());
+      keys.put(spider, key);
+      buckets.computeIfAbsent(key.withoutPhase(), k -> new LinkedHashSet<>()).add(spider);
+      if (key.phase() != null) {
+        phaseBuckets.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(spider);
+      }
+      int ends = 0;
+      for (Edge edge : graph.getIncidentEdges(spider)) {
+        if (edge.getType() == EdgeType.HADAMARD) {
+          ends += edge.isSelfLoop() ? 2 : 1;
+        }
+      }
+      hadamardEndsOf.put(spider, ends);
+      hadamardEnds += ends;
+    }
+  }
+
+  private static void remove(Map<Key, Set<Spider>> map, Key key, Spider spider) {
+    Set<Spider> bucket = map.get(key);
+    if (bucket != null) {
+      bucket.remove(spider);
+      if (bucket.isEmpty()) {
+        map.remove(key);
+      }
+    }
+  }
+
+  /** Spiders of the given color and degree, in the order they were filed. */
+  Collection<Spider> get(SpiderType type, int degree) {
+    return view(buckets.get(new Key(type, degree, null)));
+  }
+
+  /** Spiders of the given color, degree and phase. */
+  Collection<Spider> get(SpiderType type, int degree, Phase phase) {
+    return view(phaseBuckets.get(new Key(type, degree, phase)));
+  }
+
+  int count(SpiderType type, int degree) {
+    Set<Spider> bucket = buckets.get(new Key(type, degree, null));
+    return bucket == null ? 0 : bucket.size();
+  }
+
+  int count(SpiderType type, int degree, Phase phase) {
+    Set<Spider> bucket = phaseBuckets.get(new Key(type, degree, phase));
+    return bucket == null ? 0 : bucket.size();
+  }
+
+  int getHadamardEnds() {
+    return hadamardEnds;
+  }
+
+  private static Collection<Spider> view(Set<Spider> bucket) {
+    return bucket == null ? Collections.emptySet() : Collections.unmodifiableSet(bucket);
+  }
+
+  private record Key(SpiderType type, int degree, Phase phase) {
+    Key withoutPhase() {
+      return phase == null ? this : new Key(type, degree, null);
+    }
+  }
+}
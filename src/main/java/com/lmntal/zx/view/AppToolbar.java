@@ -12,11 +12,16 @@ import javax.swing.JToolBar;
 import javax.swing.SwingUtilities;
 
 import com.lmntal.zx.controller.DiagramController;
+import com.lmntal.zx.layout.CircleLayout;
+import com.lmntal.zx.layout.ForceDirectedLayout;
+import com.lmntal.zx.layout.LayeredLayout;
+import com.lmntal.zx.layout.LayoutEngine;
 import com.lmntal.zx.model.EdgeType;
 import com.lmntal.zx.model.SpiderType;
 
 public class AppToolbar extends JToolBar {
   private final List<DiagramController> controllers = new ArrayList<>();
+  private final JComboBox<LayoutEngine> layoutSelector;
 
   public AppToolbar() {
     setFloatable(false);
@@ -50,6 +55,20 @@ public class AppToolbar extends JToolBar {
     JCheckBox showHadamardGateBox = new JCheckBox("Show H Gate");
     showHadamardGateBox.addActionListener(e -> setShowHadamardGateForAll(showHadamardGateBox.isSelected()));
     add(showHadamardGateBox);
+
+    addSeparator();
+
+    add(new JLabel(" Layout: "));
+    layoutSelector = new JComboBox<>(new LayoutEngine[] { new CircleLayout(), new ForceDirectedLayout(),
+        new LayeredLayout() });
+    setFixedWidth(layoutSelector, 130);
+    layoutSelector.addActionListener(e -> {
+      LayoutEngine selected = (LayoutEngine) layoutSelector.getSelectedItem();
+      if (selected != null) {
+        setLayoutEngineForAll(selected);
+      }
+    });
+    add(layoutSelector);
   }
 
   private void setFixedWidth(JComponent component, int width) {
@@ -63,6 +82,12 @@ public class AppToolbar extends JToolBar {
   public void setControllers(DiagramController... diagramControllers) {
     controllers.clear();
     controllers.addAll(List.of(diagramControllers));
+    setLayoutEngineForAll(getLayoutEngine());
+  }
+
+  /** The layout used for imports and for "Auto Layout" in the editors. */
+  public LayoutEngine getLayoutEngine() {
+    return (LayoutEngine) layoutSelector.getSelectedItem();
   }
 
   private void setSpiderTypeForAll(SpiderType type) {
@@ -77,6 +102,12 @@ public class AppToolbar extends JToolBar {
     }
   }
 
+  private void setLayoutEngineForAll(LayoutEngine layoutEngine) {
+    for (DiagramController controller : controllers) {
+      controller.setLayoutEngine(layoutEngine);
+    }
+  }
+
   private void setShowHadamardGateForAll(boolean show) {
     for (DiagramController controller : controllers) {
       controller.setShowHadamardGate(show);
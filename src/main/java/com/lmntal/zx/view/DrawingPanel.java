@@ -7,12 +7,18 @@ import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.Stroke;
 import java.awt.TexturePaint;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import javax.swing.BorderFactory;
 import javax.swing.JPanel;
@@ -20,6 +26,7 @@ import javax.swing.JPanel;
 import com.lmntal.zx.controller.DiagramController;
 import com.lmntal.zx.model.Edge;
 import com.lmntal.zx.model.EdgeType;
+import com.lmntal.zx.model.GraphElement;
 import com.lmntal.zx.model.Spider;
 import com.lmntal.zx.model.SpiderType;
 import com.lmntal.zx.model.ZXGraph;
@@ -37,11 +44,33 @@ public class DrawingPanel extends JPanel {
       10.0f, new float[] { 3.0f }, 0.0f);
   private static final Color HADAMARD_EDGE_COLOR = Color.BLUE;
   private static final Color LABEL_COLOR = Color.BLUE.darker();
+  private static final Font PHASE_FONT = new Font("SansSerif", Font.BOLD, 12);
+  private static final Font LABEL_FONT = new Font("SansSerif", Font.ITALIC, 12);
+  // Extra room around the clip so labels and H gates near the edge are drawn
+  private static final int CULL_MARGIN = SPIDER_RADIUS + 60;
+  private static final double MIN_ZOOM = 0.02;
+  private static final double MAX_ZOOM = 8.0;
+  // Below this zoom, text, hatching and dashed strokes are not drawn
+  private static final double LOW_DETAIL_ZOOM = 0.5;
 
   private ZXGraph graph;
   private DiagramController controller;
   private static TexturePaint hatchingPaint;
 
+  private final Ellipse2D.Double spiderShape = new Ellipse2D.Double();
+  private final Set<Edge> edgeScratch = new HashSet<>();
+  private final List<Edge> visibleEdges = new ArrayList<>();
+  private final List<Spider> visibleSpiders = new ArrayList<>();
+
+  private boolean interactionActive = false;
+  private Spider liftedSpider;
+  private BufferedImage staticLayer;
+
+  private double zoom = 1.0;
+  private double panX = 0;
+  private double panY = 0;
+  private boolean lowDetail = false;
+
   public DrawingPanel() {
     this.graph = new ZXGraph();
     setBackground(Color.WHITE);
@@ -67,6 +96,64 @@ public class DrawingPanel extends JPanel {
 
   public void setGraph(ZXGraph graph) {
     this.graph = graph;
+    endInteraction();
+    resetView();
+  }
+
+  /**
+   * Freezes everything except the given spider and its incident edges into an
+   * offscreen layer until {@link #endInteraction()}. Pass null to freeze the
+   * whole graph, e.g. while an edge is being dragged out.
+   */
+  public void beginInteraction(Spider liftedSpider) {
+    this.liftedSpider = liftedSpider;
+    this.interactionActive = true;
+    this.staticLayer = null;
+  }
+
+  public void endInteraction() {
+    this.liftedSpider = null;
+    this.interactionActive = false;
+    this.staticLayer = null;
+  }
+
+  public double getZoom() {
+    return zoom;
+  }
+
+  /**
+   * Maps a point in panel coordinates to graph coordinates.
+   */
+  public Point toWorld(Point screenPoint) {
+    return new Point((int) Math.floor((screenPoint.x - panX) / zoom), (int) Math.floor((screenPoint.y - panY) / zoom));
+  }
+
+  /**
+   * Scales the view by the given factor, keeping the graph point under the
+   * anchor fixed on screen.
+   */
+  public void zoomAt(double factor, Point anchor) {
+    double newZoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom * factor));
+    panX = anchor.x - (anchor.x - panX) * newZoom / zoom;
+    panY = anchor.y - (anchor.y - panY) * newZoom / zoom;
+    zoom = newZoom;
+    staticLayer = null;
+    repaint();
+  }
+
+  public void panBy(int dx, int dy) {
+    panX += dx;
+    panY += dy;
+    staticLayer = null;
+    repaint();
+  }
+
+  public void resetView() {
+    zoom = 1.0;
+    panX = 0;
+    panY = 0;
+    staticLayer = null;
+    repaint();
   }
 
   @Override
@@ -75,9 +162,24 @@ public class DrawingPanel extends JPanel {
     if (graph == null)
       return;
     Graphics2D g2d = (Graphics2D) g;
-    g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    lowDetail = zoom < LOW_DETAIL_ZOOM;
+    g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+        lowDetail ? RenderingHints.VALUE_ANTIALIAS_OFF : RenderingHints.VALUE_ANTIALIAS_ON);
+
+    AffineTransform deviceTransform = g2d.getTransform();
+    if (interactionActive) {
+      paintStaticLayer(g2d);
+    }
+    g2d.translate(panX, panY);
+    g2d.scale(zoom, zoom);
+
+    if (interactionActive) {
+      paintLiftedSpider(g2d);
+    } else {
+      Rectangle clip = g2d.getClipBounds();
+      paintScene(g2d, clip != null ? clip : visibleWorldArea(), null);
+    }
 
-    graph.getEdges().forEach(edge -> drawEdge(g2d, edge));
     if (controller != null && controller.getEdgeStartSpider() != null && controller.getCurrentMousePoint() != null) {
       Spider start = controller.getEdgeStartSpider();
       Point end = controller.getCurrentMousePoint();
@@ -85,21 +187,92 @@ public class DrawingPanel extends JPanel {
       g2d.setStroke(HADAMARD_EDGE_STROKE);
       g2d.drawLine(start.getX(), start.getY(), end.x, end.y);
     }
-    graph.getSpiders().forEach(spider -> drawSpider(g2d, spider));
+    g2d.setTransform(deviceTransform);
+  }
+
+  private Rectangle visibleWorldArea() {
+    Point topLeft = toWorld(new Point(0, 0));
+    return new Rectangle(topLeft.x, topLeft.y, (int) Math.ceil(getWidth() / zoom) + 1,
+        (int) Math.ceil(getHeight() / zoom) + 1);
+  }
+
+  private void paintStaticLayer(Graphics2D g2d) {
+    double scale = g2d.getTransform().getScaleX();
+    int width = Math.max(1, (int) Math.ceil(getWidth() * scale));
+    int height = Math.max(1, (int) Math.ceil(getHeight() * scale));
+    if (staticLayer == null || staticLayer.getWidth() != width || staticLayer.getHeight() != height) {
+      staticLayer = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+      Graphics2D layerGraphics = staticLayer.createGraphics();
+      layerGraphics.setRenderingHints(g2d.getRenderingHints());
+      layerGraphics.scale(scale, scale);
+      layerGraphics.translate(panX, panY);
+      layerGraphics.scale(zoom, zoom);
+      paintScene(layerGraphics, visibleWorldArea(), liftedSpider);
+      layerGraphics.dispose();
+    }
+    g2d.drawImage(staticLayer, 0, 0, getWidth(), getHeight(), null);
+  }
+
+  private void paintLiftedSpider(Graphics2D g2d) {
+    if (liftedSpider == null)
+      return;
+    for (Edge edge : graph.getIncidentEdges(liftedSpider)) {
+      drawEdge(g2d, edge);
+      Spider other = edge.getOpposite(liftedSpider);
+      if (other != liftedSpider) {
+        drawSpider(g2d, other);
+      }
+    }
+    drawSpider(g2d, liftedSpider);
+  }
+
+  // Draws the edges and spiders that can intersect the area, skipping the
+  // excluded spider and its incident edges.
+  private void paintScene(Graphics2D g2d, Rectangle area, Spider excluded) {
+    int margin = CULL_MARGIN;
+    edgeScratch.clear();
+    graph.collectEdgesIn(area.x - margin, area.y - margin, area.width + 2 * margin, area.height + 2 * margin,
+        edgeScratch);
+    visibleEdges.clear();
+    visibleEdges.addAll(edgeScratch);
+    visibleEdges.sort(GraphElement.INSERTION_ORDER);
+    for (Edge edge : visibleEdges) {
+      if (excluded == null || (edge.getSource() != excluded && edge.getTarget() != excluded)) {
+        drawEdge(g2d, edge);
+      }
+    }
+
+    visibleSpiders.clear();
+    graph.collectSpidersIn(area.x - margin, area.y - margin, area.width + 2 * margin, area.height + 2 * margin,
+        visibleSpiders);
+    visibleSpiders.sort(GraphElement.INSERTION_ORDER);
+    for (Spider spider : visibleSpiders) {
+      if (spider != excluded) {
+        drawSpider(g2d, spider);
+      }
+    }
+    edgeScratch.clear();
+    visibleEdges.clear();
+    visibleSpiders.clear();
   }
 
   private void drawSpider(Graphics2D g2d, Spider spider) {
     int r = SPIDER_RADIUS;
     int x = spider.getX() - r;
     int y = spider.getY() - r;
+    if (lowDetail) {
+      drawSpiderLowDetail(g2d, spider, x, y);
+      return;
+    }
+    spiderShape.setFrame(x, y, 2 * r, 2 * r);
 
     if (spider.getType() == SpiderType.BOUNDARY) {
       g2d.setColor(Color.BLACK);
       g2d.setStroke(BOUNDARY_SPIDER_STROKE);
-      g2d.draw(new Ellipse2D.Double(x, y, 2 * r, 2 * r));
+      g2d.draw(spiderShape);
       if (spider.getLabel() != null && !spider.getLabel().isEmpty()) {
         g2d.setColor(LABEL_COLOR);
-        g2d.setFont(new Font("SansSerif", Font.ITALIC, 12));
+        g2d.setFont(LABEL_FONT);
         g2d.drawString(spider.getLabel(), spider.getX() + r, spider.getY() + r + 5);
       }
       return;
@@ -107,23 +280,23 @@ public class DrawingPanel extends JPanel {
 
     if (spider.isColorUndefined()) {
       g2d.setColor(UNDEFINED_SPIDER_COLOR);
-      g2d.fill(new Ellipse2D.Double(x, y, 2 * r, 2 * r));
+      g2d.fill(spiderShape);
       g2d.setPaint(hatchingPaint);
-      g2d.fill(new Ellipse2D.Double(x, y, 2 * r, 2 * r));
+      g2d.fill(spiderShape);
       g2d.setPaint(null);
     } else {
       g2d.setColor(spider.getType() == SpiderType.Z ? Z_SPIDER_COLOR : X_SPIDER_COLOR);
-      g2d.fill(new Ellipse2D.Double(x, y, 2 * r, 2 * r));
+      g2d.fill(spiderShape);
     }
 
     g2d.setColor(Color.BLACK);
     g2d.setStroke(NORMAL_EDGE_STROKE);
-    g2d.draw(new Ellipse2D.Double(x, y, 2 * r, 2 * r));
+    g2d.draw(spiderShape);
 
     String phaseText = spider.getPhase();
     if (!"0".equals(phaseText) && phaseText != null && !phaseText.isEmpty()) {
       g2d.setColor(Color.BLACK);
-      g2d.setFont(new Font("SansSerif", Font.BOLD, 12));
+      g2d.setFont(PHASE_FONT);
       FontMetrics fm = g2d.getFontMetrics();
       int stringWidth = fm.stringWidth(phaseText);
       g2d.drawString(phaseText, spider.getX() - stringWidth / 2, spider.getY() + fm.getAscent() / 2);
@@ -131,20 +304,42 @@ public class DrawingPanel extends JPanel {
 
     if (spider.getVariableLabel() != null && !spider.getVariableLabel().isEmpty()) {
       g2d.setColor(LABEL_COLOR);
-      g2d.setFont(new Font("SansSerif", Font.ITALIC, 12));
+      g2d.setFont(LABEL_FONT);
       g2d.drawString(spider.getVariableLabel(), spider.getX() + r, spider.getY() + r + 5);
     }
   }
 
+  // Zoomed-out rendering: squares instead of circles, no text or hatching
+  private void drawSpiderLowDetail(Graphics2D g2d, Spider spider, int x, int y) {
+    int size = 2 * SPIDER_RADIUS;
+    if (spider.getType() == SpiderType.BOUNDARY) {
+      g2d.setColor(Color.BLACK);
+      g2d.setStroke(NORMAL_EDGE_STROKE);
+      g2d.drawRect(x, y, size, size);
+    } else if (spider.isColorUndefined()) {
+      g2d.setColor(UNDEFINED_SPIDER_COLOR);
+      g2d.fillRect(x, y, size, size);
+    } else {
+      g2d.setColor(spider.getType() == SpiderType.Z ? Z_SPIDER_COLOR : X_SPIDER_COLOR);
+      g2d.fillRect(x, y, size, size);
+    }
+  }
+
   private void drawEdge(Graphics2D g2d, Edge edge) {
-    Point p1 = edge.getSource().getLocation();
-    Point p2 = edge.getTarget().getLocation();
-    if (edge.getType() == EdgeType.HADAMARD && controller != null && controller.isShowHadamardGate()) {
+    int x1 = edge.getSource().getX();
+    int y1 = edge.getSource().getY();
+    int x2 = edge.getTarget().getX();
+    int y2 = edge.getTarget().getY();
+    if (lowDetail) {
+      g2d.setColor(edge.getType() == EdgeType.HADAMARD ? HADAMARD_EDGE_COLOR : Color.BLACK);
+      g2d.setStroke(NORMAL_EDGE_STROKE);
+      g2d.drawLine(x1, y1, x2, y2);
+    } else if (edge.getType() == EdgeType.HADAMARD && controller != null && controller.isShowHadamardGate()) {
       g2d.setColor(Color.BLACK);
       g2d.setStroke(NORMAL_EDGE_STROKE);
-      g2d.drawLine(p1.x, p1.y, p2.x, p2.y);
-      int midX = (p1.x + p2.x) / 2;
-      int midY = (p1.y + p2.y) / 2;
+      g2d.drawLine(x1, y1, x2, y2);
+      int midX = (x1 + x2) / 2;
+      int midY = (y1 + y2) / 2;
       int gateSize = 16;
       g2d.setColor(HADAMARD_GATE_COLOR);
       g2d.fillRect(midX - gateSize / 2, midY - gateSize / 2, gateSize, gateSize);
@@ -154,11 +349,11 @@ public class DrawingPanel extends JPanel {
     } else if (edge.getType() == EdgeType.HADAMARD) {
       g2d.setColor(HADAMARD_EDGE_COLOR);
       g2d.setStroke(HADAMARD_EDGE_STROKE);
-      g2d.drawLine(p1.x, p1.y, p2.x, p2.y);
+      g2d.drawLine(x1, y1, x2, y2);
     } else {
       g2d.setColor(Color.BLACK);
       g2d.setStroke(NORMAL_EDGE_STROKE);
-      g2d.drawLine(p1.x, p1.y, p2.x, p2.y);
+      g2d.drawLine(x1, y1, x2, y2);
     }
   }
 
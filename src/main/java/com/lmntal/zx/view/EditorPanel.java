@@ -25,8 +25,14 @@ public class EditorPanel extends JPanel {
     graphEditorContainer.setBorder(BorderFactory.createTitledBorder("Graph Editor"));
     JButton convertGraphButton = new JButton("Convert/Save Graph");
     convertGraphButton.addActionListener(e -> controller.convertAndSaveCurrentGraph());
+    JButton applyRulesButton = new JButton("Apply Rules");
+    applyRulesButton.addActionListener(e -> controller.applyRulesToCurrentGraph());
     JPanel graphButtonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
     graphButtonPanel.add(convertGraphButton);
+    graphButtonPanel.add(applyRulesButton);
+    JButton simplifyButton = new JButton("Simplify");
+    simplifyButton.addActionListener(e -> controller.simplifyCurrentGraph());
+    graphButtonPanel.add(simplifyButton);
     graphEditorContainer.add(graphEditorPanel, BorderLayout.CENTER);
     graphEditorContainer.add(graphButtonPanel, BorderLayout.SOUTH);
 
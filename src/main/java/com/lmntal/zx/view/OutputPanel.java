@@ -4,6 +4,7 @@ import java.awt.BorderLayout;
 import java.awt.Font;
 
 import javax.swing.BorderFactory;
+import javax.swing.JCheckBox;
 import javax.swing.JComponent;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
@@ -13,6 +14,7 @@ import javax.swing.JTextArea;
 public class OutputPanel extends JPanel {
   private final JTextArea graphOutputArea;
   private final JTextArea ruleOutputArea;
+  private final JCheckBox liveUpdateBox = new JCheckBox("Update while editing");
 
   public OutputPanel() {
     setLayout(new BorderLayout());
@@ -26,6 +28,7 @@ public class OutputPanel extends JPanel {
     splitPane.setResizeWeight(0.5);
 
     add(splitPane, BorderLayout.CENTER);
+    add(liveUpdateBox, BorderLayout.SOUTH);
   }
 
   private JTextArea createTextArea() {
@@ -49,4 +52,8 @@ public class OutputPanel extends JPanel {
   public JTextArea getRuleOutputArea() {
     return ruleOutputArea;
   }
+
+  public JCheckBox getLiveUpdateBox() {
+    return liveUpdateBox;
+  }
 }
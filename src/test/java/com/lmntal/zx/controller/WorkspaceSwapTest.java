@@ -0,0 +1,82 @@
+package com.lmntal.zx.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.swing.DefaultListModel;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.lmntal.zx.model.NamedGraph;
+import com.lmntal.zx.model.ZXRule;
+
+public class WorkspaceSwapTest {
+
+  private final List<NamedGraph> graphs = new ArrayList<>();
+  private final List<ZXRule> rules = new ArrayList<>();
+  private final DefaultListModel<NamedGraph> graphListModel = new DefaultListModel<>();
+  private final DefaultListModel<ZXRule> ruleListModel = new DefaultListModel<>();
+  private NamedGraph oldGraph;
+  private ZXRule oldRule;
+  private WorkspaceSwap swap;
+
+  @BeforeEach
+  void setUp() {
+    oldGraph = new NamedGraph("graph_1");
+    oldRule = new ZXRule("rule_1");
+    graphs.add(oldGraph);
+    graphListModel.addElement(oldGraph);
+    rules.add(oldRule);
+    ruleListModel.addElement(oldRule);
+    swap = new WorkspaceSwap(graphs, rules, graphListModel, ruleListModel);
+  }
+
+  @Test
+  void testFirstGraphReplacesTheWorkspace() {
+    assertFalse(swap.isReplaced());
+    NamedGraph imported = new NamedGraph("graph_1");
+    swap.addGraph(imported);
+    assertTrue(swap.isReplaced());
+    assertEquals(List.of(imported), graphs);
+    assertEquals(List.of(imported), Collections.list(graphListModel.elements()));
+    assertTrue(rules.isEmpty());
+    assertTrue(ruleListModel.isEmpty());
+  }
+
+  @Test
+  void testRollbackAfterPartialImportRestoresTheWorkspace() {
+    swap.addGraph(new NamedGraph("graph_1"));
+    swap.addGraph(new NamedGraph("graph_2"));
+    assertTrue(swap.rollback());
+    assertFalse(swap.isReplaced());
+    assertEquals(List.of(oldGraph), graphs);
+    assertEquals(List.of(oldRule), rules);
+    assertEquals(List.of(oldGraph), Collections.list(graphListModel.elements()));
+    assertEquals(List.of(oldRule), Collections.list(ruleListModel.elements()));
+  }
+
+  @Test
+  void testRollbackBeforeAnyItemKeepsTheWorkspace() {
+    assertFalse(swap.rollback());
+    assertEquals(List.of(oldGraph), graphs);
+    assertEquals(List.of(oldRule), rules);
+  }
+
+  @Test
+  void testCommitKeepsTheImport() {
+    NamedGraph imported = new NamedGraph("graph_1");
+    ZXRule importedRule = new ZXRule("fuse");
+    swap.addGraph(imported);
+    swap.addRules(List.of(importedRule));
+    swap.commit();
+    assertFalse(swap.rollback());
+    assertEquals(List.of(imported), graphs);
+    assertEquals(List.of(importedRule), Collections.list(ruleListModel.elements()));
+  }
+}
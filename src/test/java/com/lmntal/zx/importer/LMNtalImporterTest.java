@@ -0,0 +1,267 @@
+package com.lmntal.zx.importer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.junit.jupiter.api.Test;
+
+import com.lmntal.zx.model.NamedGraph;
+import com.lmntal.zx.model.Phase;
+import com.lmntal.zx.model.Spider;
+import com.lmntal.zx.model.SpiderType;
+import com.lmntal.zx.model.ZXRule;
+import com.lmntal.zx.parser.LMNtalLexer;
+import com.lmntal.zx.parser.LMNtalParser;
+
+public class LMNtalImporterTest {
+  private static final String GRAPHS = """
+      {c(+1), e^i(90), +L1, +A}, {c(-1), e^i(0), +L1, +B}.
+      {c(-1), e^i(0), +X, +Y, +Z}.
+      {c(+1), e^i(45), +P}, h{e^i(180), +P, +Q}, {c(+1), e^i(0), +Q}.
+      {c(-1), e^i(180), +S, +T}.
+      """;
+  private static final String MIXED = """
+      {c(+1), e^i(90), +L1, +A}, {c(-1), e^i(0), +L1, +B}.
+      fuse@@
+      {c(+1), e^i(PV1), +L1, +A}, {c(+1), e^i(PV2), +L1, +B}
+      :- int(PV1), int(PV2) |
+      {c(+1), e^i(0), +A, +B}.
+      {c(-1), e^i(0), +X, +Y, +Z}.
+      idrem@@
+      {c(+1), e^i(0), +A, +B} :- h{e^i(180), +A, +B}.
+      col@@
+      {c(CV1), e^i(0), +A, +B} :- int(CV1) | {c(CV1), e^i(0), +A, +B}.
+      {c(+1), e^i(45), +P}, h{e^i(180), +P, +Q}, {c(+1), e^i(0), +Q}.
+      """;
+
+  private static final String BROKEN = """
+      {c(+1), e^i(90), +L1, +A}, {c(-1), e^i(0), +L1, +B}.
+      {c(+1), e^i(90) +A}.
+      {c(-1), e^i(0), +X, +Y, +Z}.
+      idrem@@ {c(+1), e^i(0), +A, +B} :- h{e^i(180), +A, +B}.
+      {c(-1) e^i(0), +Q}.
+      {c(+1), e^i(45), +P}.
+      """;
+
+  static Path write(String text) throws IOException {
+    Path file = Files.createTempFile("lmntal-test", ".lmn");
+    file.toFile().deleteOnExit();
+    Files.writeString(file, text);
+    return file;
+  }
+
+  @Test
+  void testInterruptedImportIsCancelledBeforeAnyGraph() throws IOException {
+    Path file = write(GRAPHS);
+    LMNtalImporter importer = new LMNtalImporter();
+    List<NamedGraph> delivered = new ArrayList<>();
+    importer.setGraphListener(delivered::add);
+    Thread.currentThread().interrupt();
+    try {
+      assertThrows(CancellationException.class, () -> importer.importFile(file));
+    } finally {
+      Thread.interrupted();
+    }
+    assertTrue(delivered.isEmpty());
+  }
+
+  @Test
+  void testCancelAfterSomeGraphsKeepsOnlyThoseDelivered() throws IOException {
+    Path file = write(GRAPHS);
+    LMNtalImporter importer = new LMNtalImporter();
+    List<NamedGraph> delivered = new ArrayList<>();
+    importer.setGraphListener(graph -> {
+      delivered.add(graph);
+      if (delivered.size() == 2) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    try {
+      assertThrows(CancellationException.class, () -> importer.importFile(file));
+    } finally {
+      Thread.interrupted();
+    }
+    assertEquals(2, delivered.size());
+    assertTrue(importer.getRules().isEmpty());
+  }
+
+  @Test
+  void testInterruptedMultiFileImportIsCancelled() throws IOException {
+    List<Path> files = List.of(write(GRAPHS), write(GRAPHS));
+    LMNtalImporter importer = new LMNtalImporter();
+    Thread.currentThread().interrupt();
+    try {
+      assertThrows(CancellationException.class, () -> importer.importFiles(files));
+    } finally {
+      Thread.interrupted();
+    }
+  }
+
+  @Test
+  void testStreamingEmitsInFileOrderAndMatchesImportFile() throws IOException {
+    Path file = write(MIXED);
+    LMNtalImporter streaming = new LMNtalImporter();
+    List<String> order = new ArrayList<>();
+    List<NamedGraph> graphs = new ArrayList<>();
+    List<ZXRule> rules = new ArrayList<>();
+    streaming.importStreaming(file, graph -> {
+      order.add(graph.getName());
+      graphs.add(graph);
+    }, rule -> {
+      order.add(rule.getName());
+      rules.add(rule);
+    });
+    assertEquals(List.of("graph_1", "fuse", "graph_2", "idrem", "col", "graph_3"), order);
+    assertTrue(streaming.getErrorMessages().isEmpty());
+    assertTrue(streaming.getGraphs().isEmpty()); // Only passed to the consumers
+    assertTrue(streaming.getRules().isEmpty());
+
+    LMNtalImporter whole = new LMNtalImporter();
+    whole.importFile(file);
+    assertEquals(whole.getGraphs().size(), graphs.size());
+    for (int i = 0; i < graphs.size(); i++) {
+      assertEquals(whole.getGraphs().get(i).getName(), graphs.get(i).getName());
+      assertEquals(whole.getGraphs().get(i).toLMNtal(), graphs.get(i).toLMNtal());
+    }
+    assertEquals(whole.getRules().size(), rules.size());
+    for (int i = 0; i < rules.size(); i++) {
+      assertEquals(whole.getRules().get(i).toLMNtal(), rules.get(i).toLMNtal());
+    }
+  }
+
+  @Test
+  void testStreamingCollectsSyntaxErrorsAndContinues() throws IOException {
+    Path file = write("""
+        {c(+1), e^i(90), +L1, +A}, {c(-1), e^i(0), +L1, +B}.
+        {c(+1), e^i(90) +A.
+        {c(-1), e^i(0), +X, +Y, +Z}.
+        """);
+    LMNtalImporter importer = new LMNtalImporter();
+    List<NamedGraph> graphs = new ArrayList<>();
+    importer.importStreaming(file, graphs::add, rule -> {
+    });
+    List<String> errors = importer.getErrorMessages();
+    assertFalse(errors.isEmpty());
+    assertEquals("Syntax errors detected in LMNtal file:", errors.get(0));
+    assertTrue(errors.get(1).contains("line 2"), errors.get(1));
+    assertEquals("{c(-1), e^i(0), +X, +Y, +Z}", graphs.get(graphs.size() - 1).toLMNtal());
+  }
+
+  @Test
+  void testImportFilesMatchesImportFileOnEachInOrder() throws IOException {
+    Path missing = write("");
+    Files.delete(missing);
+    List<Path> files = List.of(write(MIXED), write(BROKEN), missing, write(GRAPHS));
+
+    List<String> graphs = new ArrayList<>();
+    List<String> rules = new ArrayList<>();
+    List<String> errors = new ArrayList<>();
+    LMNtalImporter single = new LMNtalImporter();
+    for (Path file : files) {
+      String prefix = file.getFileName() + ": ";
+      try {
+        single.importFile(file);
+      } catch (IOException e) {
+        errors.add(prefix + "Error reading file: " + e.getMessage());
+        continue;
+      }
+      single.getGraphs().forEach(graph -> graphs.add(graph.toLMNtal()));
+      single.getRules().forEach(rule -> rules.add(rule.getName() + " " + rule.toLMNtal()));
+      single.getErrorMessages().forEach(message -> errors.add(prefix + message));
+    }
+
+    LMNtalImporter importer = new LMNtalImporter();
+    List<NamedGraph> delivered = new ArrayList<>();
+    importer.setGraphListener(delivered::add);
+    importer.importFiles(files);
+    assertEquals(graphs, importer.getGraphs().stream().map(NamedGraph::toLMNtal).toList());
+    assertEquals(importer.getGraphs(), delivered);
+    for (int i = 0; i < delivered.size(); i++) {
+      assertEquals("graph_" + (i + 1), delivered.get(i).getName());
+    }
+    assertEquals(rules, importer.getRules().stream().map(rule -> rule.getName() + " " + rule.toLMNtal()).toList());
+    assertEquals(errors, importer.getErrorMessages());
+    assertTrue(errors.stream().anyMatch(message -> message.startsWith(files.get(1).getFileName() + ": Syntax")));
+    assertTrue(errors.contains(missing.getFileName() + ": Error reading file: " + missing), errors.toString());
+  }
+
+  private static LMNtalParser parser(String text) {
+    LMNtalParser parser = new LMNtalParser(new CommonTokenStream(new LMNtalLexer(CharStreams.fromString(text))));
+    parser.removeErrorListeners();
+    return parser;
+  }
+
+  // A plain LL parse with the default error strategy, for reference
+  private static String parseLL(String text, ImporterErrorListener errors) {
+    LMNtalParser parser = parser(text);
+    parser.addErrorListener(errors);
+    return parser.file().toStringTree(parser);
+  }
+
+  @Test
+  void testSllParseMatchesLLOnValidInput() {
+    LMNtalParser parser = parser(MIXED);
+    ImporterErrorListener errors = new ImporterErrorListener();
+    CommonTokenStream tokens = (CommonTokenStream) parser.getTokenStream();
+    String tree = LMNtalImporter.parse(parser, tokens, errors).toStringTree(parser);
+    assertEquals(parseLL(MIXED, new ImporterErrorListener()), tree);
+    assertTrue(errors.getErrors().isEmpty());
+  }
+
+  @Test
+  void testBailedSllParseFallsBackToLLAndReportsErrorsOnce() throws IOException {
+    ImporterErrorListener expected = new ImporterErrorListener();
+    String expectedTree = parseLL(BROKEN, expected);
+    assertFalse(expected.getErrors().isEmpty());
+
+    LMNtalParser parser = parser(BROKEN);
+    ImporterErrorListener errors = new ImporterErrorListener();
+    CommonTokenStream tokens = (CommonTokenStream) parser.getTokenStream();
+    String tree = LMNtalImporter.parse(parser, tokens, errors).toStringTree(parser);
+    assertEquals(expectedTree, tree);
+    assertEquals(expected.getErrors(), errors.getErrors());
+
+    LMNtalImporter importer = new LMNtalImporter();
+    importer.importFile(write(BROKEN));
+    // Recovered elements may also fail to convert; only syntax errors are compared
+    List<String> messages = importer.getErrorMessages();
+    int header = messages.indexOf("Syntax errors detected in LMNtal file:");
+    assertTrue(header >= 0);
+    assertEquals(header, messages.lastIndexOf("Syntax errors detected in LMNtal file:"));
+    assertEquals(expected.getErrors(), messages.subList(header + 1, messages.size()));
+    List<String> graphs = importer.getGraphs().stream().map(NamedGraph::toLMNtal).toList();
+    assertTrue(graphs.contains("{c(-1), e^i(0), +X, +Y, +Z}"), graphs.toString());
+    assertEquals("{c(+1), e^i(45), +P}", graphs.get(graphs.size() - 1));
+  }
+
+  @Test
+  void testFractionalAndDecimalPhasesReadBack() throws IOException {
+    NamedGraph graph = new NamedGraph("graph_1");
+    List<Phase> phases = List.of(Phase.of(1, 7), Phase.of(7, 11), Phase.of(1, 8), Phase.of(3, 2), Phase.ZERO);
+    for (Phase phase : phases) {
+      Spider spider = new Spider(0, 0, SpiderType.Z);
+      spider.setPhaseValue(phase);
+      graph.addSpider(spider);
+    }
+    String text = graph.toLMNtal() + ".";
+    assertTrue(text.contains("e^i(180/7)"), text);
+    assertTrue(text.contains("e^i(22.5)"), text);
+
+    LMNtalImporter importer = new LMNtalImporter();
+    importer.importFile(write(text));
+    assertTrue(importer.getErrorMessages().isEmpty(), importer.getErrorMessages().toString());
+    List<Phase> read = importer.getGraphs().get(0).getSpiders().stream().map(Spider::getPhaseValue).toList();
+    assertEquals(phases, read);
+  }
+}
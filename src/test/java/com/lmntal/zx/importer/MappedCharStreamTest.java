@@ -0,0 +1,92 @@
+package com.lmntal.zx.importer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.misc.Interval;
+import org.junit.jupiter.api.Test;
+
+import com.lmntal.zx.parser.LMNtalLexer;
+
+public class MappedCharStreamTest {
+  private static final String ASCII = """
+      // graphs
+      {c(+1), e^i(90), +L1, +A}, h{e^i(180), +L1, +B}.
+      idrem@@
+      {c(+1), e^i(0), +A, +B} :- h{e^i(180), +A, +B}.
+      """;
+
+  private static List<String> tokens(CharStream input) {
+    return new LMNtalLexer(input).getAllTokens().stream().map(MappedCharStreamTest::describe).toList();
+  }
+
+  private static String describe(Token token) {
+    return token.getType() + " " + token.getText() + " " + token.getLine() + ":" + token.getCharPositionInLine()
+        + " " + token.getStartIndex() + "-" + token.getStopIndex();
+  }
+
+  @Test
+  void testAsciiFileIsMappedAndReadsLikeFromPath() throws IOException {
+    Path file = LMNtalImporterTest.write(ASCII);
+    CharStream mapped = MappedCharStream.open(file);
+    CharStream decoded = CharStreams.fromPath(file);
+    assertTrue(mapped instanceof MappedCharStream);
+    assertEquals(decoded.size(), mapped.size());
+    assertEquals(decoded.getSourceName(), mapped.getSourceName());
+    assertEquals(file.toString(), mapped.getSourceName());
+
+    for (int index : new int[] { 0, 1, 10, mapped.size() - 1, mapped.size() }) {
+      mapped.seek(index);
+      decoded.seek(index);
+      assertEquals(decoded.index(), mapped.index());
+      for (int i : new int[] { -2, -1, 1, 2, 5 }) {
+        assertEquals(decoded.LA(i), mapped.LA(i), "LA(" + i + ") at " + index);
+      }
+    }
+    mapped.seek(0);
+    assertEquals(IntStream.EOF, mapped.LA(-1));
+    mapped.seek(mapped.size() + 10); // Clamped to the end
+    assertEquals(mapped.size(), mapped.index());
+    assertEquals(IntStream.EOF, mapped.LA(1));
+
+    assertEquals(decoded.getText(Interval.of(11, 40)), mapped.getText(Interval.of(11, 40)));
+    assertEquals(ASCII, mapped.getText(Interval.of(0, mapped.size() - 1)));
+    String tail = ASCII.substring(ASCII.length() - 3);
+    assertEquals(tail, mapped.getText(Interval.of(mapped.size() - 3, mapped.size() + 5)));
+    assertEquals("", mapped.getText(Interval.of(5, 4)));
+  }
+
+  @Test
+  void testLexerTokensMatchFromPath() throws IOException {
+    Path file = LMNtalImporterTest.write(ASCII);
+    assertEquals(tokens(CharStreams.fromPath(file)), tokens(MappedCharStream.open(file)));
+  }
+
+  @Test
+  void testNonAsciiFileIsDecodedAsUtf8() throws IOException {
+    String text = "% 図式 ü\n{c(+1), e^i(45), +A}. // 終わり\n{c(-1), e^i(0), +A}.\n";
+    Path file = LMNtalImporterTest.write(text);
+    CharStream input = MappedCharStream.open(file);
+    assertFalse(input instanceof MappedCharStream);
+    assertEquals(text.length(), input.size());
+    assertEquals(text, input.getText(Interval.of(0, input.size() - 1)));
+    assertEquals(tokens(CharStreams.fromPath(file)), tokens(MappedCharStream.open(file)));
+  }
+
+  @Test
+  void testEmptyFile() throws IOException {
+    CharStream input = MappedCharStream.open(LMNtalImporterTest.write(""));
+    assertEquals(0, input.size());
+    assertEquals(IntStream.EOF, input.LA(1));
+    assertEquals("", input.getText(Interval.of(0, 0)));
+  }
+}
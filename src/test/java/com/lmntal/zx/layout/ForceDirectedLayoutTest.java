@@ -0,0 +1,79 @@
+package com.lmntal.zx.layout;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.lmntal.zx.model.Edge;
+import com.lmntal.zx.model.EdgeType;
+import com.lmntal.zx.model.Spider;
+import com.lmntal.zx.model.SpiderType;
+import com.lmntal.zx.model.ZXGraph;
+
+public class ForceDirectedLayoutTest {
+
+  // A chain of inner spiders with a boundary on each end and one per spider
+  private static ZXGraph chain(int length) {
+    ZXGraph graph = new ZXGraph();
+    List<Spider> inner = new ArrayList<>();
+    for (int i = 0; i < length; i++) {
+      Spider s = new Spider(0, 0, i % 2 == 0 ? SpiderType.Z : SpiderType.X);
+      graph.addSpider(s);
+      if (!inner.isEmpty()) {
+        graph.addEdge(new Edge(inner.get(inner.size() - 1), s, EdgeType.NORMAL));
+      }
+      inner.add(s);
+    }
+    for (int i = 0; i < length; i += Math.max(1, length / 8)) {
+      Spider b = new Spider(0, 0, SpiderType.BOUNDARY);
+      b.setLabel("B" + i);
+      graph.addSpider(b);
+      graph.addEdge(new Edge(inner.get(i), b, EdgeType.NORMAL));
+    }
+    return graph;
+  }
+
+  @Test
+  void testBoundariesAreOnThePeriphery() {
+    ZXGraph graph = chain(30);
+    new ForceDirectedLayout(200, 10_000, false).layout(graph, 400, 300);
+
+    double innerRadius = 0;
+    for (Spider s : graph.getSpiders()) {
+      if (s.getType() != SpiderType.BOUNDARY) {
+        innerRadius = Math.max(innerRadius, Math.hypot(s.getX() - 400, s.getY() - 300));
+      }
+    }
+    for (Spider s : graph.getSpiders()) {
+      if (s.getType() == SpiderType.BOUNDARY) {
+        assertTrue(Math.hypot(s.getX() - 400, s.getY() - 300) > innerRadius);
+      }
+    }
+  }
+
+  @Test
+  void testSpidersDoNotOverlap() {
+    ZXGraph graph = chain(40);
+    new ForceDirectedLayout(200, 10_000, false).layout(graph, 0, 0);
+    Set<Long> positions = new HashSet<>();
+    for (Spider s : graph.getSpiders()) {
+      assertTrue(positions.add(((long) s.getX() << 32) ^ (s.getY() & 0xffffffffL)));
+    }
+  }
+
+  @Test
+  void testParallelMatchesSequential() {
+    ZXGraph sequential = chain(600);
+    ZXGraph parallel = chain(600);
+    new ForceDirectedLayout(20, 60_000, false).layout(sequential, 0, 0);
+    new ForceDirectedLayout(20, 60_000, true).layout(parallel, 0, 0);
+    for (int i = 0; i < sequential.getSpiders().size(); i++) {
+      assertEquals(sequential.getSpiders().get(i).getLocation(), parallel.getSpiders().get(i).getLocation());
+    }
+  }
+}
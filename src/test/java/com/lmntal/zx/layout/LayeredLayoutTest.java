@@ -0,0 +1,107 @@
+package com.lmntal.zx.layout;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.lmntal.zx.model.TestGraphs.boundary;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.lmntal.zx.model.Edge;
+import com.lmntal.zx.model.EdgeType;
+import com.lmntal.zx.model.Spider;
+import com.lmntal.zx.model.SpiderType;
+import com.lmntal.zx.model.ZXGraph;
+
+public class LayeredLayoutTest {
+
+  @Test
+  void testCompareLabelsUsesNumericSuffix() {
+    assertTrue(LayeredLayout.compareLabels("b2", "b10") < 0);
+    assertTrue(LayeredLayout.compareLabels("b10", "b9") > 0);
+    assertTrue(LayeredLayout.compareLabels("A", "B") < 0);
+    assertEquals(0, LayeredLayout.compareLabels("b3", "b3"));
+  }
+
+  @Test
+  void testInputsLeftOutputsRightAndColumnsFollowPaths() {
+    // Two wires: b1 - z - x - b3 and b2 - x2 - b4, with a CNOT-like link
+    ZXGraph graph = new ZXGraph();
+    Spider z = new Spider(0, 0, SpiderType.Z);
+    Spider x = new Spider(0, 0, SpiderType.X);
+    Spider x2 = new Spider(0, 0, SpiderType.X);
+    graph.addSpider(z);
+    graph.addSpider(x);
+    graph.addSpider(x2);
+    Spider b3 = boundary(graph, "b3");
+    Spider b1 = boundary(graph, "b1");
+    Spider b4 = boundary(graph, "b4");
+    Spider b2 = boundary(graph, "b2");
+    graph.addEdge(new Edge(b1, z, EdgeType.NORMAL));
+    graph.addEdge(new Edge(z, x, EdgeType.NORMAL));
+    graph.addEdge(new Edge(x, b3, EdgeType.NORMAL));
+    graph.addEdge(new Edge(b2, x2, EdgeType.NORMAL));
+    graph.addEdge(new Edge(x2, b4, EdgeType.NORMAL));
+    graph.addEdge(new Edge(z, x2, EdgeType.NORMAL));
+
+    new LayeredLayout().layout(graph, 0, 0);
+
+    assertEquals(b1.getX(), b2.getX());
+    assertEquals(b3.getX(), b4.getX());
+    assertTrue(b1.getY() < b2.getY());
+    assertTrue(b3.getY() < b4.getY());
+    assertTrue(b1.getX() < z.getX());
+    assertTrue(z.getX() < x.getX());
+    assertTrue(z.getX() < x2.getX());
+    assertTrue(x.getX() < b3.getX());
+  }
+
+  @Test
+  void testBarycenterRemovesCrossing() {
+    // Inputs b1, b2 are wired to inner spiders added in the opposite order
+    ZXGraph graph = new ZXGraph();
+    Spider lower = new Spider(0, 0, SpiderType.Z);
+    Spider upper = new Spider(0, 0, SpiderType.X);
+    graph.addSpider(lower);
+    graph.addSpider(upper);
+    Spider b1 = boundary(graph, "b1");
+    Spider b2 = boundary(graph, "b2");
+    Spider b3 = boundary(graph, "b3");
+    Spider b4 = boundary(graph, "b4");
+    graph.addEdge(new Edge(b2, lower, EdgeType.NORMAL));
+    graph.addEdge(new Edge(b1, upper, EdgeType.NORMAL));
+    graph.addEdge(new Edge(upper, b3, EdgeType.NORMAL));
+    graph.addEdge(new Edge(lower, b4, EdgeType.NORMAL));
+
+    new LayeredLayout().layout(graph, 0, 0);
+    assertTrue(upper.getY() < lower.getY());
+  }
+
+  @Test
+  void testCachedLayoutIsRestored() {
+    ZXGraph graph = new ZXGraph();
+    List<Spider> chain = new ArrayList<>();
+    Spider previous = boundary(graph, "b1");
+    for (int i = 0; i < 5; i++) {
+      Spider s = new Spider(0, 0, SpiderType.Z);
+      graph.addSpider(s);
+      graph.addEdge(new Edge(previous, s, EdgeType.NORMAL));
+      chain.add(s);
+      previous = s;
+    }
+    graph.addEdge(new Edge(previous, boundary(graph, "b2"), EdgeType.NORMAL));
+
+    LayeredLayout layout = new LayeredLayout();
+    layout.layout(graph, 100, 100);
+    List<Point> first = new ArrayList<>();
+    graph.getSpiders().forEach(s -> first.add(s.getLocation()));
+
+    chain.get(2).setLocation(900, 900);
+    layout.layout(graph, 100, 100);
+    for (int i = 0; i < first.size(); i++) {
+      assertEquals(first.get(i), graph.getSpiders().get(i).getLocation());
+    }
+  }
+}
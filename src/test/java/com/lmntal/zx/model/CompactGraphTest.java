@@ -0,0 +1,129 @@
+package com.lmntal.zx.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.lmntal.zx.exporter.LMNtalExporter;
+
+public class CompactGraphTest {
+
+  private static ZXGraph randomGraph(Random random) {
+    ZXGraph graph = new ZXGraph();
+    List<Spider> spiders = new ArrayList<>();
+    String[] phases = { "0", "90", "180", "45", "?" };
+    int count = 1 + random.nextInt(12);
+    for (int i = 0; i < count; i++) {
+      SpiderType type = SpiderType.values()[random.nextInt(3)];
+      Spider spider = new Spider(random.nextInt(500), random.nextInt(500), type);
+      if (type == SpiderType.BOUNDARY) {
+        spider.setLabel("b" + i);
+      } else {
+        spider.setPhase(phases[random.nextInt(phases.length)]);
+        if (random.nextInt(4) == 0) {
+          spider.setColorUndefined(true);
+        }
+        if (spider.isUndefined()) {
+          spider.setVariableLabel("v" + random.nextInt(3));
+        }
+      }
+      graph.addSpider(spider);
+      spiders.add(spider);
+    }
+    int edges = random.nextInt(2 * count + 1);
+    for (int i = 0; i < edges; i++) {
+      Spider a = spiders.get(random.nextInt(count));
+      Spider b = spiders.get(random.nextInt(count));
+      if (a.getType() == SpiderType.BOUNDARY && b.getType() == SpiderType.BOUNDARY)
+        continue;
+      graph.addEdge(new Edge(a, b, random.nextBoolean() ? EdgeType.NORMAL : EdgeType.HADAMARD));
+    }
+    // Removals leave incidence lists in an order a fresh build must reproduce
+    if (graph.getEdgeCount() > 2) {
+      graph.removeEdge(graph.getEdges().get(random.nextInt(graph.getEdgeCount())));
+    }
+    return graph;
+  }
+
+  private static String export(ZXDiagram graph) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    LMNtalExporter.writeGraph(sb, "g", graph);
+    return sb.toString();
+  }
+
+  @Test
+  void testRoundTripKeepsEverything() throws IOException {
+    Random random = new Random(7);
+    for (int round = 0; round < 200; round++) {
+      ZXGraph graph = randomGraph(random);
+      CompactGraph compact = CompactGraph.of(graph);
+      assertEquals(graph.getSpiderCount(), compact.getSpiderCount());
+      assertEquals(graph.getEdgeCount(), compact.getEdgeCount());
+      assertEquals(graph.toLMNtal(), compact.toLMNtal());
+      Set<String> expected = new HashSet<>();
+      graph.collectVariables(expected);
+      Set<String> actual = new HashSet<>();
+      compact.collectVariables(actual);
+      assertEquals(expected, actual);
+      assertEquals(export(graph), export(compact));
+
+      List<Spider> spiders = graph.getSpiders();
+      for (int s = 0; s < spiders.size(); s++) {
+        assertEquals(graph.getDegree(spiders.get(s)), compact.getDegree(s));
+        assertEquals(graph.getIncidentEdges(spiders.get(s)).size(), compact.getIncidentCount(s));
+      }
+
+      ZXGraph back = compact.toZXGraph();
+      assertEquals(graph.toLMNtal(), back.toLMNtal());
+      assertTrue(back.isIdenticalTo(graph));
+      List<Spider> copies = back.getSpiders();
+      for (int s = 0; s < spiders.size(); s++) {
+        Spider original = spiders.get(s);
+        Spider copy = copies.get(s);
+        assertEquals(original.getLocation(), copy.getLocation());
+        assertEquals(original.getLabel(), copy.getLabel());
+        assertEquals(original.getVariableLabel(), copy.getVariableLabel());
+        assertEquals(original.isColorUndefined(), copy.isColorUndefined());
+        assertEquals(original.getPhase(), copy.getPhase());
+      }
+    }
+  }
+
+  @Test
+  void testBuilderInternsPhasesAndNumbersInOrder() {
+    CompactGraph.Builder builder = new CompactGraph.Builder();
+    int in = builder.addSpider(SpiderType.BOUNDARY, 0, 0, Phase.ofDegrees(0));
+    builder.setLabel(in, "in");
+    int z = builder.addSpider(SpiderType.Z, 10, 0, Phase.ofDegrees(90));
+    int x = builder.addSpider(SpiderType.X, 20, 0, Phase.ofDegrees(90));
+    int other = builder.addSpider(SpiderType.Z, 30, 0, Phase.ofDegrees(180));
+    assertEquals(0, builder.addEdge(in, z, EdgeType.HADAMARD));
+    assertEquals(1, builder.addEdge(z, x, EdgeType.NORMAL));
+    assertEquals(2, builder.addEdge(x, x, EdgeType.NORMAL));
+    assertThrows(IllegalArgumentException.class, () -> builder.addEdge(in, in, EdgeType.NORMAL));
+    CompactGraph graph = builder.build();
+
+    assertEquals(graph.getPhaseCode(z), graph.getPhaseCode(x));
+    assertNotEquals(graph.getPhaseCode(z), graph.getPhaseCode(other));
+    assertEquals("in", graph.getLabel(in));
+    assertNull(graph.getLabel(z));
+    assertEquals(3, graph.getDegree(x));
+    assertEquals(2, graph.getIncidentCount(x));
+    assertEquals(1, graph.getIncidentEdge(x, 0));
+    assertEquals(z, graph.getOpposite(1, x));
+    assertEquals(0, graph.getDegree(other));
+    assertEquals(EdgeType.HADAMARD, graph.getEdgeType(0));
+    assertEquals(graph.toLMNtal(), graph.toZXGraph().toLMNtal());
+  }
+}
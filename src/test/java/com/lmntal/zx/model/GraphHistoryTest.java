@@ -0,0 +1,155 @@
+package com.lmntal.zx.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.WeakHashMap;
+
+import org.junit.jupiter.api.Test;
+
+public class GraphHistoryTest {
+
+  @Test
+  void testUndoAndRedoRestoreEachStep() {
+    ZXGraph graph = new ZXGraph();
+    GraphHistory history = new GraphHistory(graph);
+    Spider a = new Spider(0, 0, SpiderType.Z);
+    Spider b = new Spider(50, 0, SpiderType.X);
+    graph.addSpider(a);
+    graph.addSpider(b);
+    assertTrue(history.record());
+    assertFalse(history.record());
+    long twoSpiders = graph.getVersion();
+
+    graph.addEdge(new Edge(a, b, EdgeType.HADAMARD));
+    a.setPhase("90");
+    history.record();
+    String linked = graph.toLMNtal();
+
+    graph.removeSpider(b);
+    a.setLocation(30, 40);
+    history.record();
+
+    assertTrue(history.undo());
+    assertEquals(linked, graph.toLMNtal());
+    assertEquals(0, a.getX());
+    assertTrue(graph.containsSpider(a)); // Kept, since it was only changed
+    assertTrue(history.undo());
+    assertEquals(2, graph.getSpiderCount());
+    assertEquals(0, graph.getEdgeCount());
+    assertEquals("0", a.getPhase());
+    assertEquals(twoSpiders, graph.getVersion());
+
+    assertTrue(history.redo());
+    assertTrue(history.redo());
+    assertFalse(history.redo());
+    assertEquals(1, graph.getSpiderCount());
+    assertEquals(30, a.getX());
+  }
+
+  @Test
+  void testEditAfterUndoDropsRedoAndGetsNewVersion() {
+    ZXGraph graph = new ZXGraph();
+    GraphHistory history = new GraphHistory(graph);
+    graph.addSpider(new Spider(0, 0, SpiderType.Z));
+    history.record();
+    long first = graph.getVersion();
+    graph.addSpider(new Spider(10, 0, SpiderType.Z));
+    long second = graph.getVersion();
+
+    history.undo(); // Records the unrecorded spider first
+    assertEquals(first, graph.getVersion());
+    assertTrue(history.canRedo());
+    graph.addSpider(new Spider(20, 0, SpiderType.X));
+    assertNotEquals(second, graph.getVersion());
+    assertFalse(history.redo());
+    assertFalse(history.canRedo());
+  }
+
+  @Test
+  void testRandomEditsUndoToEveryEarlierState() {
+    Random random = new Random(24);
+    ZXGraph graph = new ZXGraph();
+    GraphHistory history = new GraphHistory(graph, 1000);
+    List<ZXGraph> copies = new ArrayList<>();
+    List<Long> versions = new ArrayList<>();
+    copies.add(new ZXGraph(graph));
+    versions.add(graph.getVersion());
+    for (int step = 0; step < 300; step++) {
+      List<Spider> spiders = graph.getSpiders();
+      int action = spiders.size() < 2 ? 0 : random.nextInt(5);
+      switch (action) {
+        case 0 -> graph.addSpider(new Spider(random.nextInt(500), random.nextInt(500),
+            random.nextBoolean() ? SpiderType.Z : SpiderType.X));
+        case 1 -> graph.addEdge(new Edge(spiders.get(random.nextInt(spiders.size())),
+            spiders.get(random.nextInt(spiders.size())), random.nextBoolean() ? EdgeType.NORMAL : EdgeType.HADAMARD));
+        case 2 -> graph.removeSpider(spiders.get(random.nextInt(spiders.size())));
+        case 3 -> spiders.get(random.nextInt(spiders.size())).setPhase(String.valueOf(45 * random.nextInt(8)));
+        default -> {
+          List<Edge> edges = graph.getEdges();
+          if (!edges.isEmpty()) {
+            graph.removeEdge(edges.get(random.nextInt(edges.size())));
+          }
+        }
+      }
+      if (history.record()) {
+        copies.add(new ZXGraph(graph));
+        versions.add(graph.getVersion());
+      }
+    }
+    for (int i = copies.size() - 1; i > 0; i--) {
+      assertTrue(history.undo());
+      assertTrue(graph.isIdenticalTo(copies.get(i - 1)));
+      assertEquals((long) versions.get(i - 1), graph.getVersion());
+      assertEquals(graph.getSpiderCount(), graph.snapshot().getSpiderCount());
+    }
+    assertFalse(history.undo());
+    while (history.redo()) {
+      // Back to the end
+    }
+    assertTrue(graph.isIdenticalTo(copies.get(copies.size() - 1)));
+    for (Spider spider : graph.getSpiders()) {
+      assertTrue(spider.getId() < graph.getSpiderIdLimit());
+      for (Edge edge : graph.getIncidentEdges(spider)) {
+        assertTrue(graph.containsSpider(edge.getOpposite(spider)));
+      }
+    }
+  }
+
+  @Test
+  void testSnapshotOfAnotherGraphIsRejected() {
+    ZXGraph graph = new ZXGraph();
+    assertThrows(IllegalArgumentException.class, () -> new ZXGraph().restore(graph.snapshot()));
+  }
+
+  @Test
+  void testHistoryOfDroppedGraphCanBeCollected() {
+    Map<ZXGraph, GraphHistory> histories = new WeakHashMap<>();
+    ZXGraph graph = new ZXGraph();
+    GraphHistory history = histories.computeIfAbsent(graph, GraphHistory::new);
+    for (int i = 0; i < 10; i++) {
+      graph.addSpider(new Spider(i, 0, SpiderType.Z));
+      history.record();
+    }
+    WeakReference<ZXGraph> graphRef = new WeakReference<>(graph);
+    WeakReference<GraphHistory> historyRef = new WeakReference<>(history);
+    graph = null;
+    history = null;
+    for (int i = 0; i < 50 && (graphRef.get() != null || historyRef.get() != null); i++) {
+      System.gc();
+      histories.size(); // Expunges the cleared entries
+    }
+    assertNull(graphRef.get());
+    assertNull(historyRef.get());
+    assertTrue(histories.isEmpty());
+  }
+}
@@ -0,0 +1,138 @@
+package com.lmntal.zx.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class IncrementalLMNtalTest {
+
+  static String apply(String text, List<IncrementalLMNtal.Patch> patches) {
+    StringBuilder sb = new StringBuilder(text);
+    patches.forEach(patch -> sb.replace(patch.start(), patch.end(), patch.text()));
+    return sb.toString();
+  }
+
+  // Characters replaced or inserted by the patches
+  private static int size(List<IncrementalLMNtal.Patch> patches) {
+    return patches.stream().mapToInt(patch -> patch.end() - patch.start() + patch.text().length()).sum();
+  }
+
+  @Test
+  void testOnlyAtomsNearAnEditAreWritten() {
+    ZXGraph graph = new ZXGraph();
+    Spider input = new Spider(0, 0, SpiderType.BOUNDARY);
+    input.setLabel("in");
+    graph.addSpider(input);
+    Spider previous = input;
+    Spider middle = null;
+    for (int i = 0; i < 1000; i++) {
+      Spider spider = new Spider(i * 40, 0, i % 2 == 0 ? SpiderType.Z : SpiderType.X);
+      graph.addSpider(spider);
+      graph.addEdge(new Edge(previous, spider, i % 3 == 0 ? EdgeType.HADAMARD : EdgeType.NORMAL));
+      previous = spider;
+      if (i == 500) {
+        middle = spider;
+      }
+    }
+    IncrementalLMNtal lmntal = new IncrementalLMNtal(graph);
+    String text = lmntal.getText();
+    assertEquals(graph.toLMNtal(), text); // Every edge has a link, numbered as its id
+
+    middle.setLocation(5, 5);
+    assertTrue(lmntal.update().isEmpty());
+
+    middle.setPhase("45");
+    List<IncrementalLMNtal.Patch> patches = assertPatched(lmntal, text, graph);
+    assertTrue(lmntal.getLastWritten() <= 5);
+    assertTrue(size(patches) < 400);
+    text = apply(text, patches);
+
+    Spider extra = new Spider(0, 80, SpiderType.Z);
+    graph.addSpider(extra);
+    graph.addEdge(new Edge(previous, extra, EdgeType.HADAMARD));
+    text = apply(text, assertPatched(lmntal, text, graph));
+    assertTrue(lmntal.getLastWritten() <= 3);
+
+    input.setLabel("start"); // Shown in the atoms next to it
+    text = apply(text, assertPatched(lmntal, text, graph));
+    assertTrue(lmntal.getLastWritten() <= 3);
+
+    // The links of later edges keep their names
+    graph.removeEdge(graph.getIncidentEdges(input).get(0));
+    patches = assertPatched(lmntal, text, graph);
+    assertTrue(lmntal.getLastWritten() <= 2);
+    assertTrue(size(patches) < 200, patches.toString());
+  }
+
+  // The text written from scratch for the graph as it is now
+  private static String fresh(ZXGraph graph) {
+    return new IncrementalLMNtal(graph).getText();
+  }
+
+  private static List<IncrementalLMNtal.Patch> assertPatched(IncrementalLMNtal lmntal, String text, ZXGraph graph) {
+    List<IncrementalLMNtal.Patch> patches = lmntal.update();
+    assertFalse(patches.isEmpty());
+    assertEquals(fresh(graph), apply(text, patches));
+    assertEquals(fresh(graph), lmntal.getText());
+    return patches;
+  }
+
+  @Test
+  void testPatchesFollowRandomEdits() {
+    Random random = new Random(25);
+    ZXGraph graph = new ZXGraph();
+    IncrementalLMNtal lmntal = new IncrementalLMNtal(graph);
+    String text = lmntal.getText();
+    GraphHistory history = new GraphHistory(graph);
+    for (int step = 0; step < 400; step++) {
+      List<Spider> spiders = graph.getSpiders();
+      int action = spiders.size() < 3 ? 0 : random.nextInt(8);
+      switch (action) {
+        case 0 -> {
+          SpiderType type = SpiderType.values()[random.nextInt(SpiderType.values().length)];
+          Spider spider = new Spider(random.nextInt(500), random.nextInt(500), type);
+          if (type == SpiderType.BOUNDARY) {
+            spider.setLabel(graph.generateUniqueBoundaryLabel());
+          }
+          graph.addSpider(spider);
+        }
+        case 1, 2 -> {
+          Spider source = spiders.get(random.nextInt(spiders.size()));
+          Spider target = spiders.get(random.nextInt(spiders.size()));
+          if (source.getType() != SpiderType.BOUNDARY || target.getType() != SpiderType.BOUNDARY) {
+            graph.addEdge(new Edge(source, target, random.nextBoolean() ? EdgeType.NORMAL : EdgeType.HADAMARD));
+          }
+        }
+        case 3 -> graph.removeSpider(spiders.get(random.nextInt(spiders.size())));
+        case 4 -> {
+          Spider spider = spiders.get(random.nextInt(spiders.size()));
+          if (spider.getType() != SpiderType.BOUNDARY) {
+            spider.setPhase(String.valueOf(45 * random.nextInt(8)));
+          }
+        }
+        case 5 -> {
+          List<Edge> edges = graph.getEdges();
+          if (!edges.isEmpty()) {
+            Edge edge = edges.get(random.nextInt(edges.size()));
+            if (random.nextBoolean()) {
+              graph.removeEdge(edge);
+            } else {
+              edge.setType(edge.getType() == EdgeType.NORMAL ? EdgeType.HADAMARD : EdgeType.NORMAL);
+            }
+          }
+        }
+        case 6 -> history.undo();
+        default -> history.record();
+      }
+      if (random.nextInt(3) > 0) {
+        text = apply(text, lmntal.update());
+        assertEquals(fresh(graph), text);
+      }
+    }
+  }
+}
@@ -0,0 +1,106 @@
+package com.lmntal.zx.model;
+
+import static com.lmntal.zx.model.TestGraphs.boundary;
+import static com.lmntal.zx.model.TestGraphs.spider;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class IncrementalRuleLMNtalTest {
+
+  private static String update(IncrementalRuleLMNtal lmntal, String text) {
+    String patched = IncrementalLMNtalTest.apply(text, lmntal.update());
+    assertEquals(new IncrementalRuleLMNtal(lmntal.getRule()).getText(), patched);
+    assertEquals(patched, lmntal.getText());
+    return patched;
+  }
+
+  @Test
+  void testPatchesStayInsideTheEditedSide() {
+    ZXRule rule = new ZXRule("fuse");
+    Spider a = boundary(rule.getLhs(), "a");
+    Spider z = spider(rule.getLhs(), SpiderType.Z, "0");
+    rule.getLhs().addEdge(new Edge(a, z, EdgeType.HADAMARD));
+    Spider b = boundary(rule.getRhs(), "a");
+    Spider x = spider(rule.getRhs(), SpiderType.X, "0");
+    rule.getRhs().addEdge(new Edge(b, x, EdgeType.HADAMARD));
+    IncrementalRuleLMNtal lmntal = new IncrementalRuleLMNtal(rule);
+    String text = lmntal.getText();
+    assertEquals(rule.toLMNtal(), text);
+    assertTrue(lmntal.update().isEmpty());
+
+    x.setPhase("90");
+    int rhsStart = text.indexOf(":-");
+    List<IncrementalLMNtal.Patch> patches = lmntal.update();
+    assertEquals(1, patches.size());
+    assertTrue(patches.get(0).start() > rhsStart);
+    text = IncrementalLMNtalTest.apply(text, patches);
+    assertEquals(rule.toLMNtal(), text);
+
+    z.setColorUndefined(true); // Adds a guard
+    z.setVariableLabel("V1");
+    text = update(lmntal, text);
+    assertTrue(text.contains("int(CV1)"), text);
+
+    rule.setType(RuleType.EQUALS);
+    text = update(lmntal, text);
+    assertEquals(rule.toLMNtal(), text);
+    x.setPhase("180"); // Shown in both directions
+    patches = lmntal.update();
+    assertEquals(2, patches.size());
+    text = IncrementalLMNtalTest.apply(text, patches);
+    assertEquals(rule.toLMNtal(), text);
+  }
+
+  @Test
+  void testPatchesFollowRandomEdits() {
+    Random random = new Random(17);
+    ZXRule rule = new ZXRule("r");
+    IncrementalRuleLMNtal lmntal = new IncrementalRuleLMNtal(rule);
+    String text = lmntal.getText();
+    for (int step = 0; step < 300; step++) {
+      ZXGraph side = random.nextBoolean() ? rule.getLhs() : rule.getRhs();
+      List<Spider> spiders = side.getSpiders();
+      int action = spiders.size() < 2 ? 0 : random.nextInt(6);
+      switch (action) {
+        case 0 -> {
+          if (random.nextInt(4) == 0) {
+            boundary(side, side.generateUniqueBoundaryLabel());
+          } else {
+            spider(side, random.nextBoolean() ? SpiderType.Z : SpiderType.X, "0");
+          }
+        }
+        case 1 -> {
+          Spider source = spiders.get(random.nextInt(spiders.size()));
+          Spider target = spiders.get(random.nextInt(spiders.size()));
+          if (source.getType() != SpiderType.BOUNDARY || target.getType() != SpiderType.BOUNDARY) {
+            side.addEdge(new Edge(source, target, random.nextBoolean() ? EdgeType.NORMAL : EdgeType.HADAMARD));
+          }
+        }
+        case 2 -> side.removeSpider(spiders.get(random.nextInt(spiders.size())));
+        case 3 -> {
+          Spider spider = spiders.get(random.nextInt(spiders.size()));
+          if (spider.getType() != SpiderType.BOUNDARY) {
+            boolean undefined = !spider.isColorUndefined();
+            spider.setVariableLabel("V" + random.nextInt(3));
+            spider.setColorUndefined(undefined);
+          }
+        }
+        case 4 -> rule.setType(random.nextBoolean() ? RuleType.REWRITE : RuleType.EQUALS);
+        default -> {
+          Spider spider = spiders.get(random.nextInt(spiders.size()));
+          if (spider.getType() != SpiderType.BOUNDARY) {
+            spider.setPhase(String.valueOf(45 * random.nextInt(8)));
+          }
+        }
+      }
+      if (random.nextBoolean()) {
+        text = update(lmntal, text);
+      }
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package com.lmntal.zx.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class PhaseTest {
+
+  @Test
+  void testParsesDegreesAndMultiplesOfPi() {
+    assertSame(Phase.ZERO, Phase.parse("360"));
+    assertSame(Phase.ZERO, Phase.parse(" "));
+    assertSame(Phase.PI, Phase.parse("pi"));
+    assertSame(Phase.PI, Phase.parse("-180"));
+    assertEquals(Phase.parse("90"), Phase.parse("pi/2"));
+    assertEquals(Phase.parse("270"), Phase.parse("-90"));
+    assertEquals(Phase.parse("135"), Phase.parse("3π/4"));
+    assertEquals(Phase.of(1, 8), Phase.parse("22.5"));
+    assertEquals(Phase.of(1, 7), Phase.parse("180/7"));
+    assertEquals(Phase.of(1, 7), Phase.parse("-2340/7"));
+    assertEquals(1, Phase.parse("22.5").getNumerator());
+    assertEquals(8, Phase.parse("22.5").getDenominator());
+  }
+
+  @Test
+  void testFormatsInDegreesAndReadsBack() {
+    assertEquals("90", Phase.of(1, 2).toString());
+    assertEquals("0", Phase.of(-4, 2).toString());
+    assertEquals("22.5", Phase.of(1, 8).toString());
+    assertEquals("180/7", Phase.of(1, 7).toString());
+    assertEquals("1260/11", Phase.of(7, 11).toString());
+    for (long d = 1; d < 50; d++) {
+      for (long n = -2 * d; n < 2 * d; n++) {
+        Phase phase = Phase.of(n, d);
+        assertEquals(phase, Phase.parse(phase.toString()));
+      }
+    }
+  }
+
+  @Test
+  void testAddsExactly() {
+    Phase third = Phase.parse("60");
+    assertSame(Phase.PI, third.add(third).add(third));
+    assertSame(Phase.ZERO, Phase.of(5, 3).add(Phase.of(1, 3)));
+    assertEquals(Phase.of(5, 12), Phase.parse("45").add(Phase.of(1, 6)));
+    assertEquals(Phase.parse("270"), Phase.parse("90").negate());
+    assertTrue(Phase.parse("270").isProperClifford());
+    assertTrue(Phase.parse("540").isPauli());
+    assertFalse(Phase.parse("45").isPauli());
+    assertEquals(22.5, Phase.of(1, 8).toDegrees());
+  }
+
+  @Test
+  void testAddsLargeCoprimeDenominatorsWithoutOverflow() {
+    long m = Integer.MAX_VALUE;
+    // The cross terms overflow a long; the sum is exact but too fine to keep
+    Phase a = Phase.of(2 * m - 1, m);
+    Phase b = Phase.of(2 * m - 5, m - 2);
+    ArithmeticException e = assertThrows(ArithmeticException.class, () -> a.add(b));
+    assertTrue(e.getMessage().contains("too large"), e.getMessage());
+    assertSame(Phase.ZERO, Phase.of(1, m).add(a));
+  }
+
+  @Test
+  void testSymbolsAreComparedByName() {
+    assertSame(Phase.UNDEFINED, Phase.parse("?"));
+    assertTrue(Phase.UNDEFINED.isUndefined());
+    Phase alpha = Phase.parse(" alpha ");
+    assertFalse(alpha.isNumeric());
+    assertEquals("alpha", alpha.toString());
+    assertEquals(Phase.symbol("alpha"), alpha);
+    assertEquals(Phase.symbol("alpha").hashCode(), alpha.hashCode());
+    assertNotEquals(Phase.ZERO, Phase.symbol("0"));
+    assertThrows(IllegalStateException.class, () -> alpha.add(Phase.PI));
+    // Too fine to keep exactly
+    assertFalse(Phase.parse("1/99999999999").isNumeric());
+  }
+}
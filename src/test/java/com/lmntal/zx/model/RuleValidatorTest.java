@@ -0,0 +1,61 @@
+package com.lmntal.zx.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class RuleValidatorTest {
+
+  private ZXRule rule;
+
+  @BeforeEach
+  void setUp() {
+    rule = new ZXRule("test_rule");
+  }
+
+  private Spider boundary(ZXGraph graph, String label) {
+    Spider b = new Spider(0, 0, SpiderType.BOUNDARY);
+    b.setLabel(label);
+    graph.addSpider(b);
+    return b;
+  }
+
+  @Test
+  void testValidRule() {
+    Spider z = new Spider(10, 10, SpiderType.Z);
+    rule.getLhs().addSpider(z);
+    rule.getLhs().addEdge(new Edge(z, boundary(rule.getLhs(), "b1"), EdgeType.NORMAL));
+    Spider x = new Spider(10, 10, SpiderType.X);
+    rule.getRhs().addSpider(x);
+    rule.getRhs().addEdge(new Edge(x, boundary(rule.getRhs(), "b1"), EdgeType.NORMAL));
+
+    assertNull(RuleValidator.validate(rule));
+  }
+
+  @Test
+  void testMismatchedBoundaryLabels() {
+    boundary(rule.getLhs(), "b1");
+    boundary(rule.getRhs(), "b2");
+
+    RuleValidator.Violation violation = RuleValidator.validate(rule);
+    assertNotNull(violation);
+    assertEquals("Boundary node labels must match on both sides of the rule.", violation.message());
+  }
+
+  @Test
+  void testRhsVariableMissingInLhs() {
+    Spider undefined = new Spider(10, 10, SpiderType.Z);
+    undefined.setPhase("?");
+    undefined.setVariableLabel("v1");
+    rule.getRhs().addSpider(undefined);
+    rule.getLhs().addSpider(new Spider(10, 10, SpiderType.Z));
+
+    RuleValidator.Violation violation = RuleValidator.validate(rule);
+    assertNotNull(violation);
+    assertEquals("Rule Validation Error", violation.title());
+    assertTrue(violation.message().contains("Pv1"));
+  }
+}
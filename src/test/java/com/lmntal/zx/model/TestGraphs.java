@@ -0,0 +1,23 @@
+package com.lmntal.zx.model;
+
+/** Shorthands for building graphs in tests. */
+public final class TestGraphs {
+  private TestGraphs() {
+  }
+
+  /** Adds a spider at the origin with the given phase. */
+  public static Spider spider(ZXGraph graph, SpiderType type, String phase) {
+    Spider spider = new Spider(0, 0, type);
+    spider.setPhase(phase);
+    graph.addSpider(spider);
+    return spider;
+  }
+
+  /** Adds a boundary at the origin with the given label. */
+  public static Spider boundary(ZXGraph graph, String label) {
+    Spider spider = new Spider(0, 0, SpiderType.BOUNDARY);
+    spider.setLabel(label);
+    graph.addSpider(spider);
+    return spider;
+  }
+}
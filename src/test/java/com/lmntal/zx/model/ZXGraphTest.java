@@ -1,12 +1,18 @@
 package com.lmntal.zx.model;
 
+import java.awt.geom.Line2D;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -64,6 +70,118 @@ public class ZXGraphTest {
     assertTrue(graph.getEdges().isEmpty());
   }
 
+  @Test
+  void testAdjacencyQueries() {
+    Spider other = new Spider(90, 90, SpiderType.Z);
+    graph.addSpider(zSpider);
+    graph.addSpider(xSpider);
+    graph.addSpider(other);
+    Edge e1 = new Edge(zSpider, xSpider, EdgeType.NORMAL);
+    Edge e2 = new Edge(other, zSpider, EdgeType.HADAMARD);
+    graph.addEdge(e1);
+    graph.addEdge(e2);
+
+    assertEquals(2, graph.getDegree(zSpider));
+    assertEquals(List.of(e1, e2), graph.getIncidentEdges(zSpider));
+    assertEquals(List.of(xSpider, other), graph.getNeighbors(zSpider));
+
+    graph.removeEdge(e1);
+    assertEquals(0, graph.getDegree(xSpider));
+    assertEquals(List.of(e2), graph.getIncidentEdges(zSpider));
+
+    graph.removeSpider(other);
+    assertEquals(0, graph.getDegree(zSpider));
+    assertTrue(graph.getEdges().isEmpty());
+  }
+
+  @Test
+  void testSetDataCopiesAdjacency() {
+    graph.addSpider(zSpider);
+    graph.addSpider(xSpider);
+    graph.addEdge(new Edge(zSpider, xSpider, EdgeType.NORMAL));
+
+    ZXGraph copy = new ZXGraph(graph);
+    Spider copiedZ = copy.getSpiders().get(0);
+    assertEquals(1, copy.getDegree(copiedZ));
+    assertEquals(graph.toLMNtal(), copy.toLMNtal());
+  }
+
+  @Test
+  void testIdsAreLocalToTheGraphAndReused() {
+    assertEquals(-1, zSpider.getId());
+    graph.addSpider(zSpider);
+    graph.addSpider(xSpider);
+    Edge edge = new Edge(zSpider, xSpider, EdgeType.NORMAL);
+    graph.addEdge(edge);
+    assertEquals(0, zSpider.getId());
+    assertEquals(1, xSpider.getId());
+    assertEquals(0, edge.getId());
+
+    graph.removeSpider(zSpider);
+    assertEquals(-1, zSpider.getId());
+    assertEquals(-1, edge.getId());
+    Spider next = new Spider(0, 0, SpiderType.Z);
+    graph.addSpider(next);
+    assertEquals(0, next.getId());
+    assertEquals(2, graph.getSpiderIdLimit());
+
+    // A copy numbers its spiders from 0 again
+    ZXGraph copy = new ZXGraph(graph);
+    assertEquals(List.of(0, 1), copy.getSpiders().stream().map(Spider::getId).toList());
+    assertFalse(copy.getSpiders().get(0).equals(xSpider));
+  }
+
+  @Test
+  void testInsertionOrderIgnoresReusedIds() {
+    graph.addSpider(zSpider);
+    graph.addSpider(xSpider);
+    graph.removeSpider(zSpider);
+    Spider next = new Spider(0, 0, SpiderType.Z);
+    graph.addSpider(next);
+    assertTrue(next.getId() < xSpider.getId());
+    assertTrue(GraphElement.INSERTION_ORDER.compare(xSpider, next) < 0);
+  }
+
+  @Test
+  void testElementsCreatedOnSeveralThreadsAreDistinct() throws Exception {
+    Set<Spider> distinct = new HashSet<>();
+    List<Thread> threads = new ArrayList<>();
+    List<Spider> created = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      Thread thread = new Thread(() -> {
+        List<Spider> local = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+          local.add(new Spider(0, 0, SpiderType.Z));
+        }
+        synchronized (created) {
+          created.addAll(local);
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    distinct.addAll(created);
+    assertEquals(400, distinct.size());
+  }
+
+  @Test
+  void testAddingAnElementOfAnotherGraphFails() {
+    graph.addSpider(zSpider);
+    graph.addSpider(xSpider);
+    Edge edge = new Edge(zSpider, xSpider, EdgeType.NORMAL);
+    graph.addEdge(edge);
+    ZXGraph other = new ZXGraph();
+    assertThrows(IllegalStateException.class, () -> other.addSpider(zSpider));
+    assertThrows(IllegalStateException.class, () -> other.addEdge(edge));
+    assertEquals(0, zSpider.getId());
+    assertEquals(0, edge.getId());
+    assertTrue(other.isEmpty());
+    assertEquals(0, other.getSpiderIdLimit());
+  }
+
   @Test
   void testFindSpiderAt() {
     graph.addSpider(zSpider);
@@ -71,6 +189,128 @@ public class ZXGraphTest {
     assertNull(graph.findSpiderAt(100, 100, 5));
   }
 
+  @Test
+  void testFindSpiderAtFollowsMovesAndPrefersNearest() {
+    graph.addSpider(zSpider);
+    graph.addSpider(xSpider);
+    zSpider.setLocation(500, -300);
+    assertNull(graph.findSpiderAt(10, 10, 5));
+    assertEquals(zSpider, graph.findSpiderAt(502, -301, 5));
+
+    Spider close = new Spider(54, 50, SpiderType.Z);
+    graph.addSpider(close);
+    assertEquals(close, graph.findSpiderAt(56, 50, 15));
+    graph.removeSpider(close);
+    assertEquals(xSpider, graph.findSpiderAt(56, 50, 15));
+  }
+
+  @Test
+  void testSpatialIndexDropsCellsLeftBehind() {
+    Random random = new Random(3);
+    SpatialIndex index = new SpatialIndex();
+    List<Spider> spiders = new ArrayList<>();
+    List<Edge> edges = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      Spider spider = new Spider(random.nextInt(4000), random.nextInt(4000), SpiderType.Z);
+      spiders.add(spider);
+      index.insert(spider);
+      if (i > 0) {
+        Edge edge = new Edge(spiders.get(i - 1), spider, EdgeType.NORMAL);
+        edges.add(edge);
+        index.insert(edge);
+      }
+    }
+    // Drag spiders all over a large area; cells they leave must not pile up
+    for (int step = 0; step < 5000; step++) {
+      int i = random.nextInt(spiders.size());
+      Spider spider = spiders.get(i);
+      int oldX = spider.getX();
+      int oldY = spider.getY();
+      spider.setLocation(random.nextInt(4000), random.nextInt(4000));
+      List<Edge> incident = new ArrayList<>();
+      for (Edge edge : edges) {
+        if (edge.getSource() == spider || edge.getTarget() == spider) {
+          incident.add(edge);
+        }
+      }
+      index.move(spider, oldX, oldY, incident);
+    }
+
+    SpatialIndex fresh = new SpatialIndex();
+    spiders.forEach(fresh::insert);
+    edges.forEach(fresh::insert);
+    assertEquals(fresh.cellCount(), index.cellCount());
+    for (Spider spider : spiders) {
+      assertEquals(spider, index.nearestSpider(spider.getX(), spider.getY(), 1));
+    }
+    for (Edge edge : edges) {
+      int x = (edge.getSource().getX() + edge.getTarget().getX()) / 2;
+      int y = (edge.getSource().getY() + edge.getTarget().getY()) / 2;
+      assertEquals(fresh.nearestEdge(x, y, 2), index.nearestEdge(x, y, 2));
+    }
+  }
+
+  @Test
+  void testFindEdgeAt() {
+    graph.addSpider(zSpider);
+    graph.addSpider(xSpider);
+    Edge edge = new Edge(zSpider, xSpider, EdgeType.NORMAL);
+    graph.addEdge(edge);
+    assertEquals(edge, graph.findEdgeAt(30, 32, 5));
+    assertNull(graph.findEdgeAt(30, 60, 5));
+
+    xSpider.setLocation(300, 10);
+    assertNull(graph.findEdgeAt(30, 32, 5));
+    assertEquals(edge, graph.findEdgeAt(200, 12, 5));
+
+    graph.removeEdge(edge);
+    assertNull(graph.findEdgeAt(200, 12, 5));
+  }
+
+  @Test
+  void testFindEdgeAtFollowsEdgesLongerThanTheGrid() {
+    graph.addSpider(zSpider);
+    graph.addSpider(xSpider);
+    Edge edge = new Edge(zSpider, xSpider, EdgeType.NORMAL);
+    graph.addEdge(edge);
+    xSpider.setLocation(10, 5000); // Now kept outside the grid
+    assertEquals(edge, graph.findEdgeAt(12, 2500, 5));
+    assertNull(graph.findEdgeAt(30, 32, 5));
+    List<Edge> near = new ArrayList<>();
+    graph.collectEdgesIn(0, 2400, 50, 50, near);
+    assertTrue(near.contains(edge));
+
+    xSpider.setLocation(50, 10); // Back in the grid
+    assertEquals(edge, graph.findEdgeAt(30, 10, 5));
+    assertNull(graph.findEdgeAt(12, 2500, 5));
+    graph.removeEdge(edge);
+    assertNull(graph.findEdgeAt(30, 10, 5));
+  }
+
+  @Test
+  void testFindEdgeAtMatchesLinearScan() {
+    Random random = new Random(42);
+    List<Spider> nodes = new ArrayList<>();
+    for (int i = 0; i < 60; i++) {
+      Spider s = new Spider(random.nextInt(1000) - 200, random.nextInt(1000) - 200, SpiderType.Z);
+      graph.addSpider(s);
+      nodes.add(s);
+    }
+    for (int i = 0; i < 80; i++) {
+      graph.addEdge(new Edge(nodes.get(random.nextInt(60)), nodes.get(random.nextInt(60)), EdgeType.NORMAL));
+    }
+    for (int i = 0; i < 20; i++) {
+      nodes.get(random.nextInt(60)).setLocation(random.nextInt(1000) - 200, random.nextInt(1000) - 200);
+    }
+    for (int i = 0; i < 2000; i++) {
+      int x = random.nextInt(1000) - 200;
+      int y = random.nextInt(1000) - 200;
+      boolean expected = graph.getEdges().stream().anyMatch(e -> new Line2D.Float(e.getSource().getLocation(),
+          e.getTarget().getLocation()).ptSegDist(x, y) < 5);
+      assertEquals(expected, graph.findEdgeAt(x, y, 5) != null);
+    }
+  }
+
   @Test
   void testClear() {
     graph.addSpider(zSpider);
@@ -92,13 +332,103 @@ public class ZXGraphTest {
     graph2.addSpider(zSpider2);
     graph2.addSpider(xSpider2);
 
-    // Note: isIdenticalTo compares LMNtal output, so IDs don't matter
+    // Note: isIdenticalTo compares structure, so IDs don't matter
     assertTrue(graph.isIdenticalTo(graph2));
 
     graph.addEdge(new Edge(zSpider, xSpider, EdgeType.NORMAL));
     assertFalse(graph.isIdenticalTo(graph2));
   }
 
+  @Test
+  void testIsIdenticalToIgnoresInsertionOrder() {
+    Spider b1 = new Spider(0, 0, SpiderType.BOUNDARY);
+    b1.setLabel("b1");
+    Spider b2 = new Spider(0, 0, SpiderType.BOUNDARY);
+    b2.setLabel("b2");
+    xSpider.setPhase("pi");
+    graph.addSpider(b1);
+    graph.addSpider(zSpider);
+    graph.addSpider(xSpider);
+    graph.addSpider(b2);
+    graph.addEdge(new Edge(b1, zSpider, EdgeType.NORMAL));
+    graph.addEdge(new Edge(zSpider, xSpider, EdgeType.HADAMARD));
+    graph.addEdge(new Edge(xSpider, b2, EdgeType.NORMAL));
+
+    ZXGraph reordered = new ZXGraph();
+    Spider c2 = new Spider(5, 5, SpiderType.BOUNDARY);
+    c2.setLabel("b2");
+    Spider x = new Spider(5, 5, SpiderType.X);
+    x.setPhase("pi");
+    Spider z = new Spider(5, 5, SpiderType.Z);
+    Spider c1 = new Spider(5, 5, SpiderType.BOUNDARY);
+    c1.setLabel("b1");
+    reordered.addSpider(c2);
+    reordered.addSpider(x);
+    reordered.addSpider(z);
+    reordered.addSpider(c1);
+    reordered.addEdge(new Edge(c2, x, EdgeType.NORMAL));
+    reordered.addEdge(new Edge(x, z, EdgeType.HADAMARD));
+    reordered.addEdge(new Edge(c1, z, EdgeType.NORMAL));
+
+    assertEquals(graph.getStructuralHash(), reordered.getStructuralHash());
+    assertTrue(graph.isIdenticalTo(reordered));
+
+    // Swapping the boundary labels changes which end the phase sits on
+    c1.setLabel("b2");
+    c2.setLabel("b1");
+    assertFalse(graph.isIdenticalTo(reordered));
+  }
+
+  @Test
+  void testStructuralHashFollowsMutations() {
+    graph.addSpider(zSpider);
+    graph.addSpider(xSpider);
+    Edge edge = new Edge(zSpider, xSpider, EdgeType.NORMAL);
+    graph.addEdge(edge);
+    ZXGraph copy = new ZXGraph();
+    copy.setData(graph);
+    long hash = graph.getStructuralHash();
+    assertEquals(hash, copy.getStructuralHash());
+
+    zSpider.setPhase("pi/2");
+    assertNotEquals(hash, graph.getStructuralHash());
+    assertFalse(graph.isIdenticalTo(copy));
+    zSpider.setPhase("0");
+    assertEquals(hash, graph.getStructuralHash());
+
+    edge.setType(EdgeType.HADAMARD);
+    assertNotEquals(hash, graph.getStructuralHash());
+    assertFalse(graph.isIdenticalTo(copy));
+
+    // Moving a spider does not change the structure
+    edge.setType(EdgeType.NORMAL);
+    long version = graph.getVersion();
+    zSpider.setLocation(200, 200);
+    assertEquals(version, graph.getVersion());
+    assertTrue(graph.isIdenticalTo(copy));
+  }
+
+  @Test
+  void testIsIdenticalToDistinguishesRegularGraphs() {
+    // A 6-cycle and two triangles have the same degree sequence
+    ZXGraph cycle = new ZXGraph();
+    ZXGraph triangles = new ZXGraph();
+    Spider[] a = new Spider[6];
+    Spider[] b = new Spider[6];
+    for (int i = 0; i < 6; i++) {
+      a[i] = new Spider(0, 0, SpiderType.Z);
+      b[i] = new Spider(0, 0, SpiderType.Z);
+      cycle.addSpider(a[i]);
+      triangles.addSpider(b[i]);
+    }
+    for (int i = 0; i < 6; i++) {
+      cycle.addEdge(new Edge(a[i], a[(i + 1) % 6], EdgeType.NORMAL));
+      triangles.addEdge(new Edge(b[i], b[i / 3 * 3 + (i + 1) % 3], EdgeType.NORMAL));
+    }
+    assertFalse(cycle.isIdenticalTo(triangles));
+    assertFalse(triangles.isIdenticalTo(cycle));
+  }
+
   @Test
   void testToLMNtalSimple() {
     graph.addSpider(zSpider);
@@ -108,6 +438,27 @@ public class ZXGraphTest {
     assertEquals(expected.substring(0, expected.length() - 1), graph.toLMNtal());
   }
 
+  @Test
+  void testWriteLMNtalWithHadamardAndBoundaries() throws Exception {
+    Spider b1 = new Spider(0, 0, SpiderType.BOUNDARY);
+    b1.setLabel("b1");
+    graph.addSpider(zSpider);
+    graph.addSpider(xSpider);
+    graph.addSpider(b1);
+    graph.addEdge(new Edge(zSpider, xSpider, EdgeType.HADAMARD));
+    graph.addEdge(new Edge(b1, xSpider, EdgeType.HADAMARD));
+    graph.addEdge(new Edge(zSpider, xSpider, EdgeType.NORMAL));
+
+    String expected = "h{e^i(180), +L1a, +L1b},\n"
+        + "h{e^i(180), +L2, +B1},\n"
+        + "{c(+1), e^i(0), +L1a, +L3},\n"
+        + "{c(-1), e^i(0), +L1b, +L2, +L3}";
+    StringBuilder out = new StringBuilder();
+    graph.writeLMNtal(out, new HashSet<>());
+    assertEquals(expected, out.toString());
+    assertEquals(expected, graph.toLMNtal());
+  }
+
   @Test
   void testToLMNtalWithVariable() {
     Spider undefinedSpider = new Spider(10, 10, SpiderType.Z);
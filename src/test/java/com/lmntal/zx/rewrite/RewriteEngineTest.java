@@ -0,0 +1,263 @@
+package com.lmntal.zx.rewrite;
+
+import static com.lmntal.zx.model.TestGraphs.boundary;
+import static com.lmntal.zx.model.TestGraphs.spider;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.lmntal.zx.model.Edge;
+import com.lmntal.zx.model.EdgeType;
+import com.lmntal.zx.model.Spider;
+import com.lmntal.zx.model.SpiderType;
+import com.lmntal.zx.model.ZXGraph;
+import com.lmntal.zx.model.ZXRule;
+
+public class RewriteEngineTest {
+
+  private static void connect(ZXGraph graph, Spider a, Spider b, EdgeType type) {
+    graph.addEdge(new Edge(a, b, type));
+  }
+
+  // b1 - Z(0) - b2  =>  b1 - X(0) - b2
+  private static ZXRule recolorIdentity() {
+    ZXRule rule = new ZXRule("recolor");
+    ZXGraph lhs = rule.getLhs();
+    Spider z = spider(lhs, SpiderType.Z, "0");
+    connect(lhs, boundary(lhs, "b1"), z, EdgeType.NORMAL);
+    connect(lhs, z, boundary(lhs, "b2"), EdgeType.NORMAL);
+    ZXGraph rhs = rule.getRhs();
+    Spider x = spider(rhs, SpiderType.X, "0");
+    connect(rhs, boundary(rhs, "b1"), x, EdgeType.NORMAL);
+    connect(rhs, x, boundary(rhs, "b2"), EdgeType.NORMAL);
+    return rule;
+  }
+
+  @Test
+  void testRewritesEveryMatchWithMatchingDegree() {
+    ZXGraph graph = new ZXGraph();
+    Spider in = boundary(graph, "in");
+    Spider first = spider(graph, SpiderType.Z, "0");
+    Spider middle = spider(graph, SpiderType.Z, "90");
+    Spider last = spider(graph, SpiderType.Z, "360");
+    Spider out = boundary(graph, "out");
+    Spider branch = spider(graph, SpiderType.Z, "0");
+    connect(graph, in, first, EdgeType.NORMAL);
+    connect(graph, first, middle, EdgeType.NORMAL);
+    connect(graph, middle, last, EdgeType.HADAMARD);
+    connect(graph, last, out, EdgeType.NORMAL);
+    // Degree 3, so not an identity
+    connect(graph, middle, branch, EdgeType.NORMAL);
+
+    RewriteEngine.Result result = new RewriteEngine(List.of(new RuleMatcher(recolorIdentity()))).rewrite(graph);
+
+    assertEquals(2, result.steps());
+    assertTrue(result.fixpoint());
+    assertTrue(graph.containsSpider(middle));
+    assertTrue(graph.containsSpider(branch));
+    assertFalse(graph.containsSpider(first));
+    assertFalse(graph.containsSpider(last));
+    assertEquals(6, graph.getSpiderCount());
+    assertEquals(5, graph.getEdgeCount());
+    long xSpiders = graph.getSpiders().stream().filter(s -> s.getType() == SpiderType.X).count();
+    assertEquals(2, xSpiders);
+    // The Hadamard on the matched edge stays outside the match
+    Spider nearOut = graph.getNeighbors(out).get(0);
+    assertEquals(SpiderType.X, nearOut.getType());
+    assertEquals(List.of(middle), graph.getNeighbors(nearOut).stream().filter(s -> s != out).toList());
+    assertEquals(EdgeType.HADAMARD, graph.getIncidentEdges(nearOut).stream()
+        .filter(e -> e.getOpposite(nearOut) == middle).findFirst().orElseThrow().getType());
+  }
+
+  @Test
+  void testUndefinedColorAndPhaseAreCarriedOver() {
+    // b1 =H= {C v1, P v1}  =>  b1 - {C v1, P v1}
+    ZXRule rule = new ZXRule("absorb");
+    Spider matched = spider(rule.getLhs(), SpiderType.Z, "?");
+    matched.setColorUndefined(true);
+    matched.setVariableLabel("v1");
+    connect(rule.getLhs(), boundary(rule.getLhs(), "b1"), matched, EdgeType.HADAMARD);
+    Spider produced = spider(rule.getRhs(), SpiderType.Z, "?");
+    produced.setColorUndefined(true);
+    produced.setVariableLabel("v1");
+    connect(rule.getRhs(), boundary(rule.getRhs(), "b1"), produced, EdgeType.NORMAL);
+
+    ZXGraph graph = new ZXGraph();
+    Spider x = spider(graph, SpiderType.X, "45");
+    Spider z = spider(graph, SpiderType.Z, "0");
+    Spider other = spider(graph, SpiderType.Z, "0");
+    connect(graph, z, x, EdgeType.HADAMARD);
+    connect(graph, z, other, EdgeType.NORMAL);
+    connect(graph, z, boundary(graph, "b1"), EdgeType.NORMAL);
+
+    RewriteEngine.Result result = new RewriteEngine(List.of(new RuleMatcher(rule))).rewrite(graph);
+
+    assertEquals(1, result.steps());
+    assertTrue(result.fixpoint());
+    Spider replaced = graph.getSpiders().stream()
+        .filter(s -> s.getType() == SpiderType.X).findFirst().orElseThrow();
+    assertEquals("45", replaced.getPhase());
+    assertFalse(replaced.isUndefined());
+    assertEquals(EdgeType.NORMAL, graph.getIncidentEdges(replaced).get(0).getType());
+  }
+
+  @Test
+  void testStopsAtStepLimit() {
+    ZXRule rule = new ZXRule("loop");
+    connect(rule.getLhs(), boundary(rule.getLhs(), "b1"), spider(rule.getLhs(), SpiderType.Z, "0"),
+        EdgeType.NORMAL);
+    connect(rule.getRhs(), boundary(rule.getRhs(), "b1"), spider(rule.getRhs(), SpiderType.Z, "0"),
+        EdgeType.NORMAL);
+    ZXGraph graph = new ZXGraph();
+    connect(graph, spider(graph, SpiderType.Z, "0"), boundary(graph, "out"), EdgeType.NORMAL);
+
+    RewriteEngine.Result result = new RewriteEngine(List.of(new RuleMatcher(rule))).rewrite(graph, 5);
+
+    assertEquals(5, result.steps());
+    assertFalse(result.fixpoint());
+    assertEquals(2, graph.getSpiderCount());
+  }
+
+  @Test
+  void testRejectsBoundaryWithoutSingleEdge() {
+    ZXRule rule = recolorIdentity();
+    boundary(rule.getLhs(), "b3");
+    boundary(rule.getRhs(), "b3");
+    assertThrows(IllegalArgumentException.class, () -> new RuleMatcher(rule));
+  }
+
+  @Test
+  void testNoMatchWhenColorDiffers() {
+    ZXGraph graph = new ZXGraph();
+    Spider x = spider(graph, SpiderType.X, "0");
+    connect(graph, boundary(graph, "a"), x, EdgeType.NORMAL);
+    connect(graph, x, boundary(graph, "b"), EdgeType.NORMAL);
+    assertNull(new RuleMatcher(recolorIdentity()).findFirst(graph));
+  }
+
+  private static ZXGraph chain(int length) {
+    ZXGraph graph = new ZXGraph();
+    Spider previous = boundary(graph, "in");
+    for (int i = 0; i < length; i++) {
+      Spider next = spider(graph, i % 3 == 0 ? SpiderType.X : SpiderType.Z, "0");
+      next.setLocation(40 * i, 0);
+      connect(graph, previous, next, i % 5 == 0 ? EdgeType.HADAMARD : EdgeType.NORMAL);
+      previous = next;
+    }
+    connect(graph, previous, boundary(graph, "out"), EdgeType.NORMAL);
+    return graph;
+  }
+
+  @Test
+  void testBatchesReachSameFixpointDeterministically() {
+    List<RuleMatcher> matchers = List.of(new RuleMatcher(recolorIdentity()));
+    ZXGraph sequential = chain(600);
+    new RewriteEngine(matchers).rewrite(sequential);
+
+    ZXGraph parallel = chain(600);
+    RewriteEngine.Result result = new RewriteEngine(matchers).rewriteInBatches(parallel, 10_000);
+    assertTrue(result.fixpoint());
+    assertEquals(400, result.steps());
+    assertTrue(parallel.isIdenticalTo(sequential));
+
+    for (long seed = 1; seed <= 3; seed++) {
+      ZXGraph onOneThread = chain(600);
+      RewriteEngine first = new RewriteEngine(matchers);
+      first.setParallel(false);
+      first.setSeed(seed);
+      first.rewriteInBatches(onOneThread, 150);
+      ZXGraph onPool = chain(600);
+      RewriteEngine second = new RewriteEngine(matchers);
+      second.setSeed(seed);
+      second.rewriteInBatches(onPool, 150);
+      assertEquals(onOneThread.toLMNtal(), onPool.toLMNtal());
+    }
+  }
+
+  // b1 - Z(0) - Z(45) - b2  =>  b1 - Z(45) - b2
+  private static ZXRule absorbIdentity() {
+    ZXRule rule = new ZXRule("absorb");
+    ZXGraph lhs = rule.getLhs();
+    Spider zero = spider(lhs, SpiderType.Z, "0");
+    Spider kept = spider(lhs, SpiderType.Z, "45");
+    connect(lhs, boundary(lhs, "b1"), zero, EdgeType.NORMAL);
+    connect(lhs, zero, kept, EdgeType.NORMAL);
+    connect(lhs, kept, boundary(lhs, "b2"), EdgeType.NORMAL);
+    ZXGraph rhs = rule.getRhs();
+    Spider merged = spider(rhs, SpiderType.Z, "45");
+    connect(rhs, boundary(rhs, "b1"), merged, EdgeType.NORMAL);
+    connect(rhs, merged, boundary(rhs, "b2"), EdgeType.NORMAL);
+    return rule;
+  }
+
+  @Test
+  void testCachedRewriteFindsEveryMatch() {
+    List<RuleMatcher> matchers = List.of(new RuleMatcher(absorbIdentity()), new RuleMatcher(recolorIdentity()));
+    ZXGraph cached = new ZXGraph();
+    ZXGraph searched = new ZXGraph();
+    for (ZXGraph graph : List.of(cached, searched)) {
+      Spider previous = boundary(graph, "in");
+      for (int i = 0; i < 300; i++) {
+        Spider next = spider(graph, SpiderType.Z, i % 7 == 3 || i % 11 == 0 ? "45" : "0");
+        next.setLocation(40 * i, 0);
+        connect(graph, previous, next, EdgeType.NORMAL);
+        previous = next;
+      }
+      connect(graph, previous, boundary(graph, "out"), EdgeType.NORMAL);
+    }
+
+    RewriteEngine engine = new RewriteEngine(matchers);
+    RewriteEngine.Result result = engine.rewrite(cached);
+    assertTrue(result.fixpoint());
+    for (RuleMatcher matcher : matchers) {
+      assertNull(matcher.findFirst(cached));
+    }
+
+    // Same rule priority, but a full search before every step
+    int steps = 0;
+    Match match;
+    do {
+      match = null;
+      for (int r = 0; r < matchers.size() && match == null; r++) {
+        match = matchers.get(r).findFirst(searched);
+      }
+      if (match != null) {
+        RewriteEngine.apply(searched, match);
+        steps++;
+      }
+    } while (match != null);
+    assertEquals(steps, result.steps());
+    assertEquals(searched.getSpiderCount(), cached.getSpiderCount());
+
+    MatchCache.Stats stats = engine.getCacheStats();
+    // Each anchor is searched about once, plus again near each change
+    assertTrue(stats.misses() < 300 + 4 * result.steps());
+    assertTrue(stats.hitRate() > 0.5);
+  }
+
+  @Test
+  void testSignatureFollowsIndexedGraph() {
+    RuleSignature signature = new RuleSignature(recolorIdentity().getLhs());
+    ZXGraph graph = new ZXGraph();
+    Spider z = spider(graph, SpiderType.Z, "360");
+    connect(graph, boundary(graph, "a"), z, EdgeType.HADAMARD);
+    SpiderIndex index = new SpiderIndex(graph);
+    // Degree 1 only
+    assertFalse(signature.admits(index));
+    Spider end = boundary(graph, "b");
+    connect(graph, z, end, EdgeType.NORMAL);
+    index.update(z);
+    assertTrue(signature.admits(index));
+    assertEquals(1, index.getHadamardEnds());
+    graph.removeSpider(z);
+    index.update(z);
+    assertFalse(signature.admits(index));
+    assertEquals(0, index.getHadamardEnds());
+  }
+}
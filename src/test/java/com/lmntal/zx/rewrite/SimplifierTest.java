@@ -0,0 +1,204 @@
+package com.lmntal.zx.rewrite;
+
+import static com.lmntal.zx.model.TestGraphs.boundary;
+import static com.lmntal.zx.model.TestGraphs.spider;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.lmntal.zx.model.Edge;
+import com.lmntal.zx.model.EdgeType;
+import com.lmntal.zx.model.Phase;
+import com.lmntal.zx.model.Spider;
+import com.lmntal.zx.model.SpiderType;
+import com.lmntal.zx.model.ZXGraph;
+
+public class SimplifierTest {
+
+  @Test
+  void testFusesChainAndRemovesIdentity() {
+    ZXGraph graph = new ZXGraph();
+    Spider in = boundary(graph, "b1");
+    Spider a = spider(graph, SpiderType.Z, "90");
+    Spider b = spider(graph, SpiderType.Z, "90");
+    Spider c = spider(graph, SpiderType.X, "0");
+    Spider out = boundary(graph, "b2");
+    Spider other = spider(graph, SpiderType.X, "45");
+    graph.addEdge(new Edge(in, a, EdgeType.NORMAL));
+    graph.addEdge(new Edge(a, b, EdgeType.NORMAL));
+    graph.addEdge(new Edge(b, c, EdgeType.NORMAL));
+    graph.addEdge(new Edge(c, out, EdgeType.NORMAL));
+    graph.addEdge(new Edge(b, other, EdgeType.NORMAL));
+
+    Simplifier simplifier = new Simplifier(graph);
+    simplifier.setGraphLike(false);
+    Simplifier.Result result = simplifier.simplify();
+
+    assertEquals(1, result.fusions());
+    assertEquals(1, result.identities());
+    assertEquals(4, graph.getSpiderCount());
+    Spider fused = graph.getNeighbors(in).get(0);
+    assertEquals("180", fused.getPhase());
+    assertTrue(graph.getNeighbors(fused).contains(out));
+    assertTrue(graph.toLMNtal().contains("e^i(180)"));
+  }
+
+  @Test
+  void testSkipsFusionWhosePhaseCannotBeRepresented() {
+    ZXGraph graph = new ZXGraph();
+    Spider in = boundary(graph, "b1");
+    Spider a = spider(graph, SpiderType.Z, "0");
+    Spider b = spider(graph, SpiderType.Z, "0");
+    Spider out = boundary(graph, "b2");
+    long m = Integer.MAX_VALUE;
+    a.setPhaseValue(Phase.of(1, m));
+    b.setPhaseValue(Phase.of(1, m - 2));
+    graph.addEdge(new Edge(in, a, EdgeType.NORMAL));
+    graph.addEdge(new Edge(a, b, EdgeType.NORMAL));
+    graph.addEdge(new Edge(b, out, EdgeType.NORMAL));
+
+    Simplifier.Result result = new Simplifier(graph).simplify();
+    assertEquals(0, result.fusions());
+    assertEquals(4, graph.getSpiderCount());
+    assertEquals(Phase.of(1, m), a.getPhaseValue());
+  }
+
+  @Test
+  void testPreservesLinearMapOnRandomGraphs() {
+    Random random = new Random(42);
+    int localComplementations = 0;
+    int pivots = 0;
+    for (int trial = 0; trial < 300; trial++) {
+      ZXGraph graph = randomGraph(random);
+      ZXGraph simplified = new ZXGraph(graph);
+      Simplifier simplifier = new Simplifier(simplified);
+      simplifier.setGraphLike(trial % 3 != 0);
+      Simplifier.Result result = simplifier.simplify();
+      localComplementations += result.localComplementations();
+      pivots += result.pivots();
+      assertProportional(evaluate(graph), evaluate(simplified), "trial " + trial + "\n" + graph.toLMNtal());
+    }
+    assertTrue(localComplementations > 0);
+    assertTrue(pivots > 0);
+  }
+
+  private static ZXGraph randomGraph(Random random) {
+    String[] phases = { "0", "0", "90", "180", "270", "45" };
+    ZXGraph graph = new ZXGraph();
+    int n = 3 + random.nextInt(5);
+    List<Spider> inner = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      inner.add(spider(graph, random.nextInt(3) == 0 ? SpiderType.X : SpiderType.Z,
+          phases[random.nextInt(phases.length)]));
+    }
+    for (int i = 0; i < n; i++) {
+      for (int j = i; j < n; j++) {
+        double p = i == j ? 0.05 : 0.45;
+        while (random.nextDouble() < p) {
+          EdgeType type = random.nextBoolean() ? EdgeType.HADAMARD : EdgeType.NORMAL;
+          graph.addEdge(new Edge(inner.get(i), inner.get(j), type));
+          p /= 4;
+        }
+      }
+    }
+    int boundaries = 1 + random.nextInt(3);
+    for (int i = 0; i < boundaries; i++) {
+      EdgeType type = random.nextInt(4) == 0 ? EdgeType.HADAMARD : EdgeType.NORMAL;
+      graph.addEdge(new Edge(boundary(graph, "b" + i), inner.get(random.nextInt(n)), type));
+    }
+    return graph;
+  }
+
+  /**
+   * The graph's linear map as amplitudes indexed by the boundary bits, in
+   * label order. Each spider carries one bit in its own basis; an edge
+   * forces equal bits or, through an odd number of Hadamards (counting one
+   * per X end), contributes (-1)^(ab). Constant factors are left out.
+   */
+  private static double[][] evaluate(ZXGraph graph) {
+    List<Spider> boundaries = new ArrayList<>();
+    List<Spider> inner = new ArrayList<>();
+    for (Spider spider : graph.getSpiders()) {
+      (spider.getType() == SpiderType.BOUNDARY ? boundaries : inner).add(spider);
+    }
+    boundaries.sort(Comparator.comparing(Spider::getLabel));
+    Map<Spider, Integer> bit = new HashMap<>();
+    for (int i = 0; i < boundaries.size(); i++) {
+      bit.put(boundaries.get(i), i);
+    }
+    for (int i = 0; i < inner.size(); i++) {
+      bit.put(inner.get(i), boundaries.size() + i);
+    }
+    List<Edge> edges = graph.getEdges();
+    double[][] result = new double[1 << boundaries.size()][2];
+    for (long assignment = 0; assignment < (1L << bit.size()); assignment++) {
+      double angle = 0;
+      boolean zero = false;
+      for (Edge edge : edges) {
+        int hadamards = (edge.getType() == EdgeType.HADAMARD ? 1 : 0)
+            + (edge.getSource().getType() == SpiderType.X ? 1 : 0)
+            + (edge.getTarget().getType() == SpiderType.X ? 1 : 0);
+        long a = assignment >> bit.get(edge.getSource()) & 1;
+        long b = assignment >> bit.get(edge.getTarget()) & 1;
+        if (hadamards % 2 == 0) {
+          if (a != b) {
+            zero = true;
+            break;
+          }
+        } else if (a == 1 && b == 1) {
+          angle += Math.PI;
+        }
+      }
+      if (zero)
+        continue;
+      for (Spider spider : inner) {
+        if ((assignment >> bit.get(spider) & 1) == 1) {
+          angle += Math.toRadians(Double.parseDouble(spider.getPhase()));
+        }
+      }
+      int index = (int) (assignment & ((1 << boundaries.size()) - 1));
+      result[index][0] += Math.cos(angle);
+      result[index][1] += Math.sin(angle);
+    }
+    return result;
+  }
+
+  private static void assertProportional(double[][] expected, double[][] actual, String message) {
+    assertEquals(expected.length, actual.length, message);
+    int pivot = 0;
+    for (int i = 0; i < expected.length; i++) {
+      if (norm(expected[i]) > norm(expected[pivot])) {
+        pivot = i;
+      }
+    }
+    if (norm(expected[pivot]) < 1e-9) {
+      for (double[] value : actual) {
+        assertTrue(norm(value) < 1e-9, message);
+      }
+      return;
+    }
+    assertTrue(norm(actual[pivot]) > 1e-9, message);
+    // ratio = actual[pivot] / expected[pivot]
+    double d = norm(expected[pivot]) * norm(expected[pivot]);
+    double re = (actual[pivot][0] * expected[pivot][0] + actual[pivot][1] * expected[pivot][1]) / d;
+    double im = (actual[pivot][1] * expected[pivot][0] - actual[pivot][0] * expected[pivot][1]) / d;
+    for (int i = 0; i < expected.length; i++) {
+      double scaledRe = expected[i][0] * re - expected[i][1] * im;
+      double scaledIm = expected[i][0] * im + expected[i][1] * re;
+      assertTrue(Math.hypot(actual[i][0] - scaledRe, actual[i][1] - scaledIm) < 1e-6 * Math.max(1, norm(actual[pivot])),
+          message);
+    }
+  }
+
+  private static double norm(double[] value) {
+    return Math.hypot(value[0], value[1]);
+  }
+}